@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.benchmark;
+
+import org.wso2.carbon.identity.application.common.model.Property;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.identity.event.IdentityEventConstants;
+import org.wso2.carbon.identity.event.bean.ModuleConfiguration;
+import org.wso2.carbon.identity.event.event.Event;
+import org.wso2.carbon.identity.governance.IdentityGovernanceService;
+import org.wso2.carbon.identity.verification.evident.EvidentIDVHandler;
+import org.wso2.carbon.identity.verification.evident.client.EvidentAPIClientManager;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfigCache;
+import org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants;
+import org.wso2.carbon.identity.verification.evident.internal.EvidentIDVDataHolder;
+import org.wso2.carbon.identity.verification.evident.task.EvidentVerificationSubmitter;
+import org.wso2.carbon.identity.verification.evident.task.EvidentVerificationSweeper;
+import org.wso2.carbon.user.api.Tenant;
+import org.wso2.carbon.user.api.TenantManager;
+import org.wso2.carbon.user.api.UserRealm;
+import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.ACCOUNT_LOCKED_CLAIM;
+import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.ACCOUNT_STATE_CLAIM_URI;
+import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.ACCOUNT_STATE_UNLOCKED;
+import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.EMAIL_ADDRESS_CLAIM;
+import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.PENDING_SELF_REGISTRATION;
+import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.SELF_SIGNUP_ROLE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.EVIDENT_VERIFICATION_ID_CLAIM_URI;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.FIRST_NAME_CLAIM_URI;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.LAST_NAME_CLAIM_URI;
+
+/**
+ * Evident handler wired to an in memory user store and a local stub of the Evident API, outside the OSGi runtime.
+ * The environment replaces the connector state held by {@link EvidentIDVDataHolder}, hence only one environment
+ * can be used at a time. Additional handlers can be created to simulate the nodes of a cluster sharing the user
+ * store and the Evident API.
+ */
+public class EvidentBenchmarkEnvironment implements AutoCloseable {
+
+    public static final String TENANT_DOMAIN = "carbon.super";
+    public static final String USER_STORE_DOMAIN = "PRIMARY";
+
+    private static final int STUB_SERVER_THREADS = 16;
+
+    private final EvidentStubServer server;
+    private final InMemoryUserStore userStore;
+    private final UserStoreManager userStoreManager;
+    private final EvidentIDVHandler handler;
+    private final Properties moduleProperties;
+
+    /**
+     * Start the stub Evident API and initialize a handler against it.
+     *
+     * @param moduleProperties Event handler module properties of the handler.
+     * @param applyWrites      Whether the claim writes of the handler are applied to the user store.
+     * @throws IOException If the stub Evident API couldn't be started.
+     */
+    public EvidentBenchmarkEnvironment(Properties moduleProperties, boolean applyWrites) throws IOException {
+
+        this(moduleProperties, applyWrites, new EvidentStubServer(STUB_SERVER_THREADS));
+    }
+
+    /**
+     * Initialize a handler against the given stub Evident API. The stub is closed along with the environment.
+     *
+     * @param moduleProperties Event handler module properties of the handler.
+     * @param applyWrites      Whether the claim writes of the handler are applied to the user store.
+     * @param server           Stub Evident API.
+     */
+    public EvidentBenchmarkEnvironment(Properties moduleProperties, boolean applyWrites, EvidentStubServer server) {
+
+        this.server = server;
+        this.moduleProperties = moduleProperties;
+        userStore = new InMemoryUserStore(USER_STORE_DOMAIN, applyWrites);
+        userStoreManager = userStore.createUserStoreManager();
+
+        Map<String, String> tenantConfig = new HashMap<>();
+        tenantConfig.put(EvidentIDVConstants.EVIDENT_VERIFICATION_ENABLE, Boolean.TRUE.toString());
+        tenantConfig.put(EvidentIDVConstants.EVIDENT_API_KEY, "benchmark");
+        tenantConfig.put(EvidentIDVConstants.EVIDENT_API_SECRET, "benchmark");
+        tenantConfig.put(EvidentIDVConstants.EVIDENT_API_BASE_PATH, server.getBasePath());
+        tenantConfig.put(EvidentIDVConstants.EVIDENT_EMAIL_SUMMARY, "Verify your identity");
+        tenantConfig.put(EvidentIDVConstants.EVIDENT_EMAIL_DESCRIPTION, "Verify your identity to activate " +
+                "your account.");
+        EvidentIDVDataHolder.getInstance().setIdentityGovernanceService(createGovernanceService(tenantConfig));
+        RealmService realmService = createRealmService(userStoreManager);
+        EvidentIDVDataHolder.getInstance().setRealmService(realmService);
+        IdentityTenantUtil.setRealmService(realmService);
+        EvidentIDVConfigCache.getInstance().clear();
+
+        handler = createNode();
+    }
+
+    /**
+     * Create a handler with the module properties of the environment, representing another node of the cluster.
+     * Each handler holds its own verification state, which is shared with the other handlers only if the configured
+     * cache backend is shared.
+     *
+     * @return Handler.
+     */
+    public EvidentIDVHandler createNode() {
+
+        EvidentIDVHandler node = new EvidentIDVHandler();
+        node.init(new ModuleConfiguration(moduleProperties, Collections.emptyList()));
+        return node;
+    }
+
+    /**
+     * Add a locked user pending the identity verification. The Evident request of the user is verified if the
+     * request ID is prefixed with {@link EvidentStubServer#VERIFIED_PREFIX}.
+     *
+     * @param username  Username of the user.
+     * @param requestId Evident verification request ID of the user.
+     */
+    public void addPendingUser(String username, String requestId) {
+
+        Map<String, String> claims = new HashMap<>();
+        claims.put(ACCOUNT_LOCKED_CLAIM, Boolean.TRUE.toString());
+        claims.put(ACCOUNT_STATE_CLAIM_URI, PENDING_SELF_REGISTRATION);
+        claims.put(EVIDENT_VERIFICATION_ID_CLAIM_URI, requestId);
+        claims.put(FIRST_NAME_CLAIM_URI, EvidentStubServer.FIRST_NAME);
+        claims.put(LAST_NAME_CLAIM_URI, EvidentStubServer.LAST_NAME);
+        claims.put(EMAIL_ADDRESS_CLAIM, username + "@example.com");
+        userStore.addUser(username, claims);
+    }
+
+    /**
+     * Add a locked user who has just self signed up, before the Evident verification request of the user is sent.
+     *
+     * @param username Username of the user.
+     */
+    public void addSelfSignedUpUser(String username) {
+
+        Map<String, String> claims = new HashMap<>();
+        claims.put(ACCOUNT_LOCKED_CLAIM, Boolean.TRUE.toString());
+        claims.put(ACCOUNT_STATE_CLAIM_URI, PENDING_SELF_REGISTRATION);
+        claims.put(FIRST_NAME_CLAIM_URI, EvidentStubServer.FIRST_NAME);
+        claims.put(LAST_NAME_CLAIM_URI, EvidentStubServer.LAST_NAME);
+        claims.put(EMAIL_ADDRESS_CLAIM, username + "@example.com");
+        userStore.addUser(username, claims);
+    }
+
+    /**
+     * Add an active user which is not subjected to the identity verification.
+     *
+     * @param username Username of the user.
+     */
+    public void addActiveUser(String username) {
+
+        Map<String, String> claims = new HashMap<>();
+        claims.put(ACCOUNT_LOCKED_CLAIM, Boolean.FALSE.toString());
+        claims.put(ACCOUNT_STATE_CLAIM_URI, ACCOUNT_STATE_UNLOCKED);
+        claims.put(FIRST_NAME_CLAIM_URI, EvidentStubServer.FIRST_NAME);
+        claims.put(LAST_NAME_CLAIM_URI, EvidentStubServer.LAST_NAME);
+        claims.put(EMAIL_ADDRESS_CLAIM, username + "@example.com");
+        userStore.addUser(username, claims);
+    }
+
+    /**
+     * Create a post authentication event of the given user.
+     *
+     * @param username Username of the user.
+     * @return Event.
+     */
+    public Event createPostAuthenticationEvent(String username) {
+
+        Map<String, Object> properties = createEventProperties(username);
+        properties.put(IdentityEventConstants.EventProperty.OPERATION_STATUS, true);
+        return new Event(IdentityEventConstants.Event.POST_AUTHENTICATION, properties);
+    }
+
+    /**
+     * Create a post add user event of the given user.
+     *
+     * @param username   Username of the user.
+     * @param selfSignUp Whether the user is self signed up.
+     * @return Event.
+     */
+    public Event createPostAddUserEvent(String username, boolean selfSignUp) {
+
+        Map<String, Object> properties = createEventProperties(username);
+        properties.put(IdentityEventConstants.EventProperty.ROLE_LIST,
+                selfSignUp ? new String[]{SELF_SIGNUP_ROLE} : new String[0]);
+        Map<String, String> claims = new HashMap<>();
+        claims.put(EMAIL_ADDRESS_CLAIM, username + "@example.com");
+        claims.put(FIRST_NAME_CLAIM_URI, EvidentStubServer.FIRST_NAME);
+        claims.put(LAST_NAME_CLAIM_URI, EvidentStubServer.LAST_NAME);
+        properties.put(IdentityEventConstants.EventProperty.USER_CLAIMS, claims);
+        return new Event(IdentityEventConstants.Event.POST_ADD_USER, properties);
+    }
+
+    public EvidentIDVHandler getHandler() {
+
+        return handler;
+    }
+
+    public InMemoryUserStore getUserStore() {
+
+        return userStore;
+    }
+
+    public EvidentStubServer getServer() {
+
+        return server;
+    }
+
+    @Override
+    public void close() {
+
+        EvidentIDVDataHolder dataHolder = EvidentIDVDataHolder.getInstance();
+        EvidentVerificationSubmitter submitter = dataHolder.getVerificationSubmitter();
+        if (submitter != null) {
+            submitter.shutdown();
+            dataHolder.setVerificationSubmitter(null);
+        }
+        EvidentVerificationSweeper sweeper = dataHolder.getVerificationSweeper();
+        if (sweeper != null) {
+            sweeper.shutdown();
+            dataHolder.setVerificationSweeper(null);
+        }
+        EvidentAPIClientManager.getInstance().shutdown();
+        EvidentIDVConfigCache.getInstance().clear();
+        server.close();
+    }
+
+    private Map<String, Object> createEventProperties(String username) {
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(IdentityEventConstants.EventProperty.USER_NAME, username);
+        properties.put(IdentityEventConstants.EventProperty.USER_STORE_MANAGER, userStoreManager);
+        properties.put(IdentityEventConstants.EventProperty.TENANT_DOMAIN, TENANT_DOMAIN);
+        return properties;
+    }
+
+    /**
+     * Create a realm service serving the in memory user store as the user store of the super tenant.
+     */
+    private static RealmService createRealmService(UserStoreManager userStoreManager) {
+
+        UserRealm userRealm = (UserRealm) Proxy.newProxyInstance(UserRealm.class.getClassLoader(),
+                new Class<?>[]{UserRealm.class}, (proxy, method, args) -> {
+                    if (!"getUserStoreManager".equals(method.getName())) {
+                        throw new UnsupportedOperationException("Operation: " + method.getName() + " is not " +
+                                "supported by the benchmark user realm.");
+                    }
+                    return userStoreManager;
+                });
+        TenantManager tenantManager = (TenantManager) Proxy.newProxyInstance(TenantManager.class.getClassLoader(),
+                new Class<?>[]{TenantManager.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getTenantId":
+                            return MultitenantConstants.SUPER_TENANT_ID;
+                        case "getAllTenants":
+                            return new Tenant[0];
+                        default:
+                            throw new UnsupportedOperationException("Operation: " + method.getName() + " is not " +
+                                    "supported by the benchmark tenant manager.");
+                    }
+                });
+        return (RealmService) Proxy.newProxyInstance(RealmService.class.getClassLoader(),
+                new Class<?>[]{RealmService.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getTenantUserRealm":
+                            return userRealm;
+                        case "getTenantManager":
+                            return tenantManager;
+                        default:
+                            throw new UnsupportedOperationException("Operation: " + method.getName() + " is not " +
+                                    "supported by the benchmark realm service.");
+                    }
+                });
+    }
+
+    private static IdentityGovernanceService createGovernanceService(Map<String, String> tenantConfig) {
+
+        return (IdentityGovernanceService) Proxy.newProxyInstance(IdentityGovernanceService.class.getClassLoader(),
+                new Class<?>[]{IdentityGovernanceService.class}, (proxy, method, args) -> {
+                    if (!"getConfiguration".equals(method.getName()) || args.length != 2) {
+                        throw new UnsupportedOperationException("Operation: " + method.getName() + " is not " +
+                                "supported by the benchmark governance service.");
+                    }
+                    List<Property> properties = new ArrayList<>();
+                    for (String name : (String[]) args[0]) {
+                        if (tenantConfig.containsKey(name)) {
+                            Property property = new Property();
+                            property.setName(name);
+                            property.setValue(tenantConfig.get(name));
+                            properties.add(property);
+                        }
+                    }
+                    return properties.toArray(new Property[0]);
+                });
+    }
+}
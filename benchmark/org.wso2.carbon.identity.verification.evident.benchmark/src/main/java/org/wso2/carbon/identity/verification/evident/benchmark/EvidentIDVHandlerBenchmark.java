@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.identity.event.IdentityEventException;
+import org.wso2.carbon.identity.event.event.Event;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.STATUS_CACHE_ENABLE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SUBMISSION_ASYNC_ENABLE;
+
+/**
+ * Benchmarks of {@link org.wso2.carbon.identity.verification.evident.EvidentIDVHandler#handleEvent(Event)} for the
+ * post authentication and post add user events, against an in memory user store and a local stub of the Evident
+ * API. Both the throughput and the latency distribution of the events are measured. Run with the GC profiler,
+ * i.e. {@code java -jar target/evident-benchmarks.jar -prof gc}, to measure the allocation rate per event.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class EvidentIDVHandlerBenchmark {
+
+    // Number of distinct users the events are spread across. Must be a power of two.
+    private static final int USERS = 1024;
+
+    /**
+     * Post authentication events of verified, pending and ineligible users. Verified and pending users are locked
+     * users waiting for the identity verification, whose Evident requests are verified and pending respectively.
+     */
+    @State(Scope.Benchmark)
+    public static class AuthenticationState {
+
+        @Param({"verified", "pending", "ineligible"})
+        public String user;
+
+        @Param({"true", "false"})
+        public boolean statusCache;
+
+        private EvidentBenchmarkEnvironment environment;
+        private Event[] events;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+
+            Properties moduleProperties = new Properties();
+            moduleProperties.setProperty(STATUS_CACHE_ENABLE, String.valueOf(statusCache));
+            environment = new EvidentBenchmarkEnvironment(moduleProperties, false);
+
+            events = new Event[USERS];
+            for (int i = 0; i < USERS; i++) {
+                String username = user + "-user-" + i;
+                if ("verified".equals(user)) {
+                    environment.addPendingUser(username, EvidentStubServer.VERIFIED_PREFIX + i);
+                } else if ("pending".equals(user)) {
+                    environment.addPendingUser(username, EvidentStubServer.PENDING_PREFIX + i);
+                } else {
+                    environment.addActiveUser(username);
+                }
+                events[i] = environment.createPostAuthenticationEvent(username);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+
+            environment.close();
+        }
+    }
+
+    /**
+     * Post add user events of self signed up users, which are sent for the identity verification, and of users
+     * added otherwise, which are ineligible.
+     */
+    @State(Scope.Benchmark)
+    public static class AddUserState {
+
+        @Param({"selfSignUp", "ineligible"})
+        public String user;
+
+        @Param({"false", "true"})
+        public boolean asyncSubmission;
+
+        private EvidentBenchmarkEnvironment environment;
+        private Event[] events;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+
+            Properties moduleProperties = new Properties();
+            moduleProperties.setProperty(SUBMISSION_ASYNC_ENABLE, String.valueOf(asyncSubmission));
+            environment = new EvidentBenchmarkEnvironment(moduleProperties, false);
+
+            events = new Event[USERS];
+            for (int i = 0; i < USERS; i++) {
+                events[i] = environment.createPostAddUserEvent("new-user-" + i, "selfSignUp".equals(user));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+
+            environment.close();
+        }
+    }
+
+    /**
+     * Position of a benchmark thread in the events of the benchmark.
+     */
+    @State(Scope.Thread)
+    public static class EventCursor {
+
+        private int next;
+
+        private Event next(Event[] events) {
+
+            return events[next++ & (events.length - 1)];
+        }
+    }
+
+    @Benchmark
+    public void postAuthentication(AuthenticationState state, EventCursor cursor) throws IdentityEventException {
+
+        state.environment.getHandler().handleEvent(cursor.next(state.events));
+    }
+
+    @Benchmark
+    public void postAddUser(AddUserState state, EventCursor cursor) throws IdentityEventException {
+
+        state.environment.getHandler().handleEvent(cursor.next(state.events));
+    }
+}
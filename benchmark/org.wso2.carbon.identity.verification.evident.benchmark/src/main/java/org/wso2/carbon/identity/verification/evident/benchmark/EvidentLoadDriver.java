@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.benchmark;
+
+import org.wso2.carbon.identity.event.IdentityEventException;
+import org.wso2.carbon.identity.event.event.Event;
+import org.wso2.carbon.identity.verification.evident.metrics.EvidentIDVMetrics;
+import org.wso2.carbon.identity.verification.evident.metrics.EvidentLatencyHistogram;
+import org.wso2.carbon.identity.verification.evident.metrics.EvidentOutcomeStats;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.ACCOUNT_LOCKED_CLAIM;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.EVIDENT_VERIFICATION_ID_CLAIM_URI;
+
+/**
+ * Load driver pushing concurrent sign up and login events through the Evident handler, against a local stand-in of
+ * the Evident API with configurable latency, error rate and verification delay.
+ * <p>
+ * The users are signed up first, then log in repeatedly in rounds until the login rounds are over. Each user is
+ * unlocked by the first login after the verification of the user. The throughput and the latency of each phase are
+ * reported, along with the verification outcomes recorded by the connector.
+ * <p>
+ * Usage: {@code java -cp evident-benchmarks.jar org.wso2.carbon.identity.verification.evident.benchmark
+ * .EvidentLoadDriver [--option=value ...]}. Options prefixed with {@code evidentEventHandler.} are passed to the
+ * handler as module properties.
+ */
+public class EvidentLoadDriver {
+
+    private static final String USERS = "users";
+    private static final String CONCURRENCY = "concurrency";
+    private static final String LOGIN_ROUNDS = "loginRounds";
+    private static final String ROUND_INTERVAL = "roundInterval";
+    private static final String LATENCY = "latency";
+    private static final String ERROR_RATE = "errorRate";
+    private static final String VERIFICATION_DELAY = "verificationDelay";
+    private static final String SERVER_THREADS = "serverThreads";
+    private static final String SUBMISSION_TIMEOUT = "submissionTimeout";
+    private static final String MODULE_PROPERTY_PREFIX = "evidentEventHandler.";
+    // Number of consecutive polls without progress after which the background submissions are considered settled.
+    private static final int SETTLED_POLLS = 30;
+
+    private static final Map<String, String> DEFAULTS = new HashMap<>();
+
+    static {
+        DEFAULTS.put(USERS, "5000");
+        DEFAULTS.put(CONCURRENCY, "500");
+        DEFAULTS.put(LOGIN_ROUNDS, "5");
+        DEFAULTS.put(ROUND_INTERVAL, "1000");
+        DEFAULTS.put(LATENCY, "50");
+        DEFAULTS.put(ERROR_RATE, "0");
+        DEFAULTS.put(VERIFICATION_DELAY, "2000");
+        DEFAULTS.put(SERVER_THREADS, "200");
+        DEFAULTS.put(SUBMISSION_TIMEOUT, "120000");
+    }
+
+    private final Map<String, String> options;
+    private final int users;
+    private final ExecutorService executor;
+
+    private EvidentLoadDriver(Map<String, String> options) {
+
+        this.options = options;
+        this.users = getInt(USERS);
+        this.executor = Executors.newFixedThreadPool(getInt(CONCURRENCY));
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Invalid option: " + arg + ". Options should be in the form " +
+                        "--option=value");
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        EvidentLoadDriver driver = new EvidentLoadDriver(options);
+        try {
+            driver.run();
+        } finally {
+            driver.executor.shutdownNow();
+        }
+    }
+
+    private void run() throws IOException, InterruptedException {
+
+        Properties moduleProperties = new Properties();
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            if (option.getKey().startsWith(MODULE_PROPERTY_PREFIX)) {
+                moduleProperties.setProperty(option.getKey(), option.getValue());
+            }
+        }
+        EvidentStubServer server = new EvidentStubServer(getInt(SERVER_THREADS), getInt(LATENCY),
+                Double.parseDouble(options.get(ERROR_RATE)), getInt(VERIFICATION_DELAY));
+
+        System.out.println("Options: " + options);
+        EvidentIDVMetrics.getInstance().reset();
+        try (EvidentBenchmarkEnvironment environment = new EvidentBenchmarkEnvironment(moduleProperties, true,
+                server)) {
+            for (int i = 0; i < users; i++) {
+                environment.addSelfSignedUpUser(getUsername(i));
+            }
+
+            runPhase("Sign up", i -> environment.createPostAddUserEvent(getUsername(i), true), environment);
+            awaitSubmissions(environment);
+
+            for (int round = 1; round <= getInt(LOGIN_ROUNDS); round++) {
+                Thread.sleep(getInt(ROUND_INTERVAL));
+                runPhase("Login round " + round, i -> environment.createPostAuthenticationEvent(getUsername(i)),
+                        environment);
+                System.out.println("    Unlocked users: " + countUsers(environment, ACCOUNT_LOCKED_CLAIM,
+                        Boolean.FALSE.toString()) + " of " + users);
+            }
+
+            System.out.println(String.format(Locale.ROOT, "Evident API calls: %d verify requests, %d status " +
+                            "requests, %d failed on purpose", server.getVerifyRequests(), server.getStatusRequests(),
+                    server.getFailedRequests()));
+            System.out.println(String.format(Locale.ROOT, "User store calls: %d claim reads, %d claim writes",
+                    environment.getUserStore().getClaimReads(), environment.getUserStore().getClaimWrites()));
+            for (EvidentOutcomeStats outcomes : EvidentIDVMetrics.getInstance().getOutcomeStats()) {
+                System.out.println(String.format(Locale.ROOT, "Verification outcomes: %d verified, %d not " +
+                                "verified, %d name mismatch, %d API error", outcomes.getVerified(),
+                        outcomes.getNotVerified(), outcomes.getNameMismatch(), outcomes.getApiError()));
+            }
+        }
+    }
+
+    /**
+     * Handle an event of every user concurrently, and report the throughput and the latency of the events.
+     */
+    private void runPhase(String name, IntFunction<Event> eventFactory, EvidentBenchmarkEnvironment environment)
+            throws InterruptedException {
+
+        EvidentLatencyHistogram latencies = new EvidentLatencyHistogram();
+        List<Callable<Void>> tasks = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            Event event = eventFactory.apply(i);
+            tasks.add(() -> {
+                long startTime = System.nanoTime();
+                boolean failed = false;
+                try {
+                    environment.getHandler().handleEvent(event);
+                } catch (IdentityEventException | RuntimeException e) {
+                    failed = true;
+                }
+                latencies.record(System.nanoTime() - startTime, failed);
+                return null;
+            });
+        }
+
+        long startTime = System.nanoTime();
+        executor.invokeAll(tasks);
+        double seconds = (System.nanoTime() - startTime) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        EvidentLatencyHistogram.Snapshot snapshot = latencies.snapshot();
+        System.out.println(String.format(Locale.ROOT, "%s: %d events in %.3f s, %.1f events/s, %d failed. " +
+                        "Latency ms: mean %.2f, p50 %.0f, p95 %.0f, p99 %.0f, max %.2f", name, snapshot.getCount(),
+                seconds, snapshot.getCount() / seconds, snapshot.getFailures(), snapshot.getMeanMillis(),
+                snapshot.getPercentileMillis(50), snapshot.getPercentileMillis(95),
+                snapshot.getPercentileMillis(99), snapshot.getMaxMillis()));
+    }
+
+    /**
+     * Wait for the verification requests submitted in the background to be sent, since the users can't be verified
+     * before their request IDs are set. Waiting stops once the submission queue is drained and no more request IDs
+     * are being set, since the requests which failed after all the retries are never sent.
+     */
+    private void awaitSubmissions(EvidentBenchmarkEnvironment environment) throws InterruptedException {
+
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(getInt(SUBMISSION_TIMEOUT));
+        int submitted = countUsers(environment, EVIDENT_VERIFICATION_ID_CLAIM_URI, null);
+        int idlePolls = 0;
+        while (submitted < users && idlePolls < SETTLED_POLLS && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+            int previouslySubmitted = submitted;
+            submitted = countUsers(environment, EVIDENT_VERIFICATION_ID_CLAIM_URI, null);
+            boolean idle = submitted == previouslySubmitted &&
+                    EvidentIDVMetrics.getInstance().getSubmissionQueueDepth() == 0;
+            idlePolls = idle ? idlePolls + 1 : 0;
+        }
+        System.out.println(String.format(Locale.ROOT, "    Verification requests of %d of %d users sent after " +
+                "%.3f s", submitted, users, (System.nanoTime() - startTime) / (double) TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    /**
+     * Count the users having the given claim value, or having the claim at all if the value is null.
+     */
+    private int countUsers(EvidentBenchmarkEnvironment environment, String claimUri, String value) {
+
+        int count = 0;
+        for (int i = 0; i < users; i++) {
+            String claimValue = environment.getUserStore().getClaims(getUsername(i)).get(claimUri);
+            if (claimValue != null && (value == null || value.equals(claimValue))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int getInt(String option) {
+
+        return Integer.parseInt(options.get(option));
+    }
+
+    private static String getUsername(int index) {
+
+        return "load-user-" + index;
+    }
+}
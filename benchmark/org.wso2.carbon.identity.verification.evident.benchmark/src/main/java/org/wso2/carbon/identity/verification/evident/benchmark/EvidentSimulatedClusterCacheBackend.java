@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.benchmark;
+
+import org.wso2.carbon.identity.verification.evident.cache.EvidentCacheBackend;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stand-in of a cluster-wide cache for the nodes simulated in a single JVM. The entries of a cache are shared by all
+ * the backends of the same cache name, and are held in serialized form as a distributed cache would, so that the
+ * entries not surviving the serialization are caught. Select it with
+ * {@code evidentEventHandler.cache.backend=org.wso2.carbon.identity.verification.evident.benchmark
+ * .EvidentSimulatedClusterCacheBackend}.
+ */
+public class EvidentSimulatedClusterCacheBackend implements EvidentCacheBackend {
+
+    private static final Map<String, Map<String, byte[]>> CACHES = new ConcurrentHashMap<>();
+
+    private final Map<String, byte[]> entries;
+
+    /**
+     * @param cacheName  Name of the cache.
+     * @param maxEntries Maximum number of entries, unused since the cluster cache is unbounded.
+     */
+    public EvidentSimulatedClusterCacheBackend(String cacheName, int maxEntries) {
+
+        entries = CACHES.computeIfAbsent(cacheName, name -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Remove the entries of all the caches, so that the next test starts with an empty cluster.
+     */
+    public static void reset() {
+
+        CACHES.clear();
+    }
+
+    @Override
+    public Serializable get(String key) {
+
+        byte[] value = entries.get(key);
+        return value != null ? deserialize(value) : null;
+    }
+
+    @Override
+    public void put(String key, Serializable value) {
+
+        entries.put(key, serialize(value));
+    }
+
+    @Override
+    public void remove(String key) {
+
+        entries.remove(key);
+    }
+
+    @Override
+    public int size() {
+
+        return entries.size();
+    }
+
+    @Override
+    public boolean isShared() {
+
+        return true;
+    }
+
+    private static byte[] serialize(Serializable value) {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cache entry of type: " + value.getClass().getName() + " is not " +
+                    "serializable.", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Serializable deserialize(byte[] value) {
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(value))) {
+            return (Serializable) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Couldn't deserialize the cache entry.", e);
+        }
+    }
+}
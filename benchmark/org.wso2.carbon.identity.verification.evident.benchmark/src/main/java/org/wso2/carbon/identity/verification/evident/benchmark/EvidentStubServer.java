@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in of the Evident verify requests API, creating verify requests and returning their status.
+ * <p>
+ * Verify requests are accepted with a new request ID, and are verified with the name {@link #FIRST_NAME}
+ * {@link #LAST_NAME} once the verification delay has elapsed since they were created. Requests prefixed with
+ * {@link #VERIFIED_PREFIX} are always verified, and requests unknown to the server are pending. Each call can be
+ * delayed by a fixed latency, and a share of the calls can be failed with a server error.
+ */
+public class EvidentStubServer implements AutoCloseable {
+
+    public static final String VERIFIED_PREFIX = "verified-";
+    public static final String PENDING_PREFIX = "pending-";
+    public static final String FIRST_NAME = "John";
+    public static final String LAST_NAME = "Doe";
+
+    private static final String VERIFY_REQUESTS_PATH = "/api/v1/verify/requests";
+    private static final byte[] VERIFIED_RESPONSE = ("{\"id\":\"0\",\"attributes\":[" +
+            "{\"type\":\"identity_assurance.document_verification.americas.us.drivers_license." +
+            "verification_status\",\"status\":\"shared\",\"values\":[\"Valid\"]}," +
+            "{\"type\":\"core.fullname\",\"status\":\"shared\",\"values\":[{\"first\":\"" + FIRST_NAME +
+            "\",\"last\":\"" + LAST_NAME + "\"}]}]}").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PENDING_RESPONSE = ("{\"id\":\"0\",\"attributes\":[" +
+            "{\"type\":\"identity_assurance.document_verification.americas.us.drivers_license." +
+            "verification_status\",\"status\":\"pending\",\"values\":[]}," +
+            "{\"type\":\"core.fullname\",\"status\":\"pending\",\"values\":[]}]}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMillis;
+    private final double errorRate;
+    private final long verificationDelayMillis;
+    private final Map<String, Long> requestCreatedTimes = new ConcurrentHashMap<>();
+    private final AtomicLong requestIds = new AtomicLong();
+    private final AtomicLong verifyRequests = new AtomicLong();
+    private final AtomicLong statusRequests = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+
+    /**
+     * Start the stub server on an ephemeral port of the loopback interface, responding without delay or failures.
+     * Created verify requests are never verified.
+     *
+     * @param threads Number of threads serving the requests.
+     * @throws IOException If the server couldn't be started.
+     */
+    public EvidentStubServer(int threads) throws IOException {
+
+        this(threads, 0, 0, -1);
+    }
+
+    /**
+     * Start the stub server on an ephemeral port of the loopback interface.
+     *
+     * @param threads                 Number of threads serving the requests.
+     * @param latencyMillis           Delay of each response in milliseconds.
+     * @param errorRate               Share of the calls failed with a server error, between 0 and 1.
+     * @param verificationDelayMillis Time after which a created verify request is verified in milliseconds, or a
+     *                                negative value if the created requests are never verified.
+     * @throws IOException If the server couldn't be started.
+     */
+    public EvidentStubServer(int threads, long latencyMillis, double errorRate, long verificationDelayMillis)
+            throws IOException {
+
+        this.latencyMillis = latencyMillis;
+        this.errorRate = errorRate;
+        this.verificationDelayMillis = verificationDelayMillis;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(VERIFY_REQUESTS_PATH, this::handle);
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "EvidentStubServer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Return the base path of the stub API, to be configured as the Evident API base path.
+     *
+     * @return Base path of the stub API.
+     */
+    public String getBasePath() {
+
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public long getVerifyRequests() {
+
+        return verifyRequests.get();
+    }
+
+    public long getStatusRequests() {
+
+        return statusRequests.get();
+    }
+
+    /**
+     * Return the number of calls failed on purpose with a server error.
+     *
+     * @return Number of failed calls.
+     */
+    public long getFailedRequests() {
+
+        return failedRequests.get();
+    }
+
+    @Override
+    public void close() {
+
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+
+        try {
+            drain(exchange.getRequestBody());
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            String path = exchange.getRequestURI().getPath();
+            if ("POST".equals(exchange.getRequestMethod()) && path.equals(VERIFY_REQUESTS_PATH)) {
+                verifyRequests.incrementAndGet();
+                if (fail(exchange)) {
+                    return;
+                }
+                String id = PENDING_PREFIX + requestIds.incrementAndGet();
+                requestCreatedTimes.put(id, System.nanoTime());
+                respond(exchange, 200, ("{\"id\":\"" + id + "\",\"userIdentityToken\":\"token-" + id + "\"}")
+                        .getBytes(StandardCharsets.UTF_8));
+            } else if ("GET".equals(exchange.getRequestMethod()) && path.startsWith(VERIFY_REQUESTS_PATH + "/")) {
+                statusRequests.incrementAndGet();
+                if (fail(exchange)) {
+                    return;
+                }
+                String id = path.substring(VERIFY_REQUESTS_PATH.length() + 1);
+                respond(exchange, 200, isVerified(id) ? VERIFIED_RESPONSE : PENDING_RESPONSE);
+            } else {
+                respond(exchange, 404, new byte[0]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean isVerified(String id) {
+
+        if (id.startsWith(VERIFIED_PREFIX)) {
+            return true;
+        }
+        Long createdTime = requestCreatedTimes.get(id);
+        return createdTime != null && verificationDelayMillis >= 0 &&
+                System.nanoTime() - createdTime >= TimeUnit.MILLISECONDS.toNanos(verificationDelayMillis);
+    }
+
+    private boolean fail(HttpExchange exchange) throws IOException {
+
+        if (errorRate <= 0 || ThreadLocalRandom.current().nextDouble() >= errorRate) {
+            return false;
+        }
+        failedRequests.incrementAndGet();
+        respond(exchange, 503, "{\"error\":\"Service unavailable\"}".getBytes(StandardCharsets.UTF_8));
+        return true;
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length > 0 ? body.length : -1);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+
+        byte[] buffer = new byte[1024];
+        while (in.read(buffer) != -1) {
+            // Discard the request body.
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.benchmark;
+
+import org.wso2.carbon.user.api.RealmConfiguration;
+import org.wso2.carbon.user.core.UserStoreConfigConstants;
+import org.wso2.carbon.user.core.UserStoreManager;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In memory user store backing a {@link UserStoreManager} proxy. Only the claim operations used by the connector
+ * are supported, every other operation of the user store manager fails.
+ * <p>
+ * Claim writes can either be applied or only counted. Writes are not applied by the benchmarks, so that every
+ * invocation observes the same state of the users.
+ */
+public class InMemoryUserStore {
+
+    private final Map<String, Map<String, String>> users = new ConcurrentHashMap<>();
+    private final boolean applyWrites;
+    private final RealmConfiguration realmConfiguration = new RealmConfiguration();
+    private final LongAdder claimReads = new LongAdder();
+    private final LongAdder claimWrites = new LongAdder();
+
+    public InMemoryUserStore(String userStoreDomain, boolean applyWrites) {
+
+        this.applyWrites = applyWrites;
+        Map<String, String> userStoreProperties = new HashMap<>();
+        userStoreProperties.put(UserStoreConfigConstants.DOMAIN_NAME, userStoreDomain);
+        realmConfiguration.setUserStoreProperties(userStoreProperties);
+    }
+
+    /**
+     * Add a user with the given claims, replacing any existing user with the same username.
+     *
+     * @param username Username of the user.
+     * @param claims   Claims of the user.
+     */
+    public void addUser(String username, Map<String, String> claims) {
+
+        users.put(username, new ConcurrentHashMap<>(claims));
+    }
+
+    /**
+     * Return the claims of a user.
+     *
+     * @param username Username of the user.
+     * @return Claims of the user, or null if the user doesn't exist.
+     */
+    public Map<String, String> getClaims(String username) {
+
+        Map<String, String> claims = users.get(username);
+        return claims != null ? Collections.unmodifiableMap(claims) : null;
+    }
+
+    public long getClaimReads() {
+
+        return claimReads.sum();
+    }
+
+    public long getClaimWrites() {
+
+        return claimWrites.sum();
+    }
+
+    /**
+     * Create a user store manager backed by this user store.
+     *
+     * @return User store manager.
+     */
+    public UserStoreManager createUserStoreManager() {
+
+        return (UserStoreManager) Proxy.newProxyInstance(UserStoreManager.class.getClassLoader(),
+                new Class<?>[]{UserStoreManager.class}, new UserStoreManagerHandler());
+    }
+
+    private Map<String, String> getUserClaimValues(String username, String[] claimUris) {
+
+        claimReads.increment();
+        Map<String, String> claims = users.getOrDefault(username, Collections.emptyMap());
+        Map<String, String> values = new HashMap<>();
+        for (String claimUri : claimUris) {
+            String value = claims.get(claimUri);
+            if (value != null) {
+                values.put(claimUri, value);
+            }
+        }
+        return values;
+    }
+
+    private String getUserClaimValue(String username, String claimUri) {
+
+        claimReads.increment();
+        return users.getOrDefault(username, Collections.emptyMap()).get(claimUri);
+    }
+
+    private void setUserClaimValues(String username, Map<String, String> claims) {
+
+        claimWrites.increment();
+        if (applyWrites) {
+            users.computeIfAbsent(username, user -> new ConcurrentHashMap<>()).putAll(claims);
+        }
+    }
+
+    private String[] getUserList(String claimUri, String value) {
+
+        List<String> usernames = new ArrayList<>();
+        for (Map.Entry<String, Map<String, String>> user : users.entrySet()) {
+            if (value.equals(user.getValue().get(claimUri))) {
+                usernames.add(user.getKey());
+            }
+        }
+        return usernames.toArray(new String[0]);
+    }
+
+    private class UserStoreManagerHandler implements InvocationHandler {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) {
+
+            switch (method.getName()) {
+                case "getUserClaimValues":
+                    if (args.length == 3 && args[1] instanceof String[]) {
+                        return getUserClaimValues((String) args[0], (String[]) args[1]);
+                    }
+                    break;
+                case "getUserClaimValue":
+                    return getUserClaimValue((String) args[0], (String) args[1]);
+                case "setUserClaimValues":
+                    setUserClaimValues((String) args[0], (Map<String, String>) args[1]);
+                    return null;
+                case "getUserList":
+                    if (args.length == 3) {
+                        return getUserList((String) args[0], (String) args[1]);
+                    }
+                    break;
+                case "isExistingUser":
+                    return users.containsKey((String) args[0]);
+                case "getRealmConfiguration":
+                    return realmConfiguration;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "InMemoryUserStoreManager";
+                default:
+                    break;
+            }
+            throw new UnsupportedOperationException("Operation: " + method.getName() + " is not supported by the " +
+                    "in memory user store.");
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.verification.evident.benchmark.EvidentBenchmarkEnvironment;
+import org.wso2.carbon.identity.verification.evident.benchmark.EvidentSimulatedClusterCacheBackend;
+import org.wso2.carbon.identity.verification.evident.benchmark.EvidentStubServer;
+import org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants;
+import org.wso2.carbon.identity.verification.evident.metrics.EvidentIDVMetrics;
+import org.wso2.carbon.identity.verification.evident.metrics.EvidentOperationStats;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.ACCOUNT_LOCKED_CLAIM;
+
+/**
+ * Tests the Evident event handlers of several nodes of a cluster, simulated in a single JVM, sharing the user store,
+ * a local stub of the Evident API and a simulated cluster-wide cache.
+ */
+public class EvidentClusterTest {
+
+    private static final int NODES = 4;
+    private static final int USERS = 20;
+    // Latency of the stub Evident API, long enough for the logins on the other nodes to find the call in progress.
+    private static final long API_LATENCY = 500;
+    // Maximum wait for the other nodes, long enough for the first calls of a cold JVM.
+    private static final long MAX_WAIT = 20000;
+
+    private EvidentBenchmarkEnvironment environment;
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() {
+
+        EvidentSimulatedClusterCacheBackend.reset();
+        EvidentIDVMetrics.getInstance().reset();
+        executor = Executors.newFixedThreadPool(NODES * USERS);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        executor.shutdownNow();
+        if (environment != null) {
+            environment.close();
+            environment = null;
+        }
+        EvidentSimulatedClusterCacheBackend.reset();
+    }
+
+    @Test
+    public void testLoginsOnAllNodesShareStatusCheck() throws Exception {
+
+        Properties properties = new Properties();
+        properties.setProperty(EvidentIDVConstants.CACHE_IN_FLIGHT_MAX_WAIT, Long.toString(MAX_WAIT));
+        List<EvidentIDVHandler> nodes = createCluster(properties);
+        for (int i = 0; i < USERS; i++) {
+            String prefix = i % 2 == 0 ? EvidentStubServer.VERIFIED_PREFIX : EvidentStubServer.PENDING_PREFIX;
+            environment.addPendingUser(getUsername(i), prefix + getUsername(i));
+        }
+
+        loginOnAllNodes(nodes, USERS);
+
+        assertEquals(environment.getServer().getStatusRequests(), USERS,
+                "Logins of a user on all the nodes should share a single Evident status request.");
+        for (int i = 0; i < USERS; i++) {
+            assertEquals(environment.getUserStore().getClaims(getUsername(i)).get(ACCOUNT_LOCKED_CLAIM),
+                    Boolean.toString(i % 2 != 0), "Only the accounts of the verified users should be unlocked.");
+        }
+        EvidentOperationStats waits = getClusterWaitStats();
+        assertEquals(waits.getCount(), USERS * (NODES - 1),
+                "Logins on the other nodes should wait for the status call in progress.");
+        assertEquals(waits.getFailures(), 0, "Every wait should end with the status shared by the other node.");
+    }
+
+    @Test
+    public void testWaitForOtherNodeIsBounded() throws Exception {
+
+        Properties properties = new Properties();
+        properties.setProperty(EvidentIDVConstants.CACHE_IN_FLIGHT_MAX_WAIT, Long.toString(API_LATENCY / 5));
+        List<EvidentIDVHandler> nodes = createCluster(properties);
+        environment.addPendingUser(getUsername(0), EvidentStubServer.VERIFIED_PREFIX + getUsername(0));
+
+        loginOnAllNodes(nodes, 1);
+
+        assertEquals(environment.getServer().getStatusRequests(), NODES,
+                "Nodes should make the status call themselves once the maximum wait elapses.");
+        EvidentOperationStats waits = getClusterWaitStats();
+        assertEquals(waits.getCount(), NODES - 1, "Logins on the other nodes should wait for the status call.");
+        assertEquals(waits.getFailures(), NODES - 1, "Every wait should end without a shared status.");
+    }
+
+    private List<EvidentIDVHandler> createCluster(Properties properties) throws IOException {
+
+        properties.setProperty(EvidentIDVConstants.CACHE_BACKEND, EvidentSimulatedClusterCacheBackend.class.getName());
+        environment = new EvidentBenchmarkEnvironment(properties, true,
+                new EvidentStubServer(NODES * USERS, API_LATENCY, 0, -1));
+        List<EvidentIDVHandler> nodes = new ArrayList<>(NODES);
+        nodes.add(environment.getHandler());
+        while (nodes.size() < NODES) {
+            nodes.add(environment.createNode());
+        }
+        return nodes;
+    }
+
+    /**
+     * Log in each user on every node. The first login of each user lands on a different node, and the user logs in
+     * on the remaining nodes at once after the first login has marked its status call as in progress, since the
+     * marks are not atomic.
+     */
+    private void loginOnAllNodes(List<EvidentIDVHandler> nodes, int users) throws Exception {
+
+        CountDownLatch firstLogins = new CountDownLatch(1);
+        CountDownLatch otherLogins = new CountDownLatch(1);
+        List<Future<?>> logins = new ArrayList<>(NODES * users);
+        for (int i = 0; i < users; i++) {
+            String username = getUsername(i);
+            for (int node = 0; node < NODES; node++) {
+                EvidentIDVHandler handler = nodes.get((i + node) % NODES);
+                CountDownLatch start = node == 0 ? firstLogins : otherLogins;
+                logins.add(executor.submit(() -> {
+                    start.await();
+                    handler.handleEvent(environment.createPostAuthenticationEvent(username));
+                    return null;
+                }));
+            }
+        }
+        firstLogins.countDown();
+        EvidentSimulatedClusterCacheBackend inFlightCalls =
+                new EvidentSimulatedClusterCacheBackend(EvidentIDVConstants.IN_FLIGHT_CACHE_NAME, 0);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (inFlightCalls.size() < users && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        otherLogins.countDown();
+        for (Future<?> login : logins) {
+            login.get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private static EvidentOperationStats getClusterWaitStats() {
+
+        for (EvidentOperationStats stats : EvidentIDVMetrics.getInstance().getOperationStats()) {
+            if (EvidentIDVMetrics.Operation.CLUSTER_WAIT.name().equals(stats.getOperation())) {
+                return stats;
+            }
+        }
+        throw new AssertionError("No waits for the other nodes were recorded.");
+    }
+
+    private static String getUsername(int index) {
+
+        return "cluster-user-" + index;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.verification.evident;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.event.IdentityEventConstants;
+import org.wso2.carbon.identity.event.event.Event;
+import org.wso2.carbon.identity.verification.evident.benchmark.EvidentBenchmarkEnvironment;
+import org.wso2.carbon.identity.verification.evident.benchmark.EvidentStubServer;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfig;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfigCache;
+import org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.ACCOUNT_LOCKED_CLAIM;
+
+/**
+ * Tests the Evident event handler against an in memory user store and a local stub of the Evident API.
+ */
+public class EvidentIDVHandlerTest {
+
+    private static final int CONCURRENT_EVENTS = 20;
+    // Latency of the stub Evident API, long enough for all the concurrent events to reach the handler in time.
+    private static final long API_LATENCY = 500;
+
+    private EvidentBenchmarkEnvironment environment;
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() {
+
+        executor = Executors.newFixedThreadPool(CONCURRENT_EVENTS);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+
+        executor.shutdownNow();
+        if (environment != null) {
+            environment.close();
+            environment = null;
+        }
+    }
+
+    @Test
+    public void testConcurrentLoginsOfUserShareStatusCheck() throws Exception {
+
+        environment = new EvidentBenchmarkEnvironment(new Properties(), true,
+                new EvidentStubServer(4, API_LATENCY, 0, -1));
+        environment.addPendingUser("alice", EvidentStubServer.VERIFIED_PREFIX + "alice");
+        long claimWrites = environment.getUserStore().getClaimWrites();
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> events = new ArrayList<>(CONCURRENT_EVENTS);
+        for (int i = 0; i < CONCURRENT_EVENTS; i++) {
+            events.add(executor.submit(() -> {
+                start.await();
+                environment.getHandler().handleEvent(environment.createPostAuthenticationEvent("alice"));
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> event : events) {
+            event.get(30, TimeUnit.SECONDS);
+        }
+
+        assertEquals(environment.getServer().getStatusRequests(), 1,
+                "Concurrent logins of a user should share a single Evident status request.");
+        assertEquals(environment.getUserStore().getClaimWrites() - claimWrites, 1,
+                "Concurrent logins of a user should unlock the account with a single claim write.");
+        assertEquals(environment.getUserStore().getClaims("alice").get(ACCOUNT_LOCKED_CLAIM),
+                Boolean.FALSE.toString(), "Account of the verified user should be unlocked.");
+    }
+
+    @Test
+    public void testNotificationSharesStatusCheckOfConcurrentLogins() throws Exception {
+
+        environment = new EvidentBenchmarkEnvironment(new Properties(), true,
+                new EvidentStubServer(4, API_LATENCY, 0, -1));
+        String verifyId = EvidentStubServer.VERIFIED_PREFIX + "alice";
+        environment.addPendingUser("alice", verifyId);
+        EvidentIDVConfig config = EvidentIDVConfigCache.getInstance().getConfig(
+                EvidentBenchmarkEnvironment.TENANT_DOMAIN, environment.getHandler().getPropertyNames());
+        long claimWrites = environment.getUserStore().getClaimWrites();
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> events = new ArrayList<>(CONCURRENT_EVENTS);
+        events.add(executor.submit(() -> {
+            start.await();
+            return environment.getHandler().handleVerificationNotification(verifyId, config);
+        }));
+        for (int i = 1; i < CONCURRENT_EVENTS; i++) {
+            events.add(executor.submit(() -> {
+                start.await();
+                environment.getHandler().handleEvent(environment.createPostAuthenticationEvent("alice"));
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> event : events) {
+            event.get(30, TimeUnit.SECONDS);
+        }
+
+        assertEquals(environment.getServer().getStatusRequests(), 1,
+                "A notification racing the logins of the user should share their Evident status request.");
+        assertEquals(environment.getUserStore().getClaimWrites() - claimWrites, 1,
+                "A notification racing the logins of the user should share their claim write.");
+        assertEquals(environment.getUserStore().getClaims("alice").get(ACCOUNT_LOCKED_CLAIM),
+                Boolean.FALSE.toString(), "Account of the verified user should be unlocked.");
+    }
+
+    @Test
+    public void testFailedLoginIsIgnored() throws Exception {
+
+        environment = new EvidentBenchmarkEnvironment(new Properties(), true);
+        environment.addPendingUser("alice", EvidentStubServer.VERIFIED_PREFIX + "alice");
+        long claimReads = environment.getUserStore().getClaimReads();
+
+        Event event = environment.createPostAuthenticationEvent("alice");
+        event.getEventProperties().put(IdentityEventConstants.EventProperty.OPERATION_STATUS, false);
+        environment.getHandler().handleEvent(event);
+
+        assertEquals(environment.getUserStore().getClaimReads(), claimReads,
+                "Claims of the user shouldn't be read on a failed login.");
+        assertEquals(environment.getServer().getStatusRequests(), 0,
+                "Evident shouldn't be called on a failed login.");
+    }
+
+    @Test
+    public void testLoginOfUnknownUserIsIgnored() throws Exception {
+
+        Properties properties = new Properties();
+        properties.setProperty(EvidentIDVConstants.PENDING_FILTER_ENABLE, Boolean.FALSE.toString());
+        environment = new EvidentBenchmarkEnvironment(properties, true);
+
+        Event event = environment.createPostAuthenticationEvent("mallory");
+        event.getEventProperties().remove(IdentityEventConstants.EventProperty.OPERATION_STATUS);
+        environment.getHandler().handleEvent(event);
+
+        assertEquals(environment.getUserStore().getClaimReads(), 0,
+                "Claims of an unknown user shouldn't be read.");
+    }
+}
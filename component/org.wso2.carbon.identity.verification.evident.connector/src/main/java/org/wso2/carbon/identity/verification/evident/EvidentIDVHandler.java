@@ -21,39 +21,63 @@ import edu.emory.mathcs.backport.java.util.Arrays;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.json.JSONArray;
 import org.json.JSONObject;
-import org.wso2.carbon.identity.application.common.model.Property;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.base.IdentityRuntimeException;
 import org.wso2.carbon.identity.core.bean.context.MessageContext;
+import org.wso2.carbon.identity.core.handler.InitConfig;
 import org.wso2.carbon.identity.core.model.IdentityErrorMsgContext;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.event.IdentityEventConstants;
 import org.wso2.carbon.identity.event.IdentityEventException;
 import org.wso2.carbon.identity.event.event.Event;
 import org.wso2.carbon.identity.event.handler.AbstractEventHandler;
-import org.wso2.carbon.identity.governance.IdentityGovernanceException;
 import org.wso2.carbon.identity.governance.common.IdentityConnectorConfig;
+import org.wso2.carbon.identity.verification.evident.cache.EvidentCacheBackendFactory;
+import org.wso2.carbon.identity.verification.evident.cache.EvidentInFlightRegistry;
+import org.wso2.carbon.identity.verification.evident.cache.EvidentRecheckSchedule;
+import org.wso2.carbon.identity.verification.evident.cache.EvidentSingleFlight;
+import org.wso2.carbon.identity.verification.evident.cache.EvidentSubmissionRegistry;
+import org.wso2.carbon.identity.verification.evident.cache.EvidentVerificationStatusCache;
+import org.wso2.carbon.identity.verification.evident.client.EvidentAPIClient;
+import org.wso2.carbon.identity.verification.evident.client.EvidentAPIClientManager;
+import org.wso2.carbon.identity.verification.evident.client.EvidentAPIResponse;
+import org.wso2.carbon.identity.verification.evident.client.EvidentBulkhead;
+import org.wso2.carbon.identity.verification.evident.client.EvidentRateLimiter;
+import org.wso2.carbon.identity.verification.evident.client.EvidentVerificationStatus;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfig;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfigCache;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVServerConfig;
+import org.wso2.carbon.identity.verification.evident.config.EvidentVerificationRules;
 import org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants;
+import org.wso2.carbon.identity.verification.evident.exception.EvidentAPIException;
 import org.wso2.carbon.identity.verification.evident.exception.EvidentIDVHandlerException;
+import org.wso2.carbon.identity.verification.evident.exception.EvidentQueueFullException;
 import org.wso2.carbon.identity.verification.evident.internal.EvidentIDVDataHolder;
+import org.wso2.carbon.identity.verification.evident.metrics.EvidentIDVMetrics;
+import org.wso2.carbon.identity.verification.evident.task.EvidentConnectionWarmer;
+import org.wso2.carbon.identity.verification.evident.task.EvidentPendingUserIndex;
+import org.wso2.carbon.identity.verification.evident.task.EvidentVerificationSubmitter;
+import org.wso2.carbon.identity.verification.evident.task.EvidentVerificationSweeper;
 import org.wso2.carbon.user.core.UserCoreConstants;
 import org.wso2.carbon.user.core.UserStoreConfigConstants;
 import org.wso2.carbon.user.core.UserStoreException;
 import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.carbon.user.core.util.UserCoreUtil;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.ACCOUNT_LOCKED_CLAIM;
 import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.ACCOUNT_STATE_CLAIM_URI;
@@ -62,10 +86,14 @@ import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.EMAIL_
 import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.SELF_SIGNUP_ROLE;
 import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.EVIDENT_API_PATH_VERIFY_REQUESTS;
 import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.EVIDENT_VERIFICATION_ID_CLAIM_URI;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.EVIDENT_WEBHOOK_SERVLET_PATH;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.IN_FLIGHT_CACHE_NAME;
 import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.PENDING_SELF_REGISTRATION;
-import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.FIRST_NAME_CLAIM_URI;
-import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.LAST_NAME_CLAIM_URI;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.RECHECK_CACHE_NAME;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.STATUS_CACHE_NAME;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SUBMISSION_CACHE_NAME;
 import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.VERIFICATION_FAILED_ERROR_CODE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.VERIFICATION_UNAVAILABLE_ERROR_CODE;
 import static org.wso2.carbon.user.core.UserCoreConstants.DEFAULT_PROFILE;
 
 /**
@@ -75,149 +103,498 @@ public class EvidentIDVHandler extends AbstractEventHandler implements IdentityC
 
     public static final Log log = LogFactory.getLog(EvidentIDVHandler.class);
     public static final String NOT_ELIGIBLE = "NOT_ELIGIBLE";
-    public static final String COMMA_WITH_SPACES_REGEX = "\\s*,\\s*";
 
-    private boolean enabled = false;
-    private String key;
-    private String secret;
-    private String basePath;
-    private String emailSummary = "";
-    private String emailDescription = "";
-    private String userStores;
+    private static final String[] VERIFICATION_ELIGIBILITY_CLAIMS = {
+            ACCOUNT_LOCKED_CLAIM,
+            ACCOUNT_STATE_CLAIM_URI,
+            EVIDENT_VERIFICATION_ID_CLAIM_URI
+    };
+
+    // Interval in milliseconds to poll for the result of a call in progress on another node.
+    private static final long IN_FLIGHT_POLL_INTERVAL = 50;
+
+    private final EvidentSingleFlight<StatusCheckResult> statusChecks = new EvidentSingleFlight<>();
+    private final EvidentSingleFlight<String> submissions = new EvidentSingleFlight<>();
+
+    private volatile EvidentVerificationStatusCache statusCache;
+    private volatile EvidentSubmissionRegistry submissionRegistry;
+    private volatile EvidentInFlightRegistry inFlightCalls;
+    private volatile EvidentRecheckSchedule recheckSchedule;
+    private volatile EvidentPendingUserIndex pendingUsers;
+
+    public EvidentIDVHandler() {
+
+        initState(EvidentIDVDataHolder.getInstance().getServerConfig());
+    }
+
+    @Override
+    public void init(InitConfig configuration) throws IdentityRuntimeException {
+
+        super.init(configuration);
+        Properties moduleProperties = configs != null ? configs.getModuleProperties() : null;
+        EvidentIDVServerConfig serverConfig = EvidentIDVServerConfig.build(moduleProperties);
+        EvidentIDVDataHolder dataHolder = EvidentIDVDataHolder.getInstance();
+        dataHolder.setServerConfig(serverConfig);
+        initState(serverConfig);
+        dataHolder.setRateLimiter(serverConfig.isRateLimitEnabled() ? new EvidentRateLimiter(serverConfig) : null);
+        dataHolder.setBulkhead(serverConfig.isBulkheadEnabled() ? new EvidentBulkhead(serverConfig) : null);
+
+        EvidentVerificationSubmitter previousSubmitter = dataHolder.getVerificationSubmitter();
+        if (previousSubmitter != null) {
+            previousSubmitter.shutdown();
+        }
+        dataHolder.setVerificationSubmitter(serverConfig.isAsyncSubmissionEnabled() ?
+                new EvidentVerificationSubmitter(this::submitVerificationRequestAsync, serverConfig) : null);
+
+        EvidentVerificationSweeper previousSweeper = dataHolder.getVerificationSweeper();
+        if (previousSweeper != null) {
+            previousSweeper.shutdown();
+        }
+        EvidentVerificationSweeper sweeper = null;
+        if (serverConfig.isSweeperEnabled()) {
+            sweeper = new EvidentVerificationSweeper(this::verifyPendingUser, getPropertyNames(), serverConfig);
+            sweeper.start();
+        }
+        dataHolder.setVerificationSweeper(sweeper);
+
+        EvidentConnectionWarmer previousWarmer = dataHolder.getConnectionWarmer();
+        if (previousWarmer != null) {
+            previousWarmer.shutdown();
+        }
+        EvidentConnectionWarmer warmer = null;
+        if (serverConfig.isWarmUpEnabled()) {
+            warmer = new EvidentConnectionWarmer(getPropertyNames(), serverConfig);
+            warmer.warmUp();
+        }
+        dataHolder.setConnectionWarmer(warmer);
+    }
+
+    /**
+     * Create the verification state of the handler on the configured cache backend. The state is shared by the
+     * nodes of the cluster if the backend is distributed.
+     */
+    private void initState(EvidentIDVServerConfig serverConfig) {
+
+        String backend = serverConfig.getCacheBackend();
+        statusCache = new EvidentVerificationStatusCache(serverConfig, EvidentCacheBackendFactory.create(backend,
+                STATUS_CACHE_NAME, serverConfig.getStatusCacheMaxEntries()));
+        submissionRegistry = new EvidentSubmissionRegistry(serverConfig, EvidentCacheBackendFactory.create(backend,
+                SUBMISSION_CACHE_NAME, serverConfig.getSubmissionIdempotencyMaxEntries()));
+        inFlightCalls = new EvidentInFlightRegistry(EvidentCacheBackendFactory.create(backend, IN_FLIGHT_CACHE_NAME,
+                serverConfig.getSubmissionIdempotencyMaxEntries()), serverConfig.getHttpRequestDeadline(),
+                serverConfig.getCacheInFlightMaxWait());
+        recheckSchedule = new EvidentRecheckSchedule(serverConfig, EvidentCacheBackendFactory.create(backend,
+                RECHECK_CACHE_NAME, serverConfig.getRecheckMaxEntries()));
+
+        EvidentPendingUserIndex previousPendingUsers = pendingUsers;
+        if (previousPendingUsers != null) {
+            previousPendingUsers.shutdown();
+        }
+        pendingUsers = new EvidentPendingUserIndex(this::listPendingUsers, serverConfig);
+    }
 
     public void handleEvent(Event event) throws IdentityEventException {
 
+        // Eligibility checks are ordered from the cheapest to the most expensive, so that the events which don't
+        // need verification are discarded before any user store call.
+        boolean isPostAuthentication = IdentityEventConstants.Event.POST_AUTHENTICATION.equals(event.getEventName());
+        if (!isPostAuthentication && !IdentityEventConstants.Event.POST_ADD_USER.equals(event.getEventName())) {
+            return;
+        }
+        if (isPostAuthentication && EvidentIDVDataHolder.getInstance().getServerConfig().isSweeperSkipLoginCheck()) {
+            // Pending accounts are unlocked by the verification sweeper.
+            return;
+        }
+
         Map<String, Object> eventProperties = event.getEventProperties();
-        String username = (String) eventProperties.get(IdentityEventConstants.EventProperty.USER_NAME);
+        Object operationStatus = eventProperties.get(IdentityEventConstants.EventProperty.OPERATION_STATUS);
+        if (isPostAuthentication && Boolean.FALSE.equals(operationStatus)) {
+            // Failed login attempts, including the attempts of unknown usernames.
+            return;
+        }
+        String tenantDomain = (String) eventProperties.get(IdentityEventConstants.EventProperty.TENANT_DOMAIN);
+        EvidentIDVConfig config = EvidentIDVConfigCache.getInstance().getConfig(tenantDomain, getPropertyNames());
+        if (!config.isEnabled()) {
+            return;
+        }
+        // Property validation
+        if (!config.isComplete()) {
+            log.warn("Evident identity verification is enabled but one or more required parameters are not " +
+                    "provided");
+            return;
+        }
+
+        // Validate user store
         UserStoreManager userStoreManager =
                 (UserStoreManager) eventProperties.get(IdentityEventConstants.EventProperty.USER_STORE_MANAGER);
+        String currentUserStore = userStoreManager.getRealmConfiguration().getUserStoreProperties().get(
+                UserStoreConfigConstants.DOMAIN_NAME);
+        if (!config.isUserStoreEnabled(currentUserStore)) {
+            return;
+        }
 
-        String tenantDomain = (String) eventProperties.get(IdentityEventConstants.EventProperty.TENANT_DOMAIN);
+        // The pending state of an authenticated user is checked with a single claim read. The newly added users are
+        // known to exist and are always eligible.
+        String username = (String) eventProperties.get(IdentityEventConstants.EventProperty.USER_NAME);
+        if (isPostAuthentication) {
+            handlePreAuthenticationEvent(username, userStoreManager, config, Boolean.TRUE.equals(operationStatus));
+        } else {
+            handlePostAddUserEvent(username, userStoreManager, eventProperties, config);
+        }
+    }
+
+    private void handlePreAuthenticationEvent(String username, UserStoreManager userStoreManager,
+                                              EvidentIDVConfig config, boolean authenticated)
+            throws IdentityEventException {
 
-        Property[] identityProperties;
+        if (!pendingUsers.mightBePending(config.getTenantDomain(), getUserKey(username, userStoreManager,
+                config.getTenantDomain()))) {
+            // Most of the logins are of the users who are not pending the verification.
+            if (log.isDebugEnabled()) {
+                log.debug("User: " + username + " is not pending the Evident identity verification.");
+            }
+            return;
+        }
+        // The user of an event without the authentication status may not exist, e.g. a mistyped username.
+        if (!authenticated && !isExistingUser(username, userStoreManager)) {
+            return;
+        }
         try {
-            identityProperties = EvidentIDVDataHolder.getInstance()
-                    .getIdentityGovernanceService().getConfiguration(getPropertyNames(), tenantDomain);
-        } catch (IdentityGovernanceException e) {
-            throw new IdentityEventException("Error while retrieving account lock handler properties.", e);
+            verifyPendingUser(username, userStoreManager, config);
+        } catch (EvidentAPIException e) {
+            if (!e.isTransient()) {
+                throw e;
+            }
+            // Evident is unreachable or unhealthy. Fail fast and let the user retry instead of waiting on Evident.
+            log.warn("Couldn't check the Evident verification status of the user: " + username + ". " +
+                    e.getMessage());
+            String msg = "Identity verification status of your account couldn't be checked at the moment. " +
+                    "Please try again later.";
+            IdentityErrorMsgContext customErrorMessageContext =
+                    new IdentityErrorMsgContext(VERIFICATION_UNAVAILABLE_ERROR_CODE + ":" + msg);
+            IdentityUtil.setIdentityErrorMsg(customErrorMessageContext);
+            throw new EvidentIDVHandlerException(UserCoreConstants.ErrorCode.USER_IS_LOCKED, msg);
         }
+    }
 
-        readHandlerProperties(identityProperties);
+    /**
+     * Check the Evident verification status of a user pending the identity verification and unlock the account
+     * of the user if the verification is completed. Status responses are served from the status cache when
+     * available. The verification request of a pending user without a request ID, i.e. a background submission
+     * given up on, is re-submitted.
+     *
+     * @param username         Username of the user.
+     * @param userStoreManager User store manager of the user.
+     * @param config           Evident configuration of the tenant.
+     * @return True if the account of the user was unlocked, False otherwise.
+     * @throws IdentityEventException If any errors occurred.
+     */
+    public boolean verifyPendingUser(String username, UserStoreManager userStoreManager, EvidentIDVConfig config)
+            throws IdentityEventException {
 
-        if (enabled) {
-            // Property validation
-            if (StringUtils.isEmpty(key) || StringUtils.isEmpty(secret) || StringUtils.isEmpty(basePath)) {
-                log.warn("Evident identity verification is enabled but one or more required parameters are not " +
-                        "provided");
-                return;
+        return verifyPendingUser(username, userStoreManager, config, null);
+    }
+
+    /**
+     * Check the Evident verification status of a user pending the identity verification, taking the given permit
+     * before calling Evident. Checks answered from the status cache, skipped by the re-check schedule or shared with
+     * a check in progress don't take the permit.
+     *
+     * @param username         Username of the user.
+     * @param userStoreManager User store manager of the user.
+     * @param config           Evident configuration of the tenant.
+     * @param callPermit       Permit taken before calling Evident, e.g. the rate limit of the sweeper, or null.
+     * @return True if the account of the user was unlocked, False otherwise.
+     * @throws IdentityEventException If any errors occurred.
+     */
+    public boolean verifyPendingUser(String username, UserStoreManager userStoreManager, EvidentIDVConfig config,
+                                     EvidentVerificationSweeper.CallPermit callPermit)
+            throws IdentityEventException {
+
+        try {
+            Map<String, String> claimValues = getVerificationClaims(userStoreManager, username, config);
+            String evidentId = getEvidentId(claimValues);
+            if (StringUtils.isNotEmpty(evidentId) && !evidentId.equals(NOT_ELIGIBLE)) {
+                // Concurrent checks of the same verification request, e.g. login attempts from several tabs, share a
+                // single status lookup and claim update.
+                StatusCheckResult result = statusChecks.execute(config.getTenantDomain() + ":" + evidentId,
+                        () -> checkVerificationStatus(evidentId, username, claimValues, userStoreManager, config,
+                                false, callPermit));
+                return result.get();
+            } else if (StringUtils.isEmpty(evidentId)) {
+                log.warn("User: " + username + " is eligible for Evident identity verification but the Evident " +
+                        "ID couldn't be found. Re-submitting the verification request.");
+                resubmitVerificationRequest(username, userStoreManager, config, callPermit);
             }
+            return false;
+        } catch (UserStoreException e) {
+            throw new IdentityEventException("Error occurred while verifying the user: " + username +
+                    ", while reading claims of the user", e);
+        }
+    }
 
-            // Validate user store
-            String currentUserStore = userStoreManager.getRealmConfiguration().getUserStoreProperties().get(
-                    UserStoreConfigConstants.DOMAIN_NAME);
-            if (StringUtils.isNotEmpty(userStores)) {
-                List userStoreList = Arrays.asList(userStores.trim().split(COMMA_WITH_SPACES_REGEX));
-                if (!userStoreList.contains(currentUserStore)) {
-                    return;
+    /**
+     * Check the verification status of the given request and unlock the account of the user if verified. Repeated
+     * checks within the cache time to live are answered from the status cache, and a check in progress on another
+     * node of the cluster is awaited instead of being repeated. Requests which are not due for a check on the
+     * re-check schedule are left pending without calling Evident. Errors are captured in the result, along with the
+     * error message set for the user, so that they can be shared with the coalesced callers.
+     * <p>
+     * A check due to a notification from Evident is made regardless of the re-check schedule and the skippable call
+     * rate, and its response is cached as a notified response.
+     */
+    private StatusCheckResult checkVerificationStatus(String evidentId, String username,
+                                                      Map<String, String> claimValues,
+                                                      UserStoreManager userStoreManager, EvidentIDVConfig config,
+                                                      boolean notified,
+                                                      EvidentVerificationSweeper.CallPermit callPermit) {
+
+        EvidentVerificationStatusCache statusCache = this.statusCache;
+        EvidentInFlightRegistry inFlight = this.inFlightCalls;
+        EvidentRecheckSchedule recheckSchedule = this.recheckSchedule;
+        EvidentVerificationRules rules = config.getVerificationRules();
+        String callKey = null;
+        try {
+            EvidentVerificationStatus response = statusCache.get(evidentId, rules);
+            if (response == null && !notified && !recheckSchedule.isDue(evidentId)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Skipping the Evident verification status check of the user: " + username +
+                            " until the next scheduled check.");
                 }
+                return new StatusCheckResult(false, null, null);
+            }
+            if (response == null) {
+                callKey = "status:" + config.getTenantDomain() + ":" + evidentId;
+                response = awaitOtherNode(inFlight, callKey, config.getTenantDomain(),
+                        () -> statusCache.get(evidentId, rules));
+            }
+            boolean cached = response != null;
+            if (!cached) {
+                if (callPermit != null) {
+                    callPermit.acquire();
+                }
+                if (!acquireCallPermit(config.getTenantDomain(), !notified)) {
+                    // Leave the account pending until a later login.
+                    return new StatusCheckResult(false, null, null);
+                }
+                response = getEvidentVerificationStatus(evidentId, config);
             }
 
-            // Check existence of the user in the user store
+            boolean verified = false;
             try {
-                if (!userStoreManager.isExistingUser(username)) {
-                    return;
+                verified = applyVerificationStatus(response, username, claimValues, userStoreManager,
+                        config.getTenantDomain());
+            } finally {
+                if (notified) {
+                    statusCache.putNotified(evidentId, response);
+                    recheckSchedule.reset(evidentId);
+                } else if (!cached) {
+                    statusCache.put(evidentId, response, verified);
+                    recheckSchedule.record(evidentId, response, verified);
                 }
-            } catch (UserStoreException e) {
-                throw new EvidentIDVHandlerException("Error while checking the existence of the user: " + username +
-                        " in the user store: " + currentUserStore);
             }
-
-            if (IdentityEventConstants.Event.POST_AUTHENTICATION.equals(event.getEventName())) {
-                handlePreAuthenticationEvent(username, userStoreManager);
-            } else if (IdentityEventConstants.Event.POST_ADD_USER.equals(event.getEventName())) {
-                handlePostAddUserEvent(username, userStoreManager, eventProperties);
+            return new StatusCheckResult(verified, null, null);
+        } catch (IdentityEventException e) {
+            return new StatusCheckResult(false, e, IdentityUtil.getIdentityErrorMsg());
+        } catch (UserStoreException e) {
+            return new StatusCheckResult(false, new IdentityEventException("Error occurred while verifying the " +
+                    "user: " + username + ", while updating claims of the user", e), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new StatusCheckResult(false, new EvidentIDVHandlerException("Interrupted while checking the " +
+                    "Evident verification status of the user: " + username, e), null);
+        } finally {
+            if (callKey != null) {
+                inFlight.release(callKey);
             }
         }
     }
 
     /**
-     * Reads handler properties from the identity properties object.
+     * Wait for a call in progress on another node of the cluster to share its result, and mark the call as in
+     * progress on this node if it is not in progress elsewhere. The wait ends when the other node releases the call,
+     * its mark expires or the maximum wait of the registry elapses, whereupon this node makes the call itself. The
+     * waits are recorded as {@link EvidentIDVMetrics.Operation#CLUSTER_WAIT}, failed if no result was shared.
+     *
+     * @param inFlight     Registry of the calls in progress.
+     * @param callKey      Key of the call.
+     * @param tenantDomain Tenant domain of the call.
+     * @param sharedResult Supplier of the result shared by the other nodes, returning null until it is available.
+     * @return Result shared by another node, or null if the call is to be made by this node.
      */
-    private void readHandlerProperties(Property[] identityProperties) {
+    private static <T> T awaitOtherNode(EvidentInFlightRegistry inFlight, String callKey, String tenantDomain,
+                                        Supplier<T> sharedResult) {
 
-        for (Property property : identityProperties) {
-            if (EvidentIDVConstants.EVIDENT_VERIFICATION_ENABLE.equals(property.getName())) {
-                enabled = Boolean.parseBoolean(property.getValue());
-            }
-            if (EvidentIDVConstants.EVIDENT_API_KEY.equals(property.getName())) {
-                key = property.getValue();
+        if (inFlight.claim(callKey)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Claimed the Evident API call: " + callKey);
             }
-            if (EvidentIDVConstants.EVIDENT_API_SECRET.equals(property.getName())) {
-                secret = property.getValue();
+            return sharedResult.get();
+        }
+
+        long startTime = System.nanoTime();
+        T result = sharedResult.get();
+        try {
+            for (long polls = inFlight.getMaxWait() / IN_FLIGHT_POLL_INTERVAL; result == null && polls > 0; polls--) {
+                Thread.sleep(IN_FLIGHT_POLL_INTERVAL);
+                boolean claimed = inFlight.claim(callKey);
+                result = sharedResult.get();
+                if (claimed) {
+                    break;
+                }
             }
-            if (EvidentIDVConstants.EVIDENT_API_BASE_PATH.equals(property.getName())) {
-                basePath = property.getValue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        EvidentIDVMetrics.getInstance().recordCall(tenantDomain, EvidentIDVMetrics.Operation.CLUSTER_WAIT,
+                System.nanoTime() - startTime, result == null);
+        if (result == null && log.isDebugEnabled()) {
+            log.debug("No result shared by the other nodes for the Evident API call: " + callKey + ". Making the " +
+                    "call on this node.");
+        }
+        return result;
+    }
+
+    /**
+     * Handle a verification status change notification received from Evident. The status of the verification
+     * request is retrieved from Evident and the account of the user holding the request is unlocked if the
+     * verification is completed. The cached status of the request is discarded as it predates the change, and the
+     * check is shared with the checks of the request in progress, e.g. a login of the user racing the notification.
+     *
+     * @param verifyId Evident verification request ID.
+     * @param config   Evident configuration of the tenant.
+     * @return True if the account of the user was unlocked, False otherwise.
+     * @throws IdentityEventException If any errors occurred.
+     */
+    public boolean handleVerificationNotification(String verifyId, EvidentIDVConfig config)
+            throws IdentityEventException {
+
+        UserStoreManager userStoreManager = getUserStoreManager(config.getTenantDomain());
+        String username;
+        Map<String, String> claimValues;
+        try {
+            String[] users = userStoreManager.getUserList(EVIDENT_VERIFICATION_ID_CLAIM_URI, verifyId,
+                    DEFAULT_PROFILE);
+            if (users == null || users.length == 0) {
+                if (log.isDebugEnabled()) {
+                    log.debug("No user found for the Evident verification request: " + verifyId + " in the tenant: " +
+                            config.getTenantDomain());
+                }
+                return false;
             }
-            if (EvidentIDVConstants.EVIDENT_USER_STORES.equals(property.getName())) {
-                userStores = property.getValue();
+            if (users.length > 1) {
+                log.warn("Multiple users found for the Evident verification request: " + verifyId + " in the " +
+                        "tenant: " + config.getTenantDomain());
+                return false;
             }
-            if (EvidentIDVConstants.EVIDENT_EMAIL_SUMMARY.equals(property.getName())) {
-                emailSummary = property.getValue();
+            username = users[0];
+
+            if (!config.isUserStoreEnabled(UserCoreUtil.extractDomainFromName(username))) {
+                if (log.isDebugEnabled()) {
+                    log.debug("User: " + username + " is not eligible for Evident identity verification.");
+                }
+                return false;
             }
-            if (EvidentIDVConstants.EVIDENT_EMAIL_DESCRIPTION.equals(property.getName())) {
-                emailDescription = property.getValue();
+            claimValues = getVerificationClaims(userStoreManager, username, config);
+            if (!verifyId.equals(getEvidentId(claimValues))) {
+                if (log.isDebugEnabled()) {
+                    log.debug("User: " + username + " is not eligible for Evident identity verification.");
+                }
+                return false;
             }
+        } catch (UserStoreException e) {
+            throw new EvidentIDVHandlerException("Error while finding the user of the Evident verification " +
+                    "request: " + verifyId, e);
         }
+
+        statusCache.remove(verifyId);
+        StatusCheckResult result = statusChecks.execute(config.getTenantDomain() + ":" + verifyId,
+                () -> checkVerificationStatus(verifyId, username, claimValues, userStoreManager, config, true,
+                        null));
+        return result.get();
     }
 
-    private void handlePreAuthenticationEvent(String username, UserStoreManager userStoreManager)
-            throws IdentityEventException {
+    /**
+     * Unlock the account of the user if the verification status response represents a completed verification.
+     *
+     * @param response         Verification status response.
+     * @param username         Username of the user.
+     * @param claimValues      Verification claims of the user.
+     * @param userStoreManager User store manager of the user.
+     * @param tenantDomain     Tenant domain of the user.
+     * @return True if the account was unlocked, False otherwise.
+     * @throws UserStoreException         If the claims of the user couldn't be updated.
+     * @throws EvidentIDVHandlerException If the verified name doesn't match the name of the user.
+     */
+    private boolean applyVerificationStatus(EvidentVerificationStatus response, String username,
+                                            Map<String, String> claimValues, UserStoreManager userStoreManager,
+                                            String tenantDomain)
+            throws UserStoreException, EvidentIDVHandlerException {
 
+        boolean verified;
         try {
-            String evidentId = getEvidentId(userStoreManager, username);
-            if (StringUtils.isNotEmpty(evidentId) && !evidentId.equals(NOT_ELIGIBLE)) {
-                JSONObject response = getEvidentVerificationStatus(evidentId);
-
-                if (isUserVerified(response, username, userStoreManager)) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Evident verification completed for the user: " + username);
-                    }
-                    // Unlock user account
-                    HashMap<String, String> userClaims = new HashMap<>();
-                    userClaims.put(ACCOUNT_LOCKED_CLAIM, Boolean.FALSE.toString());
-                    userClaims.put(ACCOUNT_STATE_CLAIM_URI, ACCOUNT_STATE_UNLOCKED);
-                    userStoreManager.setUserClaimValues(username, userClaims, DEFAULT_PROFILE);
-                } else {
-                    // TODO: 2020-06-03 Need to detect submitted but not verified status and prompt to re submit.
-                    if (log.isDebugEnabled()) {
-                        log.debug("User: " + username + " has not completed the identity verification with Evident.");
-                    }
-                }
-            } else if (StringUtils.isEmpty(evidentId)) {
-                log.warn("User: " + username + " is eligible for Evident identity verification but the Evident " +
-                        "ID couldn't be found.");
+            verified = isUserVerified(response, username, claimValues);
+        } catch (EvidentIDVHandlerException e) {
+            EvidentIDVMetrics.getInstance().recordOutcome(tenantDomain, EvidentIDVMetrics.Outcome.NAME_MISMATCH);
+            throw e;
+        }
+        EvidentIDVMetrics.getInstance().recordOutcome(tenantDomain, verified ? EvidentIDVMetrics.Outcome.VERIFIED :
+                EvidentIDVMetrics.Outcome.NOT_VERIFIED);
+
+        if (verified) {
+            if (log.isDebugEnabled()) {
+                log.debug("Evident verification completed for the user: " + username);
             }
+            // Unlock user account
+            HashMap<String, String> userClaims = new HashMap<>();
+            userClaims.put(ACCOUNT_LOCKED_CLAIM, Boolean.FALSE.toString());
+            userClaims.put(ACCOUNT_STATE_CLAIM_URI, ACCOUNT_STATE_UNLOCKED);
+            setUserClaimValues(userStoreManager, username, userClaims, tenantDomain);
+            pendingUsers.removed(tenantDomain, getUserKey(username, userStoreManager, tenantDomain));
+            return true;
+        }
+        // TODO: 2020-06-03 Need to detect submitted but not verified status and prompt to re submit.
+        if (log.isDebugEnabled()) {
+            log.debug("User: " + username + " has not completed the identity verification with Evident.");
+        }
+        return false;
+    }
 
+    private boolean isExistingUser(String username, UserStoreManager userStoreManager)
+            throws EvidentIDVHandlerException {
+
+        try {
+            return userStoreManager.isExistingUser(username);
         } catch (UserStoreException e) {
-            throw new IdentityEventException("Error occurred during PreAuthenticationEvent, while reading claims " +
-                    "of the user: " + username, e);
+            throw new EvidentIDVHandlerException("Error while checking the existence of the user: " + username, e);
+        }
+    }
+
+    private UserStoreManager getUserStoreManager(String tenantDomain) throws EvidentIDVHandlerException {
+
+        try {
+            int tenantId = IdentityTenantUtil.getTenantId(tenantDomain);
+            return (UserStoreManager) EvidentIDVDataHolder.getInstance().getRealmService()
+                    .getTenantUserRealm(tenantId).getUserStoreManager();
+        } catch (org.wso2.carbon.user.api.UserStoreException e) {
+            throw new EvidentIDVHandlerException("Error while retrieving the user store manager of the tenant: " +
+                    tenantDomain, e);
         }
     }
 
     private void handlePostAddUserEvent(String username, UserStoreManager userStoreManager,
-                                        Map<String, Object> eventProperties)
+                                        Map<String, Object> eventProperties, EvidentIDVConfig config)
             throws EvidentIDVHandlerException {
 
-        String id;
+        String email;
         try {
             if (isVerifiableUser(eventProperties)) {
-                String email = userStoreManager.getUserClaimValue(username, EMAIL_ADDRESS_CLAIM, DEFAULT_PROFILE);
+                email = getEmailAddress(username, userStoreManager, eventProperties, config.getTenantDomain());
                 if (StringUtils.isEmpty(email)) {
                     log.warn("Evident identity verification is enabled but the email address was not found for " +
                             "the user: " + username);
                     return;
                 }
-                id = sendEvidentVerificationRequest(email);
             } else {
                 // User is not eligible for identity verification.
                 if (log.isDebugEnabled()) {
@@ -228,13 +605,29 @@ public class EvidentIDVHandler extends AbstractEventHandler implements IdentityC
         } catch (UserStoreException e) {
             throw new EvidentIDVHandlerException("Error while extracting the email address of the user: " + username, e);
         }
+        pendingUsers.added(config.getTenantDomain(), getUserKey(username, userStoreManager,
+                config.getTenantDomain()));
+
+        EvidentVerificationSubmitter submitter = EvidentIDVDataHolder.getInstance().getVerificationSubmitter();
+        if (submitter != null) {
+            // Lock the account right away and set the request ID once the request is accepted by Evident.
+            lockUserAccount(username, userStoreManager, config.getTenantDomain());
+            if (submitter.submit(config.getTenantDomain(), username, userStoreManager, email, config)) {
+                return;
+            }
+            if (EvidentIDVDataHolder.getInstance().getServerConfig().isRejectOnQueueFull()) {
+                throw new EvidentIDVHandlerException("Evident verification request queue is full. Couldn't submit " +
+                        "the verification request of the user: " + username);
+            }
+        }
 
+        String id = submitVerificationRequest(username, userStoreManager, email, config);
         try {
             if (StringUtils.isNotEmpty(id)) {
                 HashMap<String, String> userClaims = new HashMap<>();
                 userClaims.put(ACCOUNT_LOCKED_CLAIM, Boolean.TRUE.toString());
                 userClaims.put(EVIDENT_VERIFICATION_ID_CLAIM_URI, id);
-                userStoreManager.setUserClaimValues(username, userClaims, DEFAULT_PROFILE);
+                setUserClaimValues(userStoreManager, username, userClaims, config.getTenantDomain());
             } else {
                 throw new EvidentIDVHandlerException("Evident verification request ID was null for the user: " + username);
             }
@@ -244,6 +637,127 @@ public class EvidentIDVHandler extends AbstractEventHandler implements IdentityC
         }
     }
 
+    /**
+     * Enrol an existing user in the Evident identity verification. A verify request is sent for the email address
+     * of the user and the account is locked pending the verification, the same way as a self signed up account.
+     * Users already holding an Evident request ID, locked users and users without an email address are not
+     * eligible.
+     *
+     * @param username         Username of the user.
+     * @param userStoreManager User store manager of the user.
+     * @param config           Evident configuration of the tenant.
+     * @return True if the user was enrolled, False if the user is not eligible.
+     * @throws IdentityEventException If any errors occurred.
+     */
+    public boolean enrolUser(String username, UserStoreManager userStoreManager, EvidentIDVConfig config)
+            throws IdentityEventException {
+
+        Map<String, String> claimValues;
+        try {
+            claimValues = getUserClaimValues(userStoreManager, username,
+                    new String[]{EMAIL_ADDRESS_CLAIM, ACCOUNT_LOCKED_CLAIM, EVIDENT_VERIFICATION_ID_CLAIM_URI},
+                    config.getTenantDomain());
+        } catch (UserStoreException e) {
+            throw new EvidentIDVHandlerException("Error while reading the claims of the user: " + username, e);
+        }
+        String email = claimValues.get(EMAIL_ADDRESS_CLAIM);
+        if (StringUtils.isNotEmpty(claimValues.get(EVIDENT_VERIFICATION_ID_CLAIM_URI)) ||
+                Boolean.parseBoolean(claimValues.get(ACCOUNT_LOCKED_CLAIM)) || StringUtils.isEmpty(email)) {
+            if (log.isDebugEnabled()) {
+                log.debug("User " + username + " is not eligible for Evident identity verification");
+            }
+            return false;
+        }
+
+        String id = submitVerificationRequest(username, userStoreManager, email, config);
+        if (StringUtils.isEmpty(id)) {
+            throw new EvidentIDVHandlerException("Evident verification request ID was null for the user: " + username);
+        }
+        try {
+            HashMap<String, String> userClaims = new HashMap<>();
+            userClaims.put(ACCOUNT_LOCKED_CLAIM, Boolean.TRUE.toString());
+            userClaims.put(ACCOUNT_STATE_CLAIM_URI, PENDING_SELF_REGISTRATION);
+            userClaims.put(EVIDENT_VERIFICATION_ID_CLAIM_URI, id);
+            setUserClaimValues(userStoreManager, username, userClaims, config.getTenantDomain());
+            pendingUsers.added(config.getTenantDomain(), getUserKey(username, userStoreManager,
+                    config.getTenantDomain()));
+        } catch (UserStoreException e) {
+            throw new EvidentIDVHandlerException("Error while setting the evident verification request ID: " + id +
+                    " of the user: " + username, e);
+        }
+        return true;
+    }
+
+    /**
+     * Re-submit the verification request of a user pending the verification without a request ID. The request is
+     * queued for the background submission if enabled, and left for the next status check of the user if the queue
+     * is full. The given permit, if any, is taken before the request is sent.
+     */
+    private void resubmitVerificationRequest(String username, UserStoreManager userStoreManager,
+                                             EvidentIDVConfig config, EvidentVerificationSweeper.CallPermit callPermit)
+            throws UserStoreException, EvidentIDVHandlerException {
+
+        String email = getUserClaimValues(userStoreManager, username, new String[]{EMAIL_ADDRESS_CLAIM},
+                config.getTenantDomain()).get(EMAIL_ADDRESS_CLAIM);
+        if (StringUtils.isEmpty(email)) {
+            log.warn("Couldn't re-submit the Evident verification request since the email address was not found " +
+                    "for the user: " + username);
+            return;
+        }
+        if (callPermit != null) {
+            try {
+                callPermit.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EvidentIDVHandlerException("Interrupted while re-submitting the Evident verification " +
+                        "request of the user: " + username, e);
+            }
+        }
+        EvidentVerificationSubmitter submitter = EvidentIDVDataHolder.getInstance().getVerificationSubmitter();
+        if (submitter != null) {
+            submitter.submit(config.getTenantDomain(), username, userStoreManager, email, config);
+            return;
+        }
+        String id = submitVerificationRequest(username, userStoreManager, email, config);
+        if (StringUtils.isEmpty(id)) {
+            throw new EvidentIDVHandlerException("Evident verification request ID was null for the user: " + username);
+        }
+        HashMap<String, String> userClaims = new HashMap<>();
+        userClaims.put(EVIDENT_VERIFICATION_ID_CLAIM_URI, id);
+        setUserClaimValues(userStoreManager, username, userClaims, config.getTenantDomain());
+    }
+
+    /**
+     * Lock the account of the user pending the verification. The account state marks the user as pending, so that
+     * the request is re-submitted on the next status check of the user if the background submission is given up on.
+     */
+    private void lockUserAccount(String username, UserStoreManager userStoreManager, String tenantDomain)
+            throws EvidentIDVHandlerException {
+
+        try {
+            HashMap<String, String> userClaims = new HashMap<>();
+            userClaims.put(ACCOUNT_LOCKED_CLAIM, Boolean.TRUE.toString());
+            userClaims.put(ACCOUNT_STATE_CLAIM_URI, PENDING_SELF_REGISTRATION);
+            setUserClaimValues(userStoreManager, username, userClaims, tenantDomain);
+        } catch (UserStoreException e) {
+            throw new EvidentIDVHandlerException("Error while locking the account of the user: " + username, e);
+        }
+    }
+
+    private void setUserClaimValues(UserStoreManager userStoreManager, String username, Map<String, String> claims,
+                                    String tenantDomain) throws UserStoreException {
+
+        long startTime = System.nanoTime();
+        boolean failed = true;
+        try {
+            userStoreManager.setUserClaimValues(username, claims, DEFAULT_PROFILE);
+            failed = false;
+        } finally {
+            EvidentIDVMetrics.getInstance().recordCall(tenantDomain, EvidentIDVMetrics.Operation.CLAIM_WRITE,
+                    System.nanoTime() - startTime, failed);
+        }
+    }
+
     /**
      * Evident identity verification is only supported for self sign up users. This method returns true if the
      * eventProperties contained self sign up role.
@@ -258,22 +772,84 @@ public class EvidentIDVHandler extends AbstractEventHandler implements IdentityC
     }
 
     /**
-     * Extract the Evident ID of the given user, if the user is in a verifiable state. i.e. the account should be
-     * locked and the account state claim should represent self sign up.
+     * Return the email address of a newly added user. The claims the user was added with are carried by the event,
+     * hence the user store is only read if the email address is not among them.
+     *
+     * @param username         Username of the user.
+     * @param userStoreManager User store manager of the user.
+     * @param eventProperties  Event properties.
+     * @param tenantDomain     Tenant domain of the user.
+     * @return Email address of the user.
+     * @throws UserStoreException If the claim couldn't be read.
+     */
+    @SuppressWarnings("unchecked")
+    private String getEmailAddress(String username, UserStoreManager userStoreManager,
+                                   Map<String, Object> eventProperties, String tenantDomain)
+            throws UserStoreException {
+
+        Object userClaims = eventProperties.get(IdentityEventConstants.EventProperty.USER_CLAIMS);
+        if (userClaims instanceof Map) {
+            String email = ((Map<String, String>) userClaims).get(EMAIL_ADDRESS_CLAIM);
+            if (StringUtils.isNotEmpty(email)) {
+                return email;
+            }
+        }
+        long startTime = System.nanoTime();
+        boolean failed = true;
+        try {
+            String email = userStoreManager.getUserClaimValue(username, EMAIL_ADDRESS_CLAIM, DEFAULT_PROFILE);
+            failed = false;
+            return email;
+        } finally {
+            EvidentIDVMetrics.getInstance().recordCall(tenantDomain, EvidentIDVMetrics.Operation.CLAIM_READ,
+                    System.nanoTime() - startTime, failed);
+        }
+    }
+
+    /**
+     * Read all the claims used to verify the given user in a single user store call. The claims compared by the
+     * verification rules are read along with the eligibility claims, since they are needed to complete the
+     * verification of the user.
      *
      * @param userStoreManager User Store Manager
      * @param username         User name of the user
-     * @return True if eligible, False otherwise.
+     * @param tenantDomain     Tenant domain of the user
+     * @return Claim values of the user.
      * @throws UserStoreException On error
      */
-    private String getEvidentId(UserStoreManager userStoreManager, String username) throws UserStoreException {
+    private Map<String, String> getVerificationClaims(UserStoreManager userStoreManager, String username,
+                                                      EvidentIDVConfig config) throws UserStoreException {
+
+        String[] ruleClaims = config.getVerificationRules().getClaimUris();
+        String[] claims = new String[VERIFICATION_ELIGIBILITY_CLAIMS.length + ruleClaims.length];
+        System.arraycopy(VERIFICATION_ELIGIBILITY_CLAIMS, 0, claims, 0, VERIFICATION_ELIGIBILITY_CLAIMS.length);
+        System.arraycopy(ruleClaims, 0, claims, VERIFICATION_ELIGIBILITY_CLAIMS.length, ruleClaims.length);
+        return getUserClaimValues(userStoreManager, username, claims, config.getTenantDomain());
+    }
 
-        Map<String, String> claimValues = userStoreManager.getUserClaimValues(username,
-                new String[]{
-                        ACCOUNT_LOCKED_CLAIM,
-                        ACCOUNT_STATE_CLAIM_URI,
-                        EVIDENT_VERIFICATION_ID_CLAIM_URI
-                }, DEFAULT_PROFILE);
+    private Map<String, String> getUserClaimValues(UserStoreManager userStoreManager, String username,
+                                                   String[] claims, String tenantDomain) throws UserStoreException {
+
+        long startTime = System.nanoTime();
+        boolean failed = true;
+        try {
+            Map<String, String> claimValues = userStoreManager.getUserClaimValues(username, claims, DEFAULT_PROFILE);
+            failed = false;
+            return claimValues;
+        } finally {
+            EvidentIDVMetrics.getInstance().recordCall(tenantDomain, EvidentIDVMetrics.Operation.CLAIM_READ,
+                    System.nanoTime() - startTime, failed);
+        }
+    }
+
+    /**
+     * Extract the Evident ID of the user, if the user is in a verifiable state. i.e. the account should be
+     * locked and the account state claim should represent self sign up.
+     *
+     * @param claimValues Verification claims of the user.
+     * @return Evident ID if eligible, {@link #NOT_ELIGIBLE} otherwise.
+     */
+    private String getEvidentId(Map<String, String> claimValues) {
 
         String accountLocked = claimValues.get(ACCOUNT_LOCKED_CLAIM);
         String accountState = claimValues.get(ACCOUNT_STATE_CLAIM_URI);
@@ -287,67 +863,175 @@ public class EvidentIDVHandler extends AbstractEventHandler implements IdentityC
     }
 
     /**
-     * Initiate evident verify request for the given user.
+     * Submit an Evident verification request for the given user. A request sent for the same user and email address
+     * within the submission time to live is reused instead of sending another request, so that a retried
+     * submission, e.g. after a failure to set the request ID claim, only sets the claim again. Concurrent
+     * submissions of the same user share a single request.
      *
-     * @param email Email of the user.
+     * @param username         Username of the user.
+     * @param userStoreManager User store manager of the user.
+     * @param email            Email address of the user.
+     * @param config           Evident configuration of the tenant.
      * @return Verify Id of the request
-     * @throws EvidentIDVHandlerException if any errors occurred.
+     * @throws EvidentIDVHandlerException If the request failed.
      */
-    private String sendEvidentVerificationRequest(String email) throws EvidentIDVHandlerException {
+    private String submitVerificationRequest(String username, UserStoreManager userStoreManager, String email,
+                                             EvidentIDVConfig config) throws EvidentIDVHandlerException {
 
-        String urlPath = basePath + "/" + EVIDENT_API_PATH_VERIFY_REQUESTS;
-        HttpURLConnection con = null;
-        String response;
-        try {
-            URL url = new URL(urlPath);
-            con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("POST");
-            con.setDoOutput(true);
-            con.setRequestProperty("Content-Type", "application/json");
-            con.setRequestProperty("Authorization", "Basic " + getEncodedCredential());
-
-            // TODO: 2020-05-30 Should allow to customize from UI
-            String data = "{\n" +
-                    "\t\"email\": \"" + email + "\",\n" +
-                    "\t\"summary\": \"" + emailSummary + "\",\n" +
-                    "\t\"description\": \"" + emailDescription + "\"," +
-                    "\n" +
-                    "\t\"userAuthenticationType\": \"blindtrust\",\n" +
-                    "\t\"attributesRequested\": [\n" +
-                    "\t\t{\n" +
-                    "\t\t\t\"attributeType\": \"identity_assurance.document_verification.americas.us.drivers_license" +
-                    ".verification_status\"\n" +
-                    "\t\t},\n" +
-                    "\t\t{\n" +
-                    "\t\t\t\"attributeType\": \"core.fullname\"\n" +
-                    "\t\t}\n" +
-                    "\t]\n" +
-                    "}";
-            OutputStream os = con.getOutputStream();
-            os.write(data.getBytes(StandardCharsets.UTF_8));
-            os.close();
+        return await(submitVerificationRequestAsync(username, userStoreManager, email, config), "verify request");
+    }
 
+    /**
+     * Submit an Evident verification request for the given user asynchronously. See
+     * {@link #submitVerificationRequest(String, UserStoreManager, String, EvidentIDVConfig)}.
+     *
+     * @param username         Username of the user.
+     * @param userStoreManager User store manager of the user.
+     * @param email            Email address of the user.
+     * @param config           Evident configuration of the tenant.
+     * @return Future of the verify Id of the request, failed with an EvidentIDVHandlerException if the request
+     * failed.
+     */
+    private CompletableFuture<String> submitVerificationRequestAsync(String username,
+                                                                     UserStoreManager userStoreManager, String email,
+                                                                     EvidentIDVConfig config) {
+
+        EvidentSubmissionRegistry registry = submissionRegistry;
+        EvidentInFlightRegistry inFlight = inFlightCalls;
+        String key = getUserKey(username, userStoreManager, config.getTenantDomain());
+        String id = registry.get(key, email);
+        if (id != null) {
             if (log.isDebugEnabled()) {
-                log.debug("Sending POST request to the path: " + urlPath);
+                log.debug("Reusing the Evident verification request: " + id + " of the user: " + username);
             }
+            return CompletableFuture.completedFuture(id);
+        }
+        return submissions.executeAsync(key, () -> {
+            // A concurrent submission may have completed since the registry was checked.
+            String existingId = registry.get(key, email);
+            if (existingId != null) {
+                return CompletableFuture.completedFuture(existingId);
+            }
+            // Another node of the cluster may be submitting a request for the same user.
+            String callKey = "submission:" + key;
+            existingId = awaitOtherNode(inFlight, callKey, config.getTenantDomain(), () -> registry.get(key, email));
+            if (existingId != null) {
+                inFlight.release(callKey);
+                return CompletableFuture.completedFuture(existingId);
+            }
+            // The request ID is registered even if the caller stopped waiting, so that a retry reuses it.
+            return sendEvidentVerificationRequest(email, config).thenApply(newId -> {
+                if (StringUtils.isNotEmpty(newId)) {
+                    registry.put(key, email, newId);
+                }
+                return newId;
+            }).whenComplete((newId, error) -> inFlight.release(callKey));
+        });
+    }
 
-            con.connect();
+    /**
+     * Return the key of the user in the submission registry and the pending user index. Usernames are qualified with
+     * the user store domain, since the users of the secondary user stores are identified either by the qualified
+     * username or by the user store manager of their user store.
+     */
+    private String getUserKey(String username, UserStoreManager userStoreManager, String tenantDomain) {
+
+        String userStoreDomain;
+        int separatorIndex = username.indexOf(UserCoreConstants.DOMAIN_SEPARATOR);
+        if (separatorIndex > 0) {
+            userStoreDomain = username.substring(0, separatorIndex);
+            username = username.substring(separatorIndex + 1);
+        } else {
+            userStoreDomain = StringUtils.defaultIfEmpty(userStoreManager.getRealmConfiguration()
+                    .getUserStoreProperties().get(UserStoreConfigConstants.DOMAIN_NAME),
+                    UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME);
+        }
+        return tenantDomain + ":" + userStoreDomain.toUpperCase() + UserCoreConstants.DOMAIN_SEPARATOR + username;
+    }
 
-            response = getResponse(con);
+    /**
+     * List the keys of the users of the given tenant pending the identity verification, for the pending user index.
+     */
+    private String[] listPendingUsers(String tenantDomain) throws IdentityEventException, UserStoreException {
 
-            int status = con.getResponseCode();
-            if (status != 200) {
-                throw new EvidentIDVHandlerException("Evident API error. Error code: " + con.getResponseCode() + 
-                        " Error message: " + response);
+        PrivilegedCarbonContext.startTenantFlow();
+        try {
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(tenantDomain, true);
+            UserStoreManager userStoreManager = getUserStoreManager(tenantDomain);
+            String[] users = userStoreManager.getUserList(ACCOUNT_STATE_CLAIM_URI, PENDING_SELF_REGISTRATION,
+                    DEFAULT_PROFILE);
+            if (users == null) {
+                return new String[0];
             }
-
-        } catch (IOException e) {
-            throw new EvidentIDVHandlerException("Error while sending Evident verify request. ", e);
+            for (int i = 0; i < users.length; i++) {
+                users[i] = getUserKey(users[i], userStoreManager, tenantDomain);
+            }
+            return users;
         } finally {
-            if (con != null) {
-                con.disconnect();
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    /**
+     * Initiate evident verify request for the given user. The request is sent on an I/O thread of the client.
+     *
+     * @param email  Email of the user.
+     * @param config Evident configuration of the tenant.
+     * @return Future of the verify Id of the request, failed with an EvidentIDVHandlerException if any errors
+     * occurred.
+     */
+    private CompletableFuture<String> sendEvidentVerificationRequest(String email, EvidentIDVConfig config) {
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        EvidentBulkhead bulkhead;
+        try {
+            acquireCallPermit(config.getTenantDomain(), false);
+            bulkhead = acquireBulkheadPermit(config.getTenantDomain());
+        } catch (EvidentAPIException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        long startTime = System.nanoTime();
+        BiConsumer<EvidentAPIResponse, Throwable> onComplete = (apiResponse, error) -> {
+            boolean failed = true;
+            try {
+                if (error != null) {
+                    future.completeExceptionally(toEvidentAPIException("Error while sending Evident verify " +
+                            "request. ", error));
+                    return;
+                }
+                int status = apiResponse.getStatusCode();
+                if (status != 200) {
+                    future.completeExceptionally(new EvidentAPIException("Evident API error. Error code: " + status +
+                            " Error message: " + apiResponse.getBody(), status));
+                    return;
+                }
+                failed = false;
+                future.complete(readVerifyRequestId(apiResponse.getBody(), email));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                if (bulkhead != null) {
+                    bulkhead.release(config.getTenantDomain());
+                }
+                EvidentIDVMetrics.getInstance().recordCall(config.getTenantDomain(),
+                        EvidentIDVMetrics.Operation.VERIFY_REQUEST, System.nanoTime() - startTime, failed);
             }
+        };
+        try {
+            EvidentAPIClient client = EvidentAPIClientManager.getInstance().getClient(config.getBasePath());
+            // Only the email address is serialized per request, the rest of the body is precompiled per tenant.
+            client.postAsync(EVIDENT_API_PATH_VERIFY_REQUESTS, config.getEncodedCredential(),
+                    config.getVerifyRequestSerializer().forEmail(email)).whenComplete(onComplete);
+        } catch (RuntimeException e) {
+            // The request couldn't be started, e.g. due to a malformed base path. The permit is released the same
+            // way as on a failed call, so that it doesn't leak.
+            onComplete.accept(null, e);
         }
+        return future;
+    }
+
+    private String readVerifyRequestId(String response, String email) {
 
         JSONObject object = new JSONObject(response);
         String id = object.get("id").toString();
@@ -363,138 +1047,219 @@ public class EvidentIDVHandler extends AbstractEventHandler implements IdentityC
     }
 
     /**
-     * Check whether the verification is completed for the given verify ID.
+     * Take a permit of the rate limit for an Evident API call of the tenant, waiting up to the maximum wait time if
+     * the limit is exhausted. Skippable calls don't wait if the throttled status checks are configured to be skipped.
      *
-     * @param verifyId Verify request ID.
-     * @return True if verification completed, False otherwise.
-     * @throws EvidentIDVHandlerException If any errors occurred.
+     * @param tenantDomain Tenant domain of the call.
+     * @param skippable    Whether the call is a status check which can be skipped, leaving the account pending.
+     * @return True if the call can be made, False if the call should be skipped.
+     * @throws EvidentAPIException If no permit is available within the maximum wait time.
      */
-    private JSONObject getEvidentVerificationStatus(String verifyId) throws EvidentIDVHandlerException {
+    private boolean acquireCallPermit(String tenantDomain, boolean skippable) throws EvidentAPIException {
 
-        String urlPath = basePath + "/" + EVIDENT_API_PATH_VERIFY_REQUESTS + "/" + verifyId;
-        HttpURLConnection con = null;
-        String response;
-        try {
-            URL url = new URL(urlPath);
-            con = (HttpURLConnection) url.openConnection();
-            con.setDoOutput(true);
-            con.setRequestProperty("Content-Type", "application/json");
-            con.setRequestProperty("Authorization", "Basic " + getEncodedCredential());
+        EvidentRateLimiter rateLimiter = EvidentIDVDataHolder.getInstance().getRateLimiter();
+        if (rateLimiter == null) {
+            return true;
+        }
+        EvidentIDVServerConfig serverConfig = EvidentIDVDataHolder.getInstance().getServerConfig();
+        boolean skip = skippable && serverConfig.isSkipThrottledStatusCheck();
+        long waitTime = rateLimiter.reserve(tenantDomain,
+                skip ? 0 : TimeUnit.MILLISECONDS.toNanos(serverConfig.getRateLimitMaxWait()));
+        if (waitTime == 0) {
+            return true;
+        }
 
+        EvidentIDVMetrics metrics = EvidentIDVMetrics.getInstance();
+        if (waitTime > 0) {
+            metrics.recordThrottle(tenantDomain, EvidentIDVMetrics.Throttle.DELAYED);
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new EvidentAPIException("Interrupted while waiting for the Evident API rate limit.", e);
+            }
+            return true;
+        }
+        if (skip) {
+            metrics.recordThrottle(tenantDomain, EvidentIDVMetrics.Throttle.SKIPPED);
             if (log.isDebugEnabled()) {
-                log.debug("Sending GET request to the path: " + urlPath);
+                log.debug("Skipping the Evident verification status check since the rate limit of the tenant: " +
+                        tenantDomain + " is exhausted.");
             }
+            return false;
+        }
+        metrics.recordThrottle(tenantDomain, EvidentIDVMetrics.Throttle.REJECTED);
+        throw new EvidentAPIException("Evident API rate limit exceeded for the tenant: " + tenantDomain,
+                EvidentAPIException.TOO_MANY_REQUESTS);
+    }
 
-            con.connect();
-
-            response = getResponse(con);
-
-            int status = con.getResponseCode();
-            if (status != 200) {
-                throw new EvidentIDVHandlerException("Error status returned from the Evident API. Error code: " +
-                        con.getResponseCode() + " Error message: " + response);
-            }
+    /**
+     * Take a permit of the bulkhead for an Evident API call of the tenant, waiting up to the maximum wait time if the
+     * tenant has the maximum number of calls in progress. The permit should be released once the call completes.
+     *
+     * @param tenantDomain Tenant domain of the call.
+     * @return Bulkhead to release the permit to, or null if the concurrent calls are not limited.
+     * @throws EvidentAPIException If no permit is available within the maximum wait time.
+     */
+    private static EvidentBulkhead acquireBulkheadPermit(String tenantDomain) throws EvidentAPIException {
 
-        } catch (IOException e) {
-            throw new EvidentIDVHandlerException("Error occurred while sending Evident API request. ", e);
-        } finally {
-            if (con != null) {
-                con.disconnect();
+        EvidentBulkhead bulkhead = EvidentIDVDataHolder.getInstance().getBulkhead();
+        if (bulkhead == null) {
+            return null;
+        }
+        try {
+            if (bulkhead.acquire(tenantDomain)) {
+                return bulkhead;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EvidentAPIException("Interrupted while waiting for an Evident API call slot.", e);
         }
-
-        return new JSONObject(response);
+        EvidentIDVMetrics.getInstance().recordBulkheadRejection(tenantDomain);
+        throw new EvidentAPIException("Maximum number of concurrent Evident API calls reached for the tenant: " +
+                tenantDomain, EvidentAPIException.TOO_MANY_REQUESTS);
     }
 
     /**
-     * Checks whether the required verifications are completed for the user.
+     * Check whether the verification is completed for the given verify ID.
      *
-     * @param responseJSON responseJSON API Response.
-     * @param username Username of the user.
-     * @param userStoreManager User store manager object to pull user claims.
-     * @return True if all checks are passed, False otherwise.
-     * @throws UserStoreException If any error.
+     * @param verifyId Verify request ID.
+     * @param config   Evident configuration of the tenant.
+     * @return Verification status of the request.
+     * @throws EvidentIDVHandlerException If any errors occurred.
      */
-    private boolean isUserVerified(JSONObject responseJSON, String username, UserStoreManager userStoreManager)
-            throws UserStoreException, EvidentIDVHandlerException {
+    private EvidentVerificationStatus getEvidentVerificationStatus(String verifyId, EvidentIDVConfig config)
+            throws EvidentIDVHandlerException {
 
-        // TODO: 2020-05-30 Should be allowed to customize from the UI
-        boolean isDLValid = false;
-        boolean isFullnameValid = false;
-        JSONArray attributes = responseJSON.getJSONArray("attributes");
-        for (int i = 0; i < attributes.length(); i++) {
-            JSONObject attribute = attributes.getJSONObject(i);
-            String type = attribute.getString("type");
-            if (type.equals("identity_assurance.document_verification.americas.us.drivers_license" +
-                    ".verification_status") && attribute.has("values")) {
-                // Check validity of the DL
-                JSONArray values = attribute.getJSONArray("values");
-                isDLValid = values.getString(0).equals("Valid");
-            } else if (type.equals("core.fullname")) {
-                // Check full name
-                if (attribute.getString("status").equals("shared")) {
-                    JSONArray values = attribute.getJSONArray("values");
-                    String firstName = values.getJSONObject(0).getString("first").toLowerCase();
-                    String lastName = values.getJSONObject(0).getString("last").toLowerCase();
-
-                    Map<String, String> claimValues = userStoreManager.getUserClaimValues(username,
-                            new String[]{
-                                    FIRST_NAME_CLAIM_URI,
-                                    LAST_NAME_CLAIM_URI
-                            }, DEFAULT_PROFILE);
-
-                    if (firstName.equals(claimValues.get(FIRST_NAME_CLAIM_URI).toLowerCase())
-                            && lastName.equals(claimValues.get(LAST_NAME_CLAIM_URI).toLowerCase())) {
-                        isFullnameValid = true;
-                    } else {
-                        if (log.isDebugEnabled()) {
-                            log.debug("Evident verified first name and last name doesn't match with the provided " +
-                                    "values for the user: " + username);
-                        }
-                        String msg = "Evident identity verification failed for your account. Please contact " +
-                                "administration.";
-                        IdentityErrorMsgContext customErrorMessageContext =
-                                new IdentityErrorMsgContext(VERIFICATION_FAILED_ERROR_CODE + ":" + msg);
-                        IdentityUtil.setIdentityErrorMsg(customErrorMessageContext);
-                        throw new EvidentIDVHandlerException(UserCoreConstants.ErrorCode.USER_IS_LOCKED, msg);
-                    }
-
-                } else {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Evident verification error for the user: " + username + " core.fullname status " +
-                                "is:" + attribute.getString("status"));
-                    }
-                }
+        return await(getEvidentVerificationStatusAsync(verifyId, config), "status request");
+    }
+
+    /**
+     * @param verifyId Verify request ID.
+     * @param config   Evident configuration of the tenant.
+     * @return Future of the verification status of the request, failed with an EvidentAPIException if any errors
+     * occurred.
+     */
+    private CompletableFuture<EvidentVerificationStatus> getEvidentVerificationStatusAsync(String verifyId,
+                                                                                          EvidentIDVConfig config) {
+
+        CompletableFuture<EvidentVerificationStatus> future = new CompletableFuture<>();
+        EvidentBulkhead bulkhead;
+        try {
+            bulkhead = acquireBulkheadPermit(config.getTenantDomain());
+        } catch (EvidentAPIException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        long startTime = System.nanoTime();
+        BiConsumer<EvidentVerificationStatus, Throwable> onComplete = (status, error) -> {
+            if (bulkhead != null) {
+                bulkhead.release(config.getTenantDomain());
+            }
+            EvidentIDVMetrics metrics = EvidentIDVMetrics.getInstance();
+            metrics.recordCall(config.getTenantDomain(), EvidentIDVMetrics.Operation.STATUS_REQUEST,
+                    System.nanoTime() - startTime, error != null);
+            if (error == null) {
+                future.complete(status);
+                return;
             }
+            metrics.recordOutcome(config.getTenantDomain(), EvidentIDVMetrics.Outcome.API_ERROR);
+            future.completeExceptionally(toEvidentAPIException("Error occurred while sending Evident API request. ",
+                    error));
+        };
+        try {
+            EvidentAPIClient client = EvidentAPIClientManager.getInstance().getClient(config.getBasePath());
+            // The response is read directly from the connection, extracting only the attributes used to decide
+            // whether the user is verified.
+            client.getAsync(EVIDENT_API_PATH_VERIFY_REQUESTS + "/" + verifyId, config.getEncodedCredential(),
+                    config.getVerificationRules().getStatusReader()).whenComplete(onComplete);
+        } catch (RuntimeException e) {
+            // The request couldn't be started, e.g. due to a malformed base path. The permit is released the same
+            // way as on a failed call, so that it doesn't leak.
+            onComplete.accept(null, e);
         }
-        return isDLValid && isFullnameValid;
+        return future;
     }
 
     /**
-     * Extract String response body from HttpURLConnection
+     * Convert a failure of an Evident API call to an EvidentAPIException. A call rejected since the I/O queue of the
+     * client is full is reported as throttled, the same as a call exceeding the rate limit.
+     */
+    private static EvidentAPIException toEvidentAPIException(String message, Throwable error) {
+
+        if (error instanceof EvidentAPIException) {
+            return (EvidentAPIException) error;
+        }
+        if (error instanceof EvidentQueueFullException) {
+            return new EvidentAPIException(message + error.getMessage(), EvidentAPIException.TOO_MANY_REQUESTS);
+        }
+        return new EvidentAPIException(message, error);
+    }
+
+    /**
+     * Wait for an asynchronous Evident API call to complete, up to the request deadline. A call which doesn't
+     * complete in time is left to complete in the background, bounded by the HTTP timeouts.
      *
-     * @param con HttpURLConnection.
-     * @return Response body as a string.
-     * @throws IOException If errors occurred.
+     * @param future    Future of the call.
+     * @param operation Name of the call, used in the error messages.
+     * @param <T>       Result type of the call.
+     * @return Result of the call.
+     * @throws EvidentIDVHandlerException If the call failed or didn't complete in time.
      */
-    private String getResponse(HttpURLConnection con) throws IOException {
+    private static <T> T await(CompletableFuture<T> future, String operation) throws EvidentIDVHandlerException {
 
-        BufferedReader br = new BufferedReader(new InputStreamReader(con.getInputStream()));
-        StringBuilder sb = new StringBuilder();
-        String line;
-        while ((line = br.readLine()) != null) {
-            sb.append(line).append("\n");
+        int deadline = EvidentIDVDataHolder.getInstance().getServerConfig().getHttpRequestDeadline();
+        try {
+            return future.get(deadline, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new EvidentAPIException("Evident " + operation + " didn't complete within: " + deadline + " ms.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EvidentAPIException("Interrupted while waiting for the Evident " + operation + ".", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof EvidentIDVHandlerException) {
+                throw (EvidentIDVHandlerException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new EvidentAPIException("Error occurred while sending Evident " + operation + ".", cause);
         }
-        br.close();
-        return sb.toString();
     }
 
     /**
-     * Read API credentials and return base64 encoded value.
+     * Checks whether the verification rules of the tenant are satisfied for the user.
+     *
+     * @param response Verification status response.
+     * @param username Username of the user.
+     * @param claimValues Verification claims of the user.
+     * @return True if all checks are passed, False otherwise.
+     * @throws EvidentIDVHandlerException If the verified attributes don't match the claims of the user.
      */
-    private String getEncodedCredential() {
+    private boolean isUserVerified(EvidentVerificationStatus response, String username,
+                                   Map<String, String> claimValues) throws EvidentIDVHandlerException {
 
-        return Base64.getEncoder().encodeToString((key + ":" + secret).getBytes(StandardCharsets.UTF_8));
+        EvidentVerificationRules.Result result = response.getRules().evaluate(response, claimValues);
+        if (result == EvidentVerificationRules.Result.MISMATCH) {
+            if (log.isDebugEnabled()) {
+                log.debug("Evident verified attributes don't match with the provided values for the user: " +
+                        username);
+            }
+            String msg = "Evident identity verification failed for your account. Please contact " +
+                    "administration.";
+            IdentityErrorMsgContext customErrorMessageContext =
+                    new IdentityErrorMsgContext(VERIFICATION_FAILED_ERROR_CODE + ":" + msg);
+            IdentityUtil.setIdentityErrorMsg(customErrorMessageContext);
+            throw new EvidentIDVHandlerException(UserCoreConstants.ErrorCode.USER_IS_LOCKED, msg);
+        }
+        return result == EvidentVerificationRules.Result.VERIFIED;
     }
 
     @Override
@@ -551,6 +1316,8 @@ public class EvidentIDVHandler extends AbstractEventHandler implements IdentityC
         nameMapping.put(EvidentIDVConstants.EVIDENT_EMAIL_SUMMARY, "Verification Email Summary");
         nameMapping.put(EvidentIDVConstants.EVIDENT_EMAIL_DESCRIPTION, "Verification Email Description");
         nameMapping.put(EvidentIDVConstants.EVIDENT_USER_STORES, "Verify Enabled User Stores");
+        nameMapping.put(EvidentIDVConstants.EVIDENT_WEBHOOK_SECRET, "Webhook Secret");
+        nameMapping.put(EvidentIDVConstants.EVIDENT_VERIFICATION_RULES, "Verification Rules");
         return nameMapping;
     }
 
@@ -571,6 +1338,13 @@ public class EvidentIDVHandler extends AbstractEventHandler implements IdentityC
         nameMapping.put(EvidentIDVConstants.EVIDENT_USER_STORES, "Verification will only be engaged for the user " +
                 "stores added here. Comma separated multiple values accepted. If kept empty, verification will be " +
                 "applied to all user stores.");
+        nameMapping.put(EvidentIDVConstants.EVIDENT_WEBHOOK_SECRET, "Secret used by Evident to sign the " +
+                "verification status notifications sent to " + EVIDENT_WEBHOOK_SERVLET_PATH + ". If kept empty, " +
+                "notifications are not accepted.");
+        nameMapping.put(EvidentIDVConstants.EVIDENT_VERIFICATION_RULES, "Semicolon separated rules to be satisfied " +
+                "by the verified attributes. Ex: <attributeType>=<value>|<value> to expect a value, or " +
+                "<attributeType>:<field>=<claimURI>,<field>=<claimURI> to match the claims of the user. If kept " +
+                "empty, the driver's license and the full name are verified.");
 
         return nameMapping;
     }
@@ -586,6 +1360,8 @@ public class EvidentIDVHandler extends AbstractEventHandler implements IdentityC
         properties.add(EvidentIDVConstants.EVIDENT_EMAIL_SUMMARY);
         properties.add(EvidentIDVConstants.EVIDENT_EMAIL_DESCRIPTION);
         properties.add(EvidentIDVConstants.EVIDENT_USER_STORES);
+        properties.add(EvidentIDVConstants.EVIDENT_WEBHOOK_SECRET);
+        properties.add(EvidentIDVConstants.EVIDENT_VERIFICATION_RULES);
         return properties.toArray(new String[0]);
     }
 
@@ -601,6 +1377,9 @@ public class EvidentIDVHandler extends AbstractEventHandler implements IdentityC
         defaultProperties.put(EvidentIDVConstants.EVIDENT_EMAIL_DESCRIPTION, "WSO2 needs to verify your US driver's " +
                 "license in order to accept you as a new user.");
         defaultProperties.put(EvidentIDVConstants.EVIDENT_USER_STORES, UserStoreConfigConstants.PRIMARY);
+        defaultProperties.put(EvidentIDVConstants.EVIDENT_WEBHOOK_SECRET, "");
+        defaultProperties.put(EvidentIDVConstants.EVIDENT_VERIFICATION_RULES,
+                EvidentIDVConstants.DEFAULT_VERIFICATION_RULES);
         Properties properties = new Properties();
         properties.putAll(defaultProperties);
         return properties;
@@ -611,4 +1390,36 @@ public class EvidentIDVHandler extends AbstractEventHandler implements IdentityC
 
         return null;
     }
+
+    /**
+     * Outcome of a verification status check, shared by the coalesced callers.
+     */
+    private static class StatusCheckResult {
+
+        private final boolean verified;
+        private final IdentityEventException error;
+        private final IdentityErrorMsgContext errorMsgContext;
+
+        StatusCheckResult(boolean verified, IdentityEventException error, IdentityErrorMsgContext errorMsgContext) {
+
+            this.verified = verified;
+            this.error = error;
+            this.errorMsgContext = errorMsgContext;
+        }
+
+        /**
+         * Return whether the account was unlocked, or throw the error of the check after setting its error message
+         * for the calling thread.
+         */
+        boolean get() throws IdentityEventException {
+
+            if (errorMsgContext != null) {
+                IdentityUtil.setIdentityErrorMsg(errorMsgContext);
+            }
+            if (error != null) {
+                throw error;
+            }
+            return verified;
+        }
+    }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.verification.evident.cache;
+
+import java.io.Serializable;
+
+/**
+ * Storage of the verification state shared by the event handler, i.e. the verification status responses, the sent
+ * verification requests and the in-flight markers. Entries carry their own expiry time, which is checked by the
+ * users of the backend. A backend is either local to the node or shared by all the nodes of the cluster.
+ */
+public interface EvidentCacheBackend {
+
+    /**
+     * Return the entry of the given key.
+     *
+     * @param key Key of the entry.
+     * @return Entry, or null if there's no entry for the key.
+     */
+    Serializable get(String key);
+
+    /**
+     * Add or replace the entry of the given key.
+     *
+     * @param key   Key of the entry.
+     * @param value Entry.
+     */
+    void put(String key, Serializable value);
+
+    /**
+     * Remove the entry of the given key.
+     *
+     * @param key Key of the entry.
+     */
+    void remove(String key);
+
+    /**
+     * Return the number of entries held by this node.
+     *
+     * @return Number of entries, or -1 if unknown.
+     */
+    int size();
+
+    /**
+     * Whether the entries are visible to the other nodes of the cluster.
+     *
+     * @return True if the backend is shared by the cluster, False if it's local to the node.
+     */
+    boolean isShared();
+}
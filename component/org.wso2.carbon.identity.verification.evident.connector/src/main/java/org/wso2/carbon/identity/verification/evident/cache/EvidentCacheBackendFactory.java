@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.verification.evident.cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.reflect.InvocationTargetException;
+
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.CACHE_BACKEND_DISTRIBUTED;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.CACHE_BACKEND_LOCAL;
+
+/**
+ * Creates the cache backends of the configured type.
+ */
+public final class EvidentCacheBackendFactory {
+
+    private static final Log log = LogFactory.getLog(EvidentCacheBackendFactory.class);
+
+    private EvidentCacheBackendFactory() {}
+
+    /**
+     * Create a cache backend. Besides the local and the distributed backends, the type can be the name of a class
+     * implementing {@link EvidentCacheBackend}, with a public constructor accepting the cache name and the maximum
+     * number of entries.
+     *
+     * @param type       Backend type.
+     * @param cacheName  Name of the cache.
+     * @param maxEntries Maximum number of entries held by a local backend.
+     * @return Cache backend, or a local backend if the type is invalid.
+     */
+    public static EvidentCacheBackend create(String type, String cacheName, int maxEntries) {
+
+        if (CACHE_BACKEND_LOCAL.equalsIgnoreCase(type)) {
+            return new EvidentLocalCacheBackend(maxEntries);
+        }
+        if (CACHE_BACKEND_DISTRIBUTED.equalsIgnoreCase(type)) {
+            return new EvidentDistributedCacheBackend(cacheName);
+        }
+        try {
+            Class<?> backendClass = Class.forName(type, true, EvidentCacheBackendFactory.class.getClassLoader());
+            return backendClass.asSubclass(EvidentCacheBackend.class).getConstructor(String.class, int.class)
+                    .newInstance(cacheName, maxEntries);
+        } catch (ClassNotFoundException | ClassCastException | NoSuchMethodException | InstantiationException |
+                IllegalAccessException | InvocationTargetException e) {
+            log.error("Invalid Evident cache backend: " + type + ". Using a local backend for the cache: " +
+                    cacheName, e);
+            return new EvidentLocalCacheBackend(maxEntries);
+        }
+    }
+}
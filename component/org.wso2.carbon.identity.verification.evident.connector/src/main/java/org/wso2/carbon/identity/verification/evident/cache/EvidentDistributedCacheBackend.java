@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.verification.evident.cache;
+
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.core.cache.BaseCache;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import java.io.Serializable;
+
+/**
+ * Cache backend on a Carbon cache, shared by the nodes of the cluster when the distributed caching of the cluster
+ * is enabled. Entries of all the tenants are kept in the cache of the super tenant, since the keys are qualified
+ * with the tenant domain. Entries are evicted as configured for the Carbon caches.
+ */
+public class EvidentDistributedCacheBackend implements EvidentCacheBackend {
+
+    private final SharedCache cache;
+
+    public EvidentDistributedCacheBackend(String cacheName) {
+
+        this.cache = new SharedCache(cacheName);
+    }
+
+    @Override
+    public Serializable get(String key) {
+
+        startSuperTenantFlow();
+        try {
+            return cache.getValueFromCache(key);
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    @Override
+    public void put(String key, Serializable value) {
+
+        startSuperTenantFlow();
+        try {
+            cache.addToCache(key, value);
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+
+        startSuperTenantFlow();
+        try {
+            cache.clearCacheEntry(key);
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    @Override
+    public int size() {
+
+        return -1;
+    }
+
+    @Override
+    public boolean isShared() {
+
+        return true;
+    }
+
+    private static void startSuperTenantFlow() {
+
+        PrivilegedCarbonContext.startTenantFlow();
+        PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+        carbonContext.setTenantDomain(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        carbonContext.setTenantId(MultitenantConstants.SUPER_TENANT_ID);
+    }
+
+    private static class SharedCache extends BaseCache<String, Serializable> {
+
+        SharedCache(String cacheName) {
+
+            super(cacheName);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.verification.evident.cache;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Marks the Evident API calls in progress on a node, so that the other nodes of the cluster wait for their results
+ * instead of making the same call. Markers are only kept on a shared backend, since the calls of a single node are
+ * coalesced by {@link EvidentSingleFlight}. A marker expires after the given timeout, so that the other nodes make
+ * the call themselves if the node holding the marker fails to complete it. The other nodes wait for a result at most
+ * the given maximum wait, so that a slow call doesn't hold up the logins on every node for the full timeout.
+ */
+public class EvidentInFlightRegistry {
+
+    private final EvidentCacheBackend backend;
+    private final long timeout;
+    private final long maxWait;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * @param backend Backend of the markers.
+     * @param timeout Time in milliseconds after which a marker expires.
+     * @param maxWait Maximum time in milliseconds to wait for a call marked by another node.
+     */
+    public EvidentInFlightRegistry(EvidentCacheBackend backend, long timeout, long maxWait) {
+
+        this.backend = backend;
+        this.timeout = timeout;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Whether the calls are coordinated with the other nodes.
+     *
+     * @return True if the backend is shared by the cluster, False otherwise.
+     */
+    public boolean isEnabled() {
+
+        return backend.isShared();
+    }
+
+    /**
+     * Mark the call of the given key as in progress on this node, unless another node has already marked it. The
+     * check and the mark are not atomic across the cluster, hence two nodes may rarely make the same call.
+     *
+     * @param key Key of the call.
+     * @return True if the call is marked for this node, False if it is in progress on another node.
+     */
+    public boolean claim(String key) {
+
+        if (!isEnabled()) {
+            return true;
+        }
+        Serializable value = backend.get(key);
+        if (value instanceof Marker) {
+            Marker marker = (Marker) value;
+            if (!marker.nodeId.equals(nodeId) && marker.expiryTime > System.currentTimeMillis()) {
+                return false;
+            }
+        }
+        backend.put(key, new Marker(nodeId, System.currentTimeMillis() + timeout));
+        return true;
+    }
+
+    /**
+     * Remove the mark of the given call, if it was marked by this node.
+     *
+     * @param key Key of the call.
+     */
+    public void release(String key) {
+
+        if (!isEnabled()) {
+            return;
+        }
+        Serializable value = backend.get(key);
+        if (value instanceof Marker && ((Marker) value).nodeId.equals(nodeId)) {
+            backend.remove(key);
+        }
+    }
+
+    public long getMaxWait() {
+
+        return maxWait;
+    }
+
+    private static class Marker implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String nodeId;
+        private final long expiryTime;
+
+        Marker(String nodeId, long expiryTime) {
+
+            this.nodeId = nodeId;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.verification.evident.cache;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache backend local to the node. The least recently used entries are evicted when the backend is full.
+ */
+public class EvidentLocalCacheBackend implements EvidentCacheBackend {
+
+    private final Map<String, Serializable> entries;
+
+    public EvidentLocalCacheBackend(final int maxEntries) {
+
+        this.entries = new LinkedHashMap<String, Serializable>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Serializable> eldest) {
+
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public Serializable get(String key) {
+
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    @Override
+    public void put(String key, Serializable value) {
+
+        synchronized (entries) {
+            entries.put(key, value);
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    @Override
+    public int size() {
+
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public boolean isShared() {
+
+        return false;
+    }
+}
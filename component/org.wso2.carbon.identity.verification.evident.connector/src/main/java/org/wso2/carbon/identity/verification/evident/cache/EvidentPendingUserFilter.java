@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counting Bloom filter of the users pending the identity verification. The filter answers whether a user may be
+ * pending, with no false negatives for the users added and not removed, and a bounded rate of false positives. Each
+ * slot is a four bit counter, sixteen of which are packed in a long, so that users can also be removed. A counter
+ * which reaches its maximum is never decremented again. Keys are compared ignoring case, since the user stores
+ * may not preserve the case of the usernames.
+ */
+public class EvidentPendingUserFilter {
+
+    private static final int COUNTERS_PER_WORD = 16;
+    private static final long COUNTER_MASK = 0xFL;
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray words;
+    private final long counters;
+    private final int hashCount;
+
+    /**
+     * @param expectedUsers     Number of users the filter is sized for.
+     * @param falsePositiveRate Rate of false positives when the expected number of users are added.
+     */
+    public EvidentPendingUserFilter(int expectedUsers, double falsePositiveRate) {
+
+        int users = Math.max(1, expectedUsers);
+        long bits = (long) Math.ceil(-users * Math.log(falsePositiveRate) / (LN2 * LN2));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, (bits + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+        this.words = new AtomicLongArray(Math.max(1, wordCount));
+        this.counters = (long) words.length() * COUNTERS_PER_WORD;
+        this.hashCount = Math.max(1, (int) Math.round((double) counters / users * LN2));
+    }
+
+    /**
+     * Add a user to the filter.
+     *
+     * @param key Key of the user.
+     */
+    public void add(String key) {
+
+        long hash = hash(key);
+        long increment = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            update(index(hash + i * increment), true);
+        }
+    }
+
+    /**
+     * Remove a user from the filter. Only the users which were added should be removed, since removing other users
+     * would hide the users sharing their counters.
+     *
+     * @param key Key of the user.
+     */
+    public void remove(String key) {
+
+        long hash = hash(key);
+        long increment = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            update(index(hash + i * increment), false);
+        }
+    }
+
+    /**
+     * Whether the user may have been added to the filter.
+     *
+     * @param key Key of the user.
+     * @return False if the user was never added or was removed, True otherwise.
+     */
+    public boolean mightContain(String key) {
+
+        long hash = hash(key);
+        long increment = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long index = index(hash + i * increment);
+            if (counter(words.get((int) (index / COUNTERS_PER_WORD)), index) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the memory held by the counters of the filter.
+     *
+     * @return Size in bytes.
+     */
+    public long getSizeInBytes() {
+
+        return (long) words.length() * Long.BYTES;
+    }
+
+    private void update(long index, boolean increment) {
+
+        int word = (int) (index / COUNTERS_PER_WORD);
+        int shift = (int) (index % COUNTERS_PER_WORD) * 4;
+        while (true) {
+            long value = words.get(word);
+            long counter = (value >>> shift) & COUNTER_MASK;
+            if (counter == COUNTER_MASK || (!increment && counter == 0)) {
+                // Saturated counters are sticky, and empty counters can't be decremented.
+                return;
+            }
+            long updated = increment ? value + (1L << shift) : value - (1L << shift);
+            if (words.compareAndSet(word, value, updated)) {
+                return;
+            }
+        }
+    }
+
+    private long index(long hash) {
+
+        return Math.floorMod(hash, counters);
+    }
+
+    private static long counter(long word, long index) {
+
+        return (word >>> ((index % COUNTERS_PER_WORD) * 4)) & COUNTER_MASK;
+    }
+
+    /**
+     * Hash the key ignoring case, without allocating a lower case copy.
+     */
+    private static long hash(String key) {
+
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= Character.toLowerCase(key.charAt(i));
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
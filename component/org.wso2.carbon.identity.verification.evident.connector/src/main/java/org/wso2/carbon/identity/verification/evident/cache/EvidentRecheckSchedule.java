@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.cache;
+
+import org.wso2.carbon.identity.verification.evident.client.EvidentVerificationStatus;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVServerConfig;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Schedule of the verification status checks of the pending Evident verification requests, keyed by the request ID.
+ * While the attributes shared by a user don't change, the interval between the checks of the request grows
+ * exponentially with the number of checks, and is at least a tenth of the time since the first check, up to the
+ * configured maximum. When the user shares another attribute the checks return to the initial interval, since the
+ * verification is likely to complete soon. Hence the Evident calls for the stale pending accounts, including the
+ * accounts which shared some of the attributes or failed the verification rules, decay instead of following the
+ * login attempts of the users.
+ */
+public class EvidentRecheckSchedule {
+
+    // Minimum interval between the checks of a request, as a fraction of the time since its first check.
+    private static final int AGE_DIVISOR = 10;
+    // Number of doublings after which the exponential interval is no longer increased.
+    private static final int MAX_DOUBLINGS = 30;
+
+    private final boolean enabled;
+    private final long initialInterval;
+    private final long maxInterval;
+    private final EvidentCacheBackend backend;
+
+    public EvidentRecheckSchedule(EvidentIDVServerConfig serverConfig, EvidentCacheBackend backend) {
+
+        this.enabled = serverConfig.isRecheckEnabled();
+        this.initialInterval = serverConfig.getRecheckInitialInterval();
+        this.maxInterval = serverConfig.getRecheckMaxInterval();
+        this.backend = backend;
+    }
+
+    /**
+     * Whether the verification status of the given request should be checked with Evident.
+     *
+     * @param verifyId Evident verification request ID.
+     * @return True if the request was never checked or its next check time is reached, False otherwise.
+     */
+    public boolean isDue(String verifyId) {
+
+        if (!enabled) {
+            return true;
+        }
+        Serializable value = backend.get(verifyId);
+        return !(value instanceof Entry) || ((Entry) value).nextCheckTime <= System.currentTimeMillis();
+    }
+
+    /**
+     * Schedule the next check of the given request after a status check.
+     *
+     * @param verifyId Evident verification request ID.
+     * @param response Verification status response received from Evident.
+     * @param verified Whether the response represents a completed verification.
+     */
+    public void record(String verifyId, EvidentVerificationStatus response, boolean verified) {
+
+        if (!enabled) {
+            return;
+        }
+        if (verified) {
+            backend.remove(verifyId);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Serializable value = backend.get(verifyId);
+        Entry previous = value instanceof Entry ? (Entry) value : null;
+        long firstCheckTime = previous != null ? previous.firstCheckTime : now;
+        String[] sharedAttributes = getSharedAttributes(response);
+        long interval;
+        int checks;
+        if (previous != null && !Arrays.equals(previous.sharedAttributes, sharedAttributes)) {
+            // The user progressed with the verification since the last check.
+            checks = 1;
+            interval = initialInterval;
+        } else {
+            checks = previous != null ? previous.checks + 1 : 1;
+            long exponential = initialInterval << Math.min(checks - 1, MAX_DOUBLINGS);
+            interval = Math.min(maxInterval, Math.max(exponential, (now - firstCheckTime) / AGE_DIVISOR));
+        }
+        backend.put(verifyId, new Entry(firstCheckTime, checks, now + interval, sharedAttributes));
+    }
+
+    /**
+     * Remove the schedule of the given request, so that it's checked on the next attempt, e.g. after Evident notified
+     * a change of its status.
+     *
+     * @param verifyId Evident verification request ID.
+     */
+    public void reset(String verifyId) {
+
+        if (enabled) {
+            backend.remove(verifyId);
+        }
+    }
+
+    /**
+     * Return the types of the requested attributes shared by the user, in the order of the verification rules.
+     */
+    private static String[] getSharedAttributes(EvidentVerificationStatus response) {
+
+        String[] attributeTypes = response.getRules().getAttributeTypes();
+        List<String> sharedAttributes = new ArrayList<>(attributeTypes.length);
+        for (int i = 0; i < attributeTypes.length; i++) {
+            if (response.isShared(i)) {
+                sharedAttributes.add(attributeTypes[i]);
+            }
+        }
+        return sharedAttributes.toArray(new String[0]);
+    }
+
+    private static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 2L;
+
+        private final long firstCheckTime;
+        private final int checks;
+        private final long nextCheckTime;
+        // Attributes shared by the user as of the last check.
+        private final String[] sharedAttributes;
+
+        Entry(long firstCheckTime, int checks, long nextCheckTime, String[] sharedAttributes) {
+
+            this.firstCheckTime = firstCheckTime;
+            this.checks = checks;
+            this.nextCheckTime = nextCheckTime;
+            this.sharedAttributes = sharedAttributes;
+        }
+    }
+}
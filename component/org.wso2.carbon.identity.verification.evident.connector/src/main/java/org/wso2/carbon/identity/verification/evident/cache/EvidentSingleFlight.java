@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.cache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces the concurrent executions of an operation for the same key. The first caller of a key executes the
+ * operation while the concurrent callers of the same key wait for and share its result, instead of executing the
+ * operation again.
+ *
+ * @param <V> Result type of the operation.
+ */
+public class EvidentSingleFlight<V> {
+
+    private final Map<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedCalls = new AtomicLong();
+
+    /**
+     * Execute the operation for the given key, or wait for the result of the execution in progress for the key.
+     *
+     * @param key       Key of the operation.
+     * @param operation Operation to execute.
+     * @return Result of the operation.
+     */
+    public V execute(String key, Supplier<V> operation) {
+
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedCalls.incrementAndGet();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        try {
+            V result = operation.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Start the asynchronous operation for the given key, or return the future of the execution in progress for
+     * the key. The key is released once the operation completes, before its future is completed.
+     *
+     * @param key       Key of the operation.
+     * @param operation Operation to start.
+     * @return Future of the result of the operation.
+     */
+    public CompletableFuture<V> executeAsync(String key, Supplier<CompletableFuture<V>> operation) {
+
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedCalls.incrementAndGet();
+            return existing;
+        }
+
+        CompletableFuture<V> result;
+        try {
+            result = operation.get();
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+            return future;
+        }
+        result.whenComplete((value, error) -> {
+            inFlight.remove(key, future);
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(value);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Return the number of calls which shared the result of an execution in progress.
+     *
+     * @return Number of coalesced calls.
+     */
+    public long getCoalescedCalls() {
+
+        return coalescedCalls.get();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.cache;
+
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVServerConfig;
+
+import java.io.Serializable;
+
+/**
+ * Registry of the Evident verification requests sent for the users, keyed by the tenant and the user. A request is
+ * remembered for the configured time to live, so that a retried submission of the same user reuses the request
+ * instead of sending another one. Requests are kept on the given backend, hence are visible to all the nodes of
+ * the cluster if the backend is shared.
+ */
+public class EvidentSubmissionRegistry {
+
+    private final boolean enabled;
+    private final long timeToLive;
+    private final EvidentCacheBackend backend;
+
+    public EvidentSubmissionRegistry(EvidentIDVServerConfig serverConfig, EvidentCacheBackend backend) {
+
+        this.timeToLive = serverConfig.getSubmissionIdempotencyTimeToLive();
+        this.enabled = timeToLive > 0;
+        this.backend = backend;
+    }
+
+    /**
+     * Return the ID of the verification request sent for the given user and email address.
+     *
+     * @param key   Key of the user, unique across the tenants and the user stores.
+     * @param email Email address of the user.
+     * @return Evident verification request ID, or null if no request was sent within the time to live or the
+     * request was sent to a different email address.
+     */
+    public String get(String key, String email) {
+
+        if (!enabled) {
+            return null;
+        }
+        Serializable value = backend.get(key);
+        if (!(value instanceof Submission)) {
+            return null;
+        }
+        Submission submission = (Submission) value;
+        if (submission.expiryTime <= System.currentTimeMillis()) {
+            backend.remove(key);
+            return null;
+        }
+        return submission.email.equals(email) ? submission.requestId : null;
+    }
+
+    /**
+     * Remember the verification request sent for the given user.
+     *
+     * @param key       Key of the user, unique across the tenants and the user stores.
+     * @param email     Email address the request was sent to.
+     * @param requestId Evident verification request ID.
+     */
+    public void put(String key, String email, String requestId) {
+
+        if (!enabled) {
+            return;
+        }
+        backend.put(key, new Submission(email, requestId, System.currentTimeMillis() + timeToLive));
+    }
+
+    /**
+     * Return the number of requests remembered by this node, including the expired requests which are not evicted
+     * yet.
+     *
+     * @return Number of remembered requests, or -1 if unknown.
+     */
+    public int size() {
+
+        return backend.size();
+    }
+
+    private static class Submission implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String email;
+        private final String requestId;
+        private final long expiryTime;
+
+        Submission(String email, String requestId, long expiryTime) {
+
+            this.email = email;
+            this.requestId = requestId;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
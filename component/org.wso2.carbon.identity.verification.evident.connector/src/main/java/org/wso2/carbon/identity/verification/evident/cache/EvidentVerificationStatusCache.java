@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.cache;
+
+import org.wso2.carbon.identity.verification.evident.client.EvidentVerificationStatus;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVServerConfig;
+import org.wso2.carbon.identity.verification.evident.config.EvidentVerificationRules;
+
+import java.io.Serializable;
+
+/**
+ * Cache of the Evident verification status responses, keyed by the Evident verification request ID. Responses of
+ * completed verifications are cached for the configured time to live, while the responses of the verifications
+ * which are not completed yet are cached for a shorter time. Responses are kept on the given backend, hence a
+ * response fetched or notified on one node is visible to all the nodes of the cluster if the backend is shared.
+ */
+public class EvidentVerificationStatusCache {
+
+    private final boolean enabled;
+    private final long timeToLive;
+    private final long negativeTimeToLive;
+    private final EvidentCacheBackend backend;
+
+    public EvidentVerificationStatusCache(EvidentIDVServerConfig serverConfig, EvidentCacheBackend backend) {
+
+        this.enabled = serverConfig.isStatusCacheEnabled();
+        this.timeToLive = serverConfig.getStatusCacheTimeToLive();
+        this.negativeTimeToLive = serverConfig.getStatusCacheNegativeTimeToLive();
+        this.backend = backend;
+    }
+
+    /**
+     * Return the cached verification status response of the given request.
+     *
+     * @param verifyId Evident verification request ID.
+     * @param rules    Current verification rules of the tenant.
+     * @return Cached response, or null if the response is not cached, has expired or was read for different
+     * verification rules.
+     */
+    public EvidentVerificationStatus get(String verifyId, EvidentVerificationRules rules) {
+
+        if (!enabled) {
+            return null;
+        }
+        Serializable value = backend.get(verifyId);
+        if (!(value instanceof CacheEntry)) {
+            return null;
+        }
+        CacheEntry entry = (CacheEntry) value;
+        if (entry.expiryTime <= System.currentTimeMillis()) {
+            backend.remove(verifyId);
+            return null;
+        }
+        // Responses read for the earlier rules of the tenant lack the attributes of the current rules.
+        if (!rules.getDefinition().equals(entry.rules)) {
+            return null;
+        }
+        return new EvidentVerificationStatus(rules, entry.statuses, entry.values);
+    }
+
+    /**
+     * Cache the verification status response of the given request.
+     *
+     * @param verifyId Evident verification request ID.
+     * @param response Verification status response.
+     * @param verified Whether the response represents a completed verification.
+     */
+    public void put(String verifyId, EvidentVerificationStatus response, boolean verified) {
+
+        put(verifyId, response, verified ? timeToLive : negativeTimeToLive);
+    }
+
+    /**
+     * Cache a verification status response received due to a notification from Evident. Since Evident notifies
+     * the status changes, such responses are cached for the full time to live even if the verification is not
+     * completed.
+     *
+     * @param verifyId Evident verification request ID.
+     * @param response Verification status response.
+     */
+    public void putNotified(String verifyId, EvidentVerificationStatus response) {
+
+        put(verifyId, response, timeToLive);
+    }
+
+    private void put(String verifyId, EvidentVerificationStatus response, long entryTimeToLive) {
+
+        if (!enabled) {
+            return;
+        }
+        backend.put(verifyId, new CacheEntry(response.getRules().getDefinition(), response.getStatuses(),
+                response.getValues(), System.currentTimeMillis() + entryTimeToLive));
+    }
+
+    /**
+     * Remove the cached verification status response of the given request.
+     *
+     * @param verifyId Evident verification request ID.
+     */
+    public void remove(String verifyId) {
+
+        backend.remove(verifyId);
+    }
+
+    /**
+     * Return the number of responses cached by this node, including the expired responses which are not evicted
+     * yet.
+     *
+     * @return Number of cached responses, or -1 if unknown.
+     */
+    public int size() {
+
+        return backend.size();
+    }
+
+    /**
+     * Cached response, holding the attribute slots of the response along with the rules they were read for, so
+     * that the response can be restored on any node.
+     */
+    private static class CacheEntry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String rules;
+        private final String[] statuses;
+        private final String[] values;
+        private final long expiryTime;
+
+        CacheEntry(String rules, String[] statuses, String[] values, long expiryTime) {
+
+            this.rules = rules;
+            this.statuses = statuses;
+            this.values = values;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
@@ -0,0 +1,564 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.client;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVServerConfig;
+import org.wso2.carbon.identity.verification.evident.exception.EvidentAPIException;
+import org.wso2.carbon.identity.verification.evident.exception.EvidentCircuitOpenException;
+import org.wso2.carbon.identity.verification.evident.exception.EvidentQueueFullException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP client for an Evident API base path. Connections are pooled and kept alive between the requests, so that
+ * the TCP connections and the TLS sessions are reused by subsequent requests to the same base path. Requests are
+ * bounded by the connect and socket timeouts, and rejected right away while the circuit of the base path is open.
+ * The asynchronous calls are executed on the shared I/O executor of the clients, so that the callers don't hold
+ * their threads while Evident responds.
+ */
+public class EvidentAPIClient implements Closeable {
+
+    private static final Log log = LogFactory.getLog(EvidentAPIClient.class);
+    private static final String AUTHORIZATION_BASIC = "Basic ";
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVER_ERROR = 500;
+    private static final int OK = 200;
+
+    private final String basePath;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final EvidentCircuitBreaker circuitBreaker;
+    private final int maxResponseSize;
+    private final int connectTimeout;
+    private final int connectionRequestTimeout;
+    private final long keepAliveDuration;
+    private final Executor ioExecutor;
+
+    EvidentAPIClient(String basePath, EvidentIDVServerConfig serverConfig, Executor ioExecutor) {
+
+        this.basePath = basePath;
+        this.ioExecutor = ioExecutor;
+        this.maxResponseSize = serverConfig.getHttpMaxResponseSize();
+        this.connectTimeout = serverConfig.getHttpConnectTimeout();
+        this.connectionRequestTimeout = serverConfig.getHttpConnectionRequestTimeout();
+        this.keepAliveDuration = serverConfig.getHttpKeepAliveDuration();
+
+        // The system socket factory uses the default SSL context of the server, whose session cache allows the TLS
+        // sessions to be resumed when new connections are opened to the same host.
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", SSLConnectionSocketFactory.getSystemSocketFactory())
+                .build();
+
+        // All the requests of a client go to the same base path, hence a single route.
+        connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        connectionManager.setMaxTotal(serverConfig.getHttpMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(serverConfig.getHttpMaxConnections());
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(serverConfig.getHttpConnectionRequestTimeout())
+                .setConnectTimeout(serverConfig.getHttpConnectTimeout())
+                .setSocketTimeout(serverConfig.getHttpSocketTimeout())
+                .build();
+
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(new BoundedKeepAliveStrategy(serverConfig.getHttpKeepAliveDuration()))
+                .build();
+
+        circuitBreaker = serverConfig.isCircuitBreakerEnabled() ?
+                new EvidentCircuitBreaker(basePath, serverConfig) : null;
+    }
+
+    /**
+     * Send a POST request to the given path of the base path asynchronously, writing the JSON payload directly into
+     * the request stream on an I/O thread.
+     *
+     * @param path              Path relative to the base path.
+     * @param encodedCredential Base64 encoded API credential.
+     * @param payload           JSON payload.
+     * @return Future of the API response, failed with an IOException if the request couldn't be completed.
+     */
+    public CompletableFuture<EvidentAPIResponse> postAsync(String path, String encodedCredential,
+                                                           RequestBody payload) {
+
+        HttpPost request = new HttpPost(basePath + "/" + path);
+        request.setEntity(new RequestBodyEntity(payload));
+        return executeAsync(request, () -> execute(request, encodedCredential, EvidentAPIClient::toResponse));
+    }
+
+    /**
+     * Send a GET request to the given path of the base path asynchronously and read a successful response directly
+     * from the response stream with the given reader, on an I/O thread.
+     *
+     * @param path              Path relative to the base path.
+     * @param encodedCredential Base64 encoded API credential.
+     * @param reader            Reader of the response body.
+     * @param <T>               Type of the response.
+     * @return Future of the response read by the reader, failed with an IOException if the request couldn't be
+     * completed or with an EvidentAPIException if the API returned an error status.
+     */
+    public <T> CompletableFuture<T> getAsync(String path, String encodedCredential, ResponseReader<T> reader) {
+
+        HttpGet request = new HttpGet(basePath + "/" + path);
+        request.setHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType());
+        return executeAsync(request, () -> read(request, encodedCredential, reader));
+    }
+
+    private <T> CompletableFuture<T> executeAsync(HttpRequestBase request, Call<T> call) {
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            ioExecutor.execute(() -> {
+                try {
+                    future.complete(call.execute());
+                } catch (IOException | EvidentAPIException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new EvidentQueueFullException("Evident API call queue is full. Couldn't " +
+                    "send the " + request.getMethod() + " request to the path: " + request.getURI(), e));
+        }
+        return future;
+    }
+
+    private <T> T read(HttpGet request, String encodedCredential, ResponseReader<T> reader)
+            throws IOException, EvidentAPIException {
+
+        try {
+            return execute(request, encodedCredential, (statusCode, content) -> {
+                if (statusCode == OK && content != null) {
+                    return reader.read(content);
+                }
+                throw new ErrorStatusException(toResponse(statusCode, content));
+            });
+        } catch (ErrorStatusException e) {
+            throw new EvidentAPIException("Error status returned from the Evident API. Error code: " +
+                    e.response.getStatusCode() + " Error message: " + e.response.getBody(),
+                    e.response.getStatusCode());
+        }
+    }
+
+    private <T> T execute(HttpRequestBase request, String encodedCredential, StatusResponseReader<T> reader)
+            throws IOException {
+
+        request.setHeader(HttpHeaders.AUTHORIZATION, AUTHORIZATION_BASIC + encodedCredential);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Sending " + request.getMethod() + " request to the path: " + request.getURI());
+        }
+
+        long circuitEpoch = circuitBreaker != null ? circuitBreaker.tryAcquire() : 0;
+        if (circuitEpoch == EvidentCircuitBreaker.NOT_PERMITTED) {
+            throw new EvidentCircuitOpenException("Evident API calls to the base path: " + basePath + " are " +
+                    "suspended since the recent calls failed. Retry later.");
+        }
+
+        long startTime = System.currentTimeMillis();
+        boolean failed = true;
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            failed = statusCode == TOO_MANY_REQUESTS || statusCode >= SERVER_ERROR;
+
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return reader.read(statusCode, null);
+            }
+            if (entity.getContentLength() > maxResponseSize) {
+                throw new IOException("Evident API response of: " + entity.getContentLength() + " bytes exceeds " +
+                        "the maximum response size: " + maxResponseSize);
+            }
+            T result = reader.read(statusCode, new BoundedInputStream(entity.getContent(), maxResponseSize));
+            // The entity has to be fully consumed for the connection to be released back to the pool.
+            EntityUtils.consume(entity);
+            return result;
+        } finally {
+            if (circuitBreaker != null) {
+                circuitBreaker.onResult(circuitEpoch, failed, System.currentTimeMillis() - startTime);
+            }
+        }
+    }
+
+    private static EvidentAPIResponse toResponse(int statusCode, InputStream content) throws IOException {
+
+        if (content == null) {
+            return new EvidentAPIResponse(statusCode, null);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        return new EvidentAPIResponse(statusCode, new String(body.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Evict the expired connections and the connections which were idle longer than the given time.
+     *
+     * @param idleTimeout Idle time in milliseconds.
+     */
+    void evictIdleConnections(long idleTimeout) {
+
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Open connections to the base path until the pool holds the given number of connections, so that the host name
+     * resolution, the TCP connects and the TLS handshakes are done ahead of the first requests. The connections are
+     * returned to the pool as idle connections.
+     *
+     * @param connections Number of connections the pool should hold.
+     * @return Number of connections opened.
+     * @throws IOException If a connection couldn't be opened.
+     */
+    public int warmUp(int connections) throws IOException {
+
+        PoolStats poolStats = connectionManager.getTotalStats();
+        int missing = Math.min(connections, connectionManager.getMaxTotal()) -
+                (poolStats.getAvailable() + poolStats.getLeased());
+        if (missing <= 0) {
+            return 0;
+        }
+
+        HttpRoute route = getRoute();
+        HttpClientContext context = HttpClientContext.create();
+        // All the connections are held until the end, so that the pool hands out a new connection each time.
+        List<HttpClientConnection> leased = new ArrayList<>(missing);
+        int opened = 0;
+        try {
+            for (int i = 0; i < missing; i++) {
+                HttpClientConnection connection = connectionManager.requestConnection(route, null)
+                        .get(connectionRequestTimeout, TimeUnit.MILLISECONDS);
+                leased.add(connection);
+                if (!connection.isOpen()) {
+                    connectionManager.connect(connection, route, connectTimeout, context);
+                    connectionManager.routeComplete(connection, route, context);
+                    // Binds the streams of the connection, which are otherwise bound on the first request, but are
+                    // read by the stale connection check before a pooled connection is reused.
+                    connection.flush();
+                    opened++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while opening connections to the base path: " + basePath, e);
+        } catch (ExecutionException | ConnectionPoolTimeoutException e) {
+            throw new IOException("Error while leasing a connection to the base path: " + basePath, e);
+        } finally {
+            for (HttpClientConnection connection : leased) {
+                connectionManager.releaseConnection(connection, null, keepAliveDuration, TimeUnit.MILLISECONDS);
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * Return the route of the requests to the base path, the same as the route planned by the HTTP client.
+     */
+    private HttpRoute getRoute() throws IOException {
+
+        HttpHost host;
+        try {
+            host = URIUtils.extractHost(URI.create(basePath));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid Evident API base path: " + basePath, e);
+        }
+        if (host == null) {
+            throw new IOException("Invalid Evident API base path: " + basePath);
+        }
+        HttpHost target = host.getPort() > 0 ? host : new HttpHost(host.getHostName(),
+                DefaultSchemePortResolver.INSTANCE.resolve(host), host.getSchemeName());
+        return new HttpRoute(target, null, "https".equalsIgnoreCase(target.getSchemeName()));
+    }
+
+    public String getBasePath() {
+
+        return basePath;
+    }
+
+    /**
+     * Return the statistics of the connection pool.
+     *
+     * @return Connection pool statistics.
+     */
+    public PoolStats getPoolStats() {
+
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Return the state of the circuit of the base path.
+     *
+     * @return Circuit state, or {@link EvidentCircuitBreaker.State#CLOSED} if the circuit breaker is disabled.
+     */
+    public EvidentCircuitBreaker.State getCircuitState() {
+
+        return circuitBreaker != null ? circuitBreaker.getState() : EvidentCircuitBreaker.State.CLOSED;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        httpClient.close();
+    }
+
+    /**
+     * Reads the body of a successful API response.
+     *
+     * @param <T> Type of the response.
+     */
+    public interface ResponseReader<T> {
+
+        /**
+         * Read the response body. The stream is closed by the client.
+         *
+         * @param content Response body stream.
+         * @return Response.
+         * @throws IOException If the response couldn't be read.
+         */
+        T read(InputStream content) throws IOException;
+    }
+
+    /**
+     * Body of a request, written directly into the request stream.
+     */
+    public interface RequestBody {
+
+        /**
+         * Return the length of the body in bytes.
+         *
+         * @return Content length, or a negative value if unknown.
+         */
+        long getContentLength();
+
+        /**
+         * Write the body into the request stream.
+         *
+         * @param out Request stream.
+         * @throws IOException If the body couldn't be written.
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static class RequestBodyEntity extends AbstractHttpEntity {
+
+        private final RequestBody body;
+
+        RequestBodyEntity(RequestBody body) {
+
+            this.body = body;
+            setContentType(ContentType.APPLICATION_JSON.toString());
+        }
+
+        @Override
+        public boolean isRepeatable() {
+
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+
+            return body.getContentLength();
+        }
+
+        /**
+         * Return the body as a stream, e.g. for the wire logging of HttpClient. The requests themselves write the body
+         * with {@link #writeTo(OutputStream)} without buffering it.
+         */
+        @Override
+        public InputStream getContent() throws IOException {
+
+            long contentLength = body.getContentLength();
+            ByteArrayOutputStream content = new ByteArrayOutputStream(contentLength > 0 && contentLength
+                    <= Integer.MAX_VALUE ? (int) contentLength : 1024);
+            body.writeTo(content);
+            return new ByteArrayInputStream(content.toByteArray());
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+
+            body.writeTo(out);
+        }
+
+        @Override
+        public boolean isStreaming() {
+
+            return false;
+        }
+    }
+
+    private interface Call<T> {
+
+        T execute() throws IOException, EvidentAPIException;
+    }
+
+    private interface StatusResponseReader<T> {
+
+        T read(int statusCode, InputStream content) throws IOException;
+    }
+
+    /**
+     * Carries an error response out of the response reader, to be thrown as an {@link EvidentAPIException}.
+     */
+    private static class ErrorStatusException extends IOException {
+
+        private final EvidentAPIResponse response;
+
+        ErrorStatusException(EvidentAPIResponse response) {
+
+            this.response = response;
+        }
+    }
+
+    /**
+     * Fails the read once more than the given number of bytes are read, protecting the heap from oversized
+     * responses. Closing the stream doesn't close the underlying stream, so that an oversized response is
+     * discarded with its connection instead of being drained.
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+
+        private final long maxSize;
+        private long count;
+
+        BoundedInputStream(InputStream in, long maxSize) {
+
+            super(in);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            int value = super.read();
+            if (value != -1) {
+                count(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public void close() {
+
+            // The underlying stream is consumed or discarded by the client.
+        }
+
+        private void count(long read) throws IOException {
+
+            count += read;
+            if (count > maxSize) {
+                throw new IOException("Evident API response exceeds the maximum response size: " + maxSize);
+            }
+        }
+    }
+
+    /**
+     * Keeps the connections alive for the duration advertised by the server, but not longer than the configured
+     * maximum.
+     */
+    private static class BoundedKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+        private final long maxKeepAliveDuration;
+
+        BoundedKeepAliveStrategy(long maxKeepAliveDuration) {
+
+            this.maxKeepAliveDuration = maxKeepAliveDuration;
+        }
+
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            if (duration <= 0 || duration > maxKeepAliveDuration) {
+                return maxKeepAliveDuration;
+            }
+            return duration;
+        }
+    }
+}
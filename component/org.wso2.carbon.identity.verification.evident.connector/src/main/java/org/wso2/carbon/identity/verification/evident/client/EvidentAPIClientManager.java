@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.client;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.pool.PoolStats;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVServerConfig;
+import org.wso2.carbon.identity.verification.evident.internal.EvidentIDVDataHolder;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maintains a shared pooled {@link EvidentAPIClient} for each Evident API base path and evicts the idle
+ * connections of the pools in the background. The asynchronous calls of all the clients are executed on a single
+ * bounded I/O executor, shared by the event handler, the background submission and the sweeper.
+ */
+public class EvidentAPIClientManager {
+
+    private static final Log log = LogFactory.getLog(EvidentAPIClientManager.class);
+    private static final EvidentAPIClientManager instance = new EvidentAPIClientManager();
+
+    private final Map<String, EvidentAPIClient> clients = new ConcurrentHashMap<>();
+    private ScheduledExecutorService idleConnectionEvictor;
+    private ThreadPoolExecutor ioExecutor;
+
+    private EvidentAPIClientManager() {}
+
+    /**
+     * Return a singleton instance of the EvidentAPIClientManager
+     *
+     * @return A singleton instance of the EvidentAPIClientManager
+     */
+    public static EvidentAPIClientManager getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Return the client of the given base path, creating it if it doesn't exist.
+     *
+     * @param basePath Evident API base path.
+     * @return Client of the base path.
+     */
+    public EvidentAPIClient getClient(String basePath) {
+
+        EvidentAPIClient client = clients.get(basePath);
+        if (client != null) {
+            return client;
+        }
+        return clients.computeIfAbsent(basePath, path -> {
+            startIdleConnectionEvictor();
+            if (log.isDebugEnabled()) {
+                log.debug("Creating Evident API client for the base path: " + path);
+            }
+            EvidentIDVServerConfig serverConfig = EvidentIDVDataHolder.getInstance().getServerConfig();
+            return new EvidentAPIClient(path, serverConfig, getIoExecutor(serverConfig));
+        });
+    }
+
+    /**
+     * Return the connection pool statistics of the clients, keyed by the base path.
+     *
+     * @return Connection pool statistics of the clients.
+     */
+    public Map<String, PoolStats> getPoolStats() {
+
+        Map<String, PoolStats> poolStats = new HashMap<>();
+        for (EvidentAPIClient client : clients.values()) {
+            poolStats.put(client.getBasePath(), client.getPoolStats());
+        }
+        return poolStats;
+    }
+
+    /**
+     * Return the circuit states of the clients, keyed by the base path.
+     *
+     * @return Circuit states of the clients.
+     */
+    public Map<String, EvidentCircuitBreaker.State> getCircuitStates() {
+
+        Map<String, EvidentCircuitBreaker.State> circuitStates = new HashMap<>();
+        for (EvidentAPIClient client : clients.values()) {
+            circuitStates.put(client.getBasePath(), client.getCircuitState());
+        }
+        return circuitStates;
+    }
+
+    /**
+     * Return the number of asynchronous Evident API calls waiting for an I/O thread.
+     *
+     * @return I/O queue depth.
+     */
+    public synchronized int getIoQueueDepth() {
+
+        return ioExecutor != null ? ioExecutor.getQueue().size() : 0;
+    }
+
+    private synchronized ThreadPoolExecutor getIoExecutor(EvidentIDVServerConfig serverConfig) {
+
+        if (ioExecutor == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            ioExecutor = new ThreadPoolExecutor(serverConfig.getHttpIoThreads(), serverConfig.getHttpIoThreads(),
+                    60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(serverConfig.getHttpIoQueueCapacity()),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "EvidentAPIClientIO-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+            ioExecutor.allowCoreThreadTimeOut(true);
+        }
+        return ioExecutor;
+    }
+
+    private synchronized void startIdleConnectionEvictor() {
+
+        if (idleConnectionEvictor != null) {
+            return;
+        }
+        final long idleTimeout = EvidentIDVDataHolder.getInstance().getServerConfig().getHttpIdleConnectionTimeout();
+        idleConnectionEvictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "EvidentIdleConnectionEvictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(idleTimeout / 2, 1000L);
+        idleConnectionEvictor.scheduleWithFixedDelay(() -> {
+            for (EvidentAPIClient client : clients.values()) {
+                try {
+                    client.evictIdleConnections(idleTimeout);
+                } catch (RuntimeException e) {
+                    log.error("Error while evicting idle connections of the Evident API base path: " +
+                            client.getBasePath(), e);
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Close all the clients, stop the I/O threads and stop evicting idle connections.
+     */
+    public synchronized void shutdown() {
+
+        if (idleConnectionEvictor != null) {
+            idleConnectionEvictor.shutdownNow();
+            idleConnectionEvictor = null;
+        }
+        if (ioExecutor != null) {
+            ioExecutor.shutdownNow();
+            ioExecutor = null;
+        }
+        for (EvidentAPIClient client : clients.values()) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                log.warn("Error while closing the Evident API client of the base path: " + client.getBasePath(), e);
+            }
+        }
+        clients.clear();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.client;
+
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVServerConfig;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of concurrent Evident API calls of each tenant, so that a tenant with a slow or unreachable
+ * Evident API base path can't hold the threads serving the other tenants. A caller waits for a permit up to the
+ * configured maximum wait time, and the permit is released once the call completes.
+ */
+public class EvidentBulkhead {
+
+    private final int maxConcurrentCalls;
+    private final long maxWait;
+    private final Map<String, Semaphore> tenantPermits = new ConcurrentHashMap<>();
+
+    public EvidentBulkhead(EvidentIDVServerConfig serverConfig) {
+
+        this.maxConcurrentCalls = serverConfig.getBulkheadMaxConcurrentCalls();
+        this.maxWait = serverConfig.getBulkheadMaxWait();
+    }
+
+    /**
+     * Take a permit for an Evident API call of the given tenant, waiting up to the maximum wait time if the tenant
+     * has the maximum number of calls in progress.
+     *
+     * @param tenantDomain Tenant domain of the call.
+     * @return True if the permit was taken, False if no permit became available within the maximum wait time.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean acquire(String tenantDomain) throws InterruptedException {
+
+        Semaphore permits = getPermits(tenantDomain);
+        return permits.tryAcquire() || (maxWait > 0 && permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Release the permit of a completed call.
+     *
+     * @param tenantDomain Tenant domain of the call.
+     */
+    public void release(String tenantDomain) {
+
+        getPermits(tenantDomain).release();
+    }
+
+    /**
+     * Return the number of Evident API calls in progress, per tenant.
+     *
+     * @return Calls in progress by tenant domain.
+     */
+    public Map<String, Integer> getConcurrentCalls() {
+
+        Map<String, Integer> concurrentCalls = new HashMap<>();
+        for (Map.Entry<String, Semaphore> permits : tenantPermits.entrySet()) {
+            concurrentCalls.put(permits.getKey(), maxConcurrentCalls - permits.getValue().availablePermits());
+        }
+        return concurrentCalls;
+    }
+
+    private Semaphore getPermits(String tenantDomain) {
+
+        Semaphore permits = tenantPermits.get(tenantDomain);
+        if (permits == null) {
+            permits = tenantPermits.computeIfAbsent(tenantDomain, tenant -> new Semaphore(maxConcurrentCalls, true));
+        }
+        return permits;
+    }
+}
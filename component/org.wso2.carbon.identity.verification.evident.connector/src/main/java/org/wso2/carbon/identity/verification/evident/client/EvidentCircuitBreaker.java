@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.client;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVServerConfig;
+
+/**
+ * Circuit breaker guarding the calls to an Evident API base path.
+ * <p>
+ * The outcomes of the most recent calls are recorded in a sliding window. The circuit is opened when the failure
+ * rate or the slow call rate of the window reaches the configured threshold, and the calls are rejected without
+ * reaching Evident while the circuit is open. Once the open duration elapses, a limited number of probe calls are
+ * allowed. The circuit is closed if all the probe calls succeed in time, and opened again otherwise.
+ * <p>
+ * Every state transition starts a new epoch. A permitted call carries the epoch it was permitted in, and only the
+ * results of the calls permitted in the current epoch are recorded, so that a slow call permitted while the circuit
+ * was closed isn't taken for a probe once the circuit is half open.
+ */
+public class EvidentCircuitBreaker {
+
+    private static final Log log = LogFactory.getLog(EvidentCircuitBreaker.class);
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    /**
+     * Returned by {@link #tryAcquire()} if the call is not permitted.
+     */
+    public static final long NOT_PERMITTED = -1;
+
+    /**
+     * States of the circuit.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long slowCallDuration;
+    private final int slowCallRateThreshold;
+    private final long openDuration;
+    private final int halfOpenCalls;
+
+    private final byte[] window;
+    private int windowIndex;
+    private int recordedCalls;
+    private int failedCalls;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long epoch;
+    private long openedTime;
+    private int permittedProbes;
+    private int succeededProbes;
+
+    public EvidentCircuitBreaker(String name, EvidentIDVServerConfig serverConfig) {
+
+        this.name = name;
+        this.window = new byte[serverConfig.getCircuitBreakerWindowSize()];
+        this.minimumCalls = serverConfig.getCircuitBreakerMinimumCalls();
+        this.failureRateThreshold = serverConfig.getCircuitBreakerFailureRateThreshold();
+        this.slowCallDuration = serverConfig.getCircuitBreakerSlowCallDuration();
+        this.slowCallRateThreshold = serverConfig.getCircuitBreakerSlowCallRateThreshold();
+        this.openDuration = serverConfig.getCircuitBreakerOpenDuration();
+        this.halfOpenCalls = serverConfig.getCircuitBreakerHalfOpenCalls();
+    }
+
+    /**
+     * Check whether a call is permitted. Every permitted call has to be followed by a call to
+     * {@link #onResult(long, boolean, long)} with the returned epoch.
+     *
+     * @return Epoch the call is permitted in, or {@link #NOT_PERMITTED} if the circuit is open.
+     */
+    public synchronized long tryAcquire() {
+
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedTime < openDuration) {
+                return NOT_PERMITTED;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (permittedProbes >= halfOpenCalls) {
+                return NOT_PERMITTED;
+            }
+            permittedProbes++;
+        }
+        return epoch;
+    }
+
+    /**
+     * Record the outcome of a permitted call. The outcome is ignored if the circuit changed its state since the call
+     * was permitted.
+     *
+     * @param callEpoch Epoch the call was permitted in.
+     * @param failed    Whether the call failed.
+     * @param duration  Duration of the call in milliseconds.
+     */
+    public synchronized void onResult(long callEpoch, boolean failed, long duration) {
+
+        if (callEpoch != epoch) {
+            return;
+        }
+        boolean slow = duration > slowCallDuration;
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                transitionTo(State.OPEN);
+            } else if (++succeededProbes >= halfOpenCalls) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+
+        byte outcome = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+        if (recordedCalls == window.length) {
+            byte evicted = window[windowIndex];
+            failedCalls -= evicted & FAILED;
+            slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            recordedCalls++;
+        }
+        window[windowIndex] = outcome;
+        windowIndex = (windowIndex + 1) % window.length;
+        failedCalls += outcome & FAILED;
+        slowCalls += (outcome & SLOW) >> 1;
+
+        if (recordedCalls >= minimumCalls && (failedCalls * 100 >= failureRateThreshold * recordedCalls ||
+                slowCalls * 100 >= slowCallRateThreshold * recordedCalls)) {
+            log.warn("Evident API calls to: " + name + " are failing or slow. Failed calls: " + failedCalls +
+                    ", slow calls: " + slowCalls + " of the last: " + recordedCalls + " calls. Opening the circuit " +
+                    "for: " + openDuration + " ms.");
+            transitionTo(State.OPEN);
+        }
+    }
+
+    /**
+     * Return the current state of the circuit.
+     *
+     * @return State of the circuit.
+     */
+    public synchronized State getState() {
+
+        if (state == State.OPEN && System.currentTimeMillis() - openedTime >= openDuration) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    private void transitionTo(State newState) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Evident API circuit of: " + name + " transitioned from: " + state + " to: " + newState);
+        }
+        state = newState;
+        epoch++;
+        switch (newState) {
+            case OPEN:
+                openedTime = System.currentTimeMillis();
+                break;
+            case HALF_OPEN:
+                permittedProbes = 0;
+                succeededProbes = 0;
+                break;
+            case CLOSED:
+                windowIndex = 0;
+                recordedCalls = 0;
+                failedCalls = 0;
+                slowCalls = 0;
+                if (log.isDebugEnabled()) {
+                    log.debug("Evident API calls to: " + name + " recovered. Circuit closed.");
+                }
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.client;
+
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVServerConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of the Evident API calls of each tenant and of all the tenants together, so that a burst of calls
+ * of a tenant can't exhaust the API quota shared by the tenants. Each limit is a token bucket, refilled at the
+ * configured rate up to the configured burst size.
+ * <p>
+ * A caller which finds a bucket empty reserves the next token and waits for it, as long as the wait is within the
+ * given maximum. Reserved tokens are handed out in the order of the reservations, so that the waiting callers are
+ * served first come, first served.
+ */
+public class EvidentRateLimiter {
+
+    private final TokenBucket globalBucket;
+    private final int tenantRequestsPerSecond;
+    private final int tenantBurst;
+    private final Map<String, TokenBucket> tenantBuckets = new ConcurrentHashMap<>();
+
+    public EvidentRateLimiter(EvidentIDVServerConfig serverConfig) {
+
+        this.globalBucket = new TokenBucket(serverConfig.getRateLimitRequestsPerSecond(),
+                serverConfig.getRateLimitBurst());
+        this.tenantRequestsPerSecond = serverConfig.getRateLimitTenantRequestsPerSecond();
+        this.tenantBurst = serverConfig.getRateLimitTenantBurst();
+    }
+
+    /**
+     * Reserve a permit for an Evident API call of the given tenant.
+     *
+     * @param tenantDomain Tenant domain of the call.
+     * @param maxWaitNanos Maximum time in nanoseconds the caller is willing to wait for the permit.
+     * @return Time in nanoseconds to wait before making the call, or -1 if no permit is available within the
+     * maximum wait time.
+     */
+    public long reserve(String tenantDomain, long maxWaitNanos) {
+
+        TokenBucket tenantBucket = tenantBuckets.get(tenantDomain);
+        if (tenantBucket == null) {
+            tenantBucket = tenantBuckets.computeIfAbsent(tenantDomain,
+                    tenant -> new TokenBucket(tenantRequestsPerSecond, tenantBurst));
+        }
+        long tenantWait = tenantBucket.reserve(maxWaitNanos);
+        if (tenantWait < 0) {
+            return -1;
+        }
+        long globalWait = globalBucket.reserve(maxWaitNanos);
+        if (globalWait < 0) {
+            // Release the tenant token, since the call is not made.
+            tenantBucket.release();
+            return -1;
+        }
+        return Math.max(tenantWait, globalWait);
+    }
+
+    private static class TokenBucket {
+
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefillTime = System.nanoTime();
+
+        TokenBucket(int tokensPerSecond, int capacity) {
+
+            this.tokensPerNano = tokensPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        /**
+         * Take a token, reserving the next token to be added if the bucket is empty.
+         *
+         * @return Time in nanoseconds until the reserved token is added, or -1 if that is beyond the maximum wait.
+         */
+        synchronized long reserve(long maxWaitNanos) {
+
+            refill();
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            // Tokens below zero are reserved by the waiting callers.
+            long waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            tokens--;
+            return waitNanos;
+        }
+
+        synchronized void release() {
+
+            tokens = Math.min(tokens + 1, capacity);
+        }
+
+        private void refill() {
+
+            long now = System.nanoTime();
+            tokens = Math.min(tokens + (now - lastRefillTime) * tokensPerNano, capacity);
+            lastRefillTime = now;
+        }
+    }
+}
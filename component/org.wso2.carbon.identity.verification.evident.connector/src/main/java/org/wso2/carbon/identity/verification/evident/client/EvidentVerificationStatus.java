@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.client;
+
+import org.wso2.carbon.identity.verification.evident.config.EvidentVerificationRules;
+
+/**
+ * Verification status of an Evident verification request, holding only the attributes used by the verification
+ * rules of the tenant. Attribute statuses and values are stored in the slots resolved when the rules were compiled.
+ */
+public final class EvidentVerificationStatus {
+
+    public static final String ATTRIBUTE_STATUS_SHARED = "shared";
+
+    private final EvidentVerificationRules rules;
+    private final String[] statuses;
+    private final String[] values;
+
+    /**
+     * @param rules    Verification rules the response was read for.
+     * @param statuses Status of each attribute, indexed by the attribute index.
+     * @param values   Values of each attribute, indexed by the attribute index times the field count plus the
+     *                 field index.
+     */
+    public EvidentVerificationStatus(EvidentVerificationRules rules, String[] statuses, String[] values) {
+
+        this.rules = rules;
+        this.statuses = statuses;
+        this.values = values;
+    }
+
+    /**
+     * Return the verification rules the response was read for. Responses read for different rules don't hold the
+     * attributes of the other rules.
+     *
+     * @return Verification rules.
+     */
+    public EvidentVerificationRules getRules() {
+
+        return rules;
+    }
+
+    /**
+     * Return the status of an attribute, or null if the attribute is not available.
+     *
+     * @param attribute Attribute index.
+     * @return Attribute status.
+     */
+    public String getStatus(int attribute) {
+
+        return statuses[attribute];
+    }
+
+    public boolean isShared(int attribute) {
+
+        return ATTRIBUTE_STATUS_SHARED.equals(statuses[attribute]);
+    }
+
+    /**
+     * Return the statuses of all the attributes, indexed by the attribute index.
+     *
+     * @return Attribute statuses.
+     */
+    public String[] getStatuses() {
+
+        return statuses.clone();
+    }
+
+    /**
+     * Return the values of all the attributes, indexed by the attribute index times the field count plus the field
+     * index.
+     *
+     * @return Attribute values.
+     */
+    public String[] getValues() {
+
+        return values.clone();
+    }
+
+    /**
+     * Return a value of an attribute, or null if it is not available.
+     *
+     * @param attribute Attribute index.
+     * @param field     Field index, 0 for the plain string value.
+     * @return Attribute value.
+     */
+    public String getValue(int attribute, int field) {
+
+        return values[attribute * rules.getFieldCount() + field];
+    }
+}
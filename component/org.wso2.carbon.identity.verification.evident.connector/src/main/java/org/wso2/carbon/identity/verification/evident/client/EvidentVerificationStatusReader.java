@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.client;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.wso2.carbon.identity.verification.evident.config.EvidentVerificationRules;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the verification status response of an Evident verification request directly from the response stream.
+ * Only the attributes and the value fields used by the verification rules of the tenant are extracted, all the
+ * other values are skipped without being materialized.
+ */
+public class EvidentVerificationStatusReader implements EvidentAPIClient.ResponseReader<EvidentVerificationStatus> {
+
+    private static final String ATTRIBUTES = "attributes";
+    private static final String TYPE = "type";
+    private static final String STATUS = "status";
+    private static final String VALUES = "values";
+
+    private final EvidentVerificationRules rules;
+
+    /**
+     * @param rules Verification rules defining the extracted attributes.
+     */
+    public EvidentVerificationStatusReader(EvidentVerificationRules rules) {
+
+        this.rules = rules;
+    }
+
+    @Override
+    public EvidentVerificationStatus read(InputStream content) throws IOException {
+
+        try (JsonReader reader = new JsonReader(new InputStreamReader(content, StandardCharsets.UTF_8))) {
+            return readStatus(reader);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Invalid verification status response received from Evident.", e);
+        }
+    }
+
+    private EvidentVerificationStatus readStatus(JsonReader reader) throws IOException {
+
+        int fieldCount = rules.getFieldCount();
+        String[] statuses = new String[rules.getAttributeCount()];
+        String[] values = new String[statuses.length * fieldCount];
+        String[] attributeValues = new String[fieldCount];
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (ATTRIBUTES.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Arrays.fill(attributeValues, null);
+                    int attribute = readAttribute(reader, attributeValues, statuses);
+                    if (attribute < 0) {
+                        continue;
+                    }
+                    for (int i = 0; i < fieldCount; i++) {
+                        if (attributeValues[i] != null) {
+                            values[attribute * fieldCount + i] = attributeValues[i];
+                        }
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new EvidentVerificationStatus(rules, statuses, values);
+    }
+
+    /**
+     * Read an attribute of the response. The values of the attribute are read regardless of its type, since the
+     * type isn't guaranteed to appear before the values, but only the first value is kept.
+     *
+     * @param attributeValues Slots to read the value fields into.
+     * @param statuses        Attribute statuses, updated with the status of the attribute if it is used.
+     * @return Index of the attribute, or -1 if the element is not an attribute used by the rules.
+     */
+    private int readAttribute(JsonReader reader, String[] attributeValues, String[] statuses) throws IOException {
+
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return -1;
+        }
+
+        int attribute = -1;
+        String status = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (TYPE.equals(name) && reader.peek() == JsonToken.STRING) {
+                attribute = rules.getAttributeIndex(reader.nextString());
+            } else if (STATUS.equals(name) && reader.peek() == JsonToken.STRING) {
+                status = reader.nextString();
+            } else if (VALUES.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                if (reader.hasNext()) {
+                    readFirstValue(reader, attributeValues);
+                }
+                while (reader.hasNext()) {
+                    reader.skipValue();
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (attribute >= 0 && status != null) {
+            statuses[attribute] = status;
+        }
+        return attribute;
+    }
+
+    private void readFirstValue(JsonReader reader, String[] attributeValues) throws IOException {
+
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING) {
+            attributeValues[0] = reader.nextString();
+        } else if (token == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                int field = rules.getFieldIndex(reader.nextName());
+                if (field > 0 && reader.peek() == JsonToken.STRING) {
+                    attributeValues[field] = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } else {
+            reader.skipValue();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializes the body of the Evident verify requests of a tenant. The parts of the body which are constant for the
+ * tenant are escaped and encoded once, and only the email address of the user is escaped and encoded per request,
+ * directly into the request stream.
+ */
+public final class EvidentVerifyRequestSerializer {
+
+    // TODO: 2020-05-30 Should allow to customize from UI
+    private static final String USER_AUTHENTICATION_TYPE = "blindtrust";
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] prefix;
+    private final byte[] suffix;
+
+    /**
+     * Precompile the request body of a tenant.
+     *
+     * @param emailSummary        Summary of the verification email.
+     * @param emailDescription    Description of the verification email.
+     * @param attributesRequested Attribute types requested from Evident.
+     */
+    public EvidentVerifyRequestSerializer(String emailSummary, String emailDescription,
+                                          String[] attributesRequested) {
+
+        prefix = "{\"email\":\"".getBytes(StandardCharsets.UTF_8);
+
+        StringBuilder builder = new StringBuilder("\",\"summary\":\"");
+        appendEscaped(builder, emailSummary);
+        builder.append("\",\"description\":\"");
+        appendEscaped(builder, emailDescription);
+        builder.append("\",\"userAuthenticationType\":\"").append(USER_AUTHENTICATION_TYPE)
+                .append("\",\"attributesRequested\":[");
+        for (int i = 0; i < attributesRequested.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"attributeType\":\"");
+            appendEscaped(builder, attributesRequested[i]);
+            builder.append("\"}");
+        }
+        builder.append("]}");
+        suffix = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Return the request body of the given user.
+     *
+     * @param email Email address of the user.
+     * @return Request body.
+     */
+    public EvidentAPIClient.RequestBody forEmail(final String email) {
+
+        return new EvidentAPIClient.RequestBody() {
+
+            @Override
+            public long getContentLength() {
+
+                return prefix.length + escapedLength(email) + suffix.length;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+
+                out.write(prefix);
+                writeEscaped(out, email);
+                out.write(suffix);
+            }
+        };
+    }
+
+    private static void appendEscaped(StringBuilder builder, String value) {
+
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String escape = escape(c);
+            if (escape != null) {
+                builder.append(escape);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+    }
+
+    /**
+     * Write the JSON escaped UTF-8 encoding of the value.
+     */
+    private static void writeEscaped(OutputStream out, String value) throws IOException {
+
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String escape = escape(c);
+            if (escape != null) {
+                out.write('\\');
+                out.write(escape.charAt(1));
+            } else if (c < 0x20) {
+                out.write('\\');
+                out.write('u');
+                out.write('0');
+                out.write('0');
+                out.write(HEX_DIGITS[c >> 4]);
+                out.write(HEX_DIGITS[c & 0xF]);
+            } else if (c < 0x80) {
+                out.write(c);
+            } else if (c < 0x800) {
+                out.write(0xC0 | (c >> 6));
+                out.write(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() &&
+                    Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out.write(0xF0 | (codePoint >> 18));
+                out.write(0x80 | ((codePoint >> 12) & 0x3F));
+                out.write(0x80 | ((codePoint >> 6) & 0x3F));
+                out.write(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates can't be encoded, hence replaced as the String encoder does.
+                out.write('?');
+            } else {
+                out.write(0xE0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3F));
+                out.write(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Return the number of bytes written by {@link #writeEscaped(OutputStream, String)} for the value.
+     */
+    private static int escapedLength(String value) {
+
+        if (value == null) {
+            return 0;
+        }
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (escape(c) != null) {
+                length += 2;
+            } else if (c < 0x20) {
+                length += 6;
+            } else if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() &&
+                    Character.isLowSurrogate(value.charAt(i + 1))) {
+                i++;
+                length += 4;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static String escape(char c) {
+
+        switch (c) {
+            case '"':
+                return "\\\"";
+            case '\\':
+                return "\\\\";
+            case '\n':
+                return "\\n";
+            case '\r':
+                return "\\r";
+            case '\t':
+                return "\\t";
+            case '\b':
+                return "\\b";
+            case '\f':
+                return "\\f";
+            default:
+                return null;
+        }
+    }
+}
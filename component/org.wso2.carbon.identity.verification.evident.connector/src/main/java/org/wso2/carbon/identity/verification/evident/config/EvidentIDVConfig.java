@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.config;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.common.model.Property;
+import org.wso2.carbon.identity.verification.evident.client.EvidentVerifyRequestSerializer;
+import org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the Evident connector configuration of a tenant. A snapshot is built once from the
+ * governance properties and shared by all the events of the tenant until the configuration changes.
+ */
+public final class EvidentIDVConfig {
+
+    private static final Log log = LogFactory.getLog(EvidentIDVConfig.class);
+
+    private static final String COMMA_WITH_SPACES_REGEX = "\\s*,\\s*";
+    private static final EvidentVerificationRules DEFAULT_VERIFICATION_RULES =
+            EvidentVerificationRules.compile(EvidentIDVConstants.DEFAULT_VERIFICATION_RULES);
+
+    private final String tenantDomain;
+    private final boolean enabled;
+    private final String basePath;
+    private final String encodedCredential;
+    private final String emailSummary;
+    private final String emailDescription;
+    private final Set<String> userStores;
+    private final byte[] webhookSecret;
+    private final EvidentVerificationRules verificationRules;
+    private final EvidentVerifyRequestSerializer verifyRequestSerializer;
+    private final long createdTime;
+
+    private EvidentIDVConfig(String tenantDomain, boolean enabled, String basePath, String encodedCredential,
+                             String emailSummary, String emailDescription, Set<String> userStores,
+                             byte[] webhookSecret, EvidentVerificationRules verificationRules) {
+
+        this.tenantDomain = tenantDomain;
+        this.enabled = enabled;
+        this.basePath = basePath;
+        this.encodedCredential = encodedCredential;
+        this.emailSummary = emailSummary;
+        this.emailDescription = emailDescription;
+        this.userStores = userStores;
+        this.webhookSecret = webhookSecret;
+        this.verificationRules = verificationRules;
+        this.verifyRequestSerializer = new EvidentVerifyRequestSerializer(emailSummary, emailDescription,
+                verificationRules.getAttributeTypes());
+        this.createdTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Build a configuration snapshot from the governance properties of the tenant.
+     *
+     * @param tenantDomain       Tenant domain.
+     * @param identityProperties Governance properties of the Evident connector.
+     * @return Configuration snapshot.
+     */
+    public static EvidentIDVConfig build(String tenantDomain, Property[] identityProperties) {
+
+        boolean enabled = false;
+        String key = null;
+        String secret = null;
+        String basePath = null;
+        String emailSummary = "";
+        String emailDescription = "";
+        String userStores = null;
+        String webhookSecret = null;
+        String verificationRules = null;
+
+        if (identityProperties != null) {
+            for (Property property : identityProperties) {
+                if (EvidentIDVConstants.EVIDENT_VERIFICATION_ENABLE.equals(property.getName())) {
+                    enabled = Boolean.parseBoolean(property.getValue());
+                } else if (EvidentIDVConstants.EVIDENT_API_KEY.equals(property.getName())) {
+                    key = property.getValue();
+                } else if (EvidentIDVConstants.EVIDENT_API_SECRET.equals(property.getName())) {
+                    secret = property.getValue();
+                } else if (EvidentIDVConstants.EVIDENT_API_BASE_PATH.equals(property.getName())) {
+                    basePath = property.getValue();
+                } else if (EvidentIDVConstants.EVIDENT_USER_STORES.equals(property.getName())) {
+                    userStores = property.getValue();
+                } else if (EvidentIDVConstants.EVIDENT_EMAIL_SUMMARY.equals(property.getName())) {
+                    emailSummary = property.getValue();
+                } else if (EvidentIDVConstants.EVIDENT_EMAIL_DESCRIPTION.equals(property.getName())) {
+                    emailDescription = property.getValue();
+                } else if (EvidentIDVConstants.EVIDENT_WEBHOOK_SECRET.equals(property.getName())) {
+                    webhookSecret = property.getValue();
+                } else if (EvidentIDVConstants.EVIDENT_VERIFICATION_RULES.equals(property.getName())) {
+                    verificationRules = property.getValue();
+                }
+            }
+        }
+
+        String encodedCredential = null;
+        if (StringUtils.isNotEmpty(key) && StringUtils.isNotEmpty(secret)) {
+            encodedCredential = Base64.getEncoder().encodeToString((key + ":" + secret)
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+
+        return new EvidentIDVConfig(tenantDomain, enabled, StringUtils.trim(basePath), encodedCredential,
+                emailSummary, emailDescription, toUserStoreSet(userStores),
+                StringUtils.isNotEmpty(webhookSecret) ? webhookSecret.getBytes(StandardCharsets.UTF_8) : null,
+                compileVerificationRules(tenantDomain, verificationRules));
+    }
+
+    private static EvidentVerificationRules compileVerificationRules(String tenantDomain, String definition) {
+
+        if (StringUtils.isNotBlank(definition)) {
+            try {
+                return EvidentVerificationRules.compile(definition);
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid Evident verification rules configured for the tenant: " + tenantDomain +
+                        ". Using the default rules. " + e.getMessage());
+            }
+        }
+        return DEFAULT_VERIFICATION_RULES;
+    }
+
+    private static Set<String> toUserStoreSet(String userStores) {
+
+        if (StringUtils.isBlank(userStores)) {
+            return Collections.emptySet();
+        }
+        Set<String> userStoreSet = new HashSet<>();
+        for (String userStore : userStores.trim().split(COMMA_WITH_SPACES_REGEX)) {
+            if (StringUtils.isNotEmpty(userStore)) {
+                userStoreSet.add(userStore);
+            }
+        }
+        return Collections.unmodifiableSet(userStoreSet);
+    }
+
+    public String getTenantDomain() {
+
+        return tenantDomain;
+    }
+
+    public boolean isEnabled() {
+
+        return enabled;
+    }
+
+    /**
+     * Whether all the parameters required to call the Evident API are provided.
+     *
+     * @return True if the API key, secret and the base path are available, False otherwise.
+     */
+    public boolean isComplete() {
+
+        return StringUtils.isNotEmpty(encodedCredential) && StringUtils.isNotEmpty(basePath);
+    }
+
+    public String getBasePath() {
+
+        return basePath;
+    }
+
+    /**
+     * Return the base64 encoded API credential to be used in the Basic authorization header.
+     *
+     * @return Encoded credential.
+     */
+    public String getEncodedCredential() {
+
+        return encodedCredential;
+    }
+
+    public String getEmailSummary() {
+
+        return emailSummary;
+    }
+
+    public String getEmailDescription() {
+
+        return emailDescription;
+    }
+
+    /**
+     * Check whether the verification is engaged for the given user store domain. Verification is engaged for all
+     * the user stores if no user stores are configured.
+     *
+     * @param userStoreDomain User store domain.
+     * @return True if the verification is engaged for the user store, False otherwise.
+     */
+    public boolean isUserStoreEnabled(String userStoreDomain) {
+
+        return userStores.isEmpty() || userStores.contains(userStoreDomain);
+    }
+
+    /**
+     * Whether verification completion notifications are accepted from Evident for the tenant.
+     *
+     * @return True if a webhook secret is configured, False otherwise.
+     */
+    public boolean isWebhookEnabled() {
+
+        return webhookSecret != null;
+    }
+
+    /**
+     * Return the secret used to sign the verification completion notifications sent by Evident.
+     *
+     * @return Webhook secret, or null if it is not configured.
+     */
+    public byte[] getWebhookSecret() {
+
+        return webhookSecret != null ? webhookSecret.clone() : null;
+    }
+
+    /**
+     * Return the compiled verification rules of the tenant.
+     *
+     * @return Verification rules.
+     */
+    public EvidentVerificationRules getVerificationRules() {
+
+        return verificationRules;
+    }
+
+    /**
+     * Return the serializer of the verify request bodies, precompiled with the email summary, description and the
+     * attributes requested by the verification rules.
+     *
+     * @return Verify request serializer.
+     */
+    public EvidentVerifyRequestSerializer getVerifyRequestSerializer() {
+
+        return verifyRequestSerializer;
+    }
+
+    public long getCreatedTime() {
+
+        return createdTime;
+    }
+}
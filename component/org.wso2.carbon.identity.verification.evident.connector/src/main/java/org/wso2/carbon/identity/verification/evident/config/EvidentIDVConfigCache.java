@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.config;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.common.model.Property;
+import org.wso2.carbon.identity.governance.IdentityGovernanceException;
+import org.wso2.carbon.identity.governance.IdentityGovernanceService;
+import org.wso2.carbon.identity.verification.evident.exception.EvidentIDVHandlerException;
+import org.wso2.carbon.identity.verification.evident.internal.EvidentIDVDataHolder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per tenant cache of the Evident connector configuration snapshots. Entries are invalidated when the resident
+ * identity provider configuration of the tenant is updated. Since the update notification is only received by the
+ * node on which the update was made, entries also expire after the configured maximum age.
+ * <p>
+ * Each tenant has a generation, advanced on every invalidation. A snapshot is only cached if no invalidation
+ * happened while it was loaded, so that a load which read the configuration before an update doesn't cache the
+ * outdated snapshot after the update.
+ */
+public class EvidentIDVConfigCache {
+
+    private static final Log log = LogFactory.getLog(EvidentIDVConfigCache.class);
+    private static final EvidentIDVConfigCache instance = new EvidentIDVConfigCache();
+
+    private final Map<String, EvidentIDVConfig> configs = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private EvidentIDVConfigCache() {}
+
+    /**
+     * Return a singleton instance of the EvidentIDVConfigCache
+     *
+     * @return A singleton instance of the EvidentIDVConfigCache
+     */
+    public static EvidentIDVConfigCache getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Return the configuration snapshot of the given tenant, loading it from the governance service if it is not
+     * cached or has expired.
+     *
+     * @param tenantDomain  Tenant domain.
+     * @param propertyNames Governance property names of the connector.
+     * @return Configuration snapshot of the tenant.
+     * @throws EvidentIDVHandlerException If the configuration couldn't be retrieved.
+     */
+    public EvidentIDVConfig getConfig(String tenantDomain, String[] propertyNames)
+            throws EvidentIDVHandlerException {
+
+        EvidentIDVConfig config = configs.get(tenantDomain);
+        long maxAge = EvidentIDVDataHolder.getInstance().getServerConfig().getConfigCacheMaxAge();
+        if (config != null && System.currentTimeMillis() - config.getCreatedTime() < maxAge) {
+            return config;
+        }
+
+        AtomicLong generation = generations.computeIfAbsent(tenantDomain, tenant -> new AtomicLong());
+        long loadGeneration = generation.get();
+        IdentityGovernanceService governanceService = EvidentIDVDataHolder.getInstance()
+                .getIdentityGovernanceService();
+        Property[] identityProperties;
+        try {
+            identityProperties = governanceService.getConfiguration(propertyNames, tenantDomain);
+        } catch (IdentityGovernanceException e) {
+            throw new EvidentIDVHandlerException("Error while retrieving Evident IDV handler properties of the " +
+                    "tenant: " + tenantDomain, e);
+        }
+
+        EvidentIDVConfig loadedConfig = EvidentIDVConfig.build(tenantDomain, identityProperties);
+        configs.compute(tenantDomain, (tenant, cachedConfig) ->
+                generation.get() == loadGeneration ? loadedConfig : cachedConfig);
+        if (log.isDebugEnabled()) {
+            log.debug("Evident IDV configuration loaded for the tenant: " + tenantDomain);
+        }
+        return loadedConfig;
+    }
+
+    /**
+     * Remove the cached configuration snapshot of the given tenant.
+     *
+     * @param tenantDomain Tenant domain.
+     */
+    public void invalidate(String tenantDomain) {
+
+        generations.computeIfAbsent(tenantDomain, tenant -> new AtomicLong()).incrementAndGet();
+        if (configs.remove(tenantDomain) != null && log.isDebugEnabled()) {
+            log.debug("Evident IDV configuration invalidated for the tenant: " + tenantDomain);
+        }
+    }
+
+    /**
+     * Remove all the cached configuration snapshots.
+     */
+    public void clear() {
+
+        for (AtomicLong generation : generations.values()) {
+            generation.incrementAndGet();
+        }
+        configs.clear();
+    }
+}
@@ -0,0 +1,850 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.config;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Properties;
+
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.BULKHEAD_ENABLE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.BULKHEAD_MAX_CONCURRENT_CALLS;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.BULKHEAD_MAX_WAIT;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.BULK_ENROLMENT_CONCURRENCY;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.BULK_ENROLMENT_MAX_REQUESTS_PER_SECOND;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.BULK_ENROLMENT_PAGE_SIZE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.CACHE_BACKEND;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.CACHE_BACKEND_LOCAL;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.CACHE_IN_FLIGHT_MAX_WAIT;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.CIRCUIT_BREAKER_ENABLE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.CIRCUIT_BREAKER_HALF_OPEN_CALLS;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.CIRCUIT_BREAKER_MINIMUM_CALLS;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.CIRCUIT_BREAKER_OPEN_DURATION;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.CIRCUIT_BREAKER_SLOW_CALL_DURATION;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.CIRCUIT_BREAKER_SLOW_CALL_RATE_THRESHOLD;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.CIRCUIT_BREAKER_WINDOW_SIZE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.CONFIG_CACHE_MAX_AGE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.HTTP_CONNECTION_REQUEST_TIMEOUT;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.HTTP_CONNECT_TIMEOUT;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.HTTP_IDLE_CONNECTION_TIMEOUT;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.HTTP_IO_QUEUE_CAPACITY;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.HTTP_IO_THREADS;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.HTTP_KEEP_ALIVE_DURATION;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.HTTP_MAX_CONNECTIONS;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.HTTP_MAX_RESPONSE_SIZE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.HTTP_REQUEST_DEADLINE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.HTTP_SOCKET_TIMEOUT;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.PENDING_FILTER_ENABLE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.PENDING_FILTER_REFRESH_INTERVAL;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.QUEUE_FULL_POLICY_REJECT;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.QUEUE_FULL_POLICY_SYNC;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.RATE_LIMIT_BURST;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.RATE_LIMIT_ENABLE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.RATE_LIMIT_EXHAUSTED_POLICY;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.RATE_LIMIT_MAX_WAIT;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.RATE_LIMIT_POLICY_QUEUE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.RATE_LIMIT_POLICY_SKIP;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.RATE_LIMIT_REQUESTS_PER_SECOND;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.RATE_LIMIT_TENANT_BURST;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.RATE_LIMIT_TENANT_REQUESTS_PER_SECOND;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.RECHECK_ENABLE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.RECHECK_INITIAL_INTERVAL;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.RECHECK_MAX_ENTRIES;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.RECHECK_MAX_INTERVAL;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.STATUS_CACHE_ENABLE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.STATUS_CACHE_MAX_ENTRIES;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.STATUS_CACHE_NEGATIVE_TTL;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.STATUS_CACHE_TTL;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SUBMISSION_ASYNC_ENABLE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SUBMISSION_IDEMPOTENCY_MAX_ENTRIES;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SUBMISSION_IDEMPOTENCY_TTL;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SUBMISSION_MAX_RETRIES;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SUBMISSION_QUEUE_CAPACITY;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SUBMISSION_QUEUE_FULL_POLICY;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SUBMISSION_RETRY_BACKOFF;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SUBMISSION_WORKER_THREADS;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SWEEPER_BATCH_SIZE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SWEEPER_CONCURRENCY;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SWEEPER_ENABLE;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SWEEPER_INTERVAL;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SWEEPER_MAX_REQUESTS_PER_SECOND;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SWEEPER_SKIP_LOGIN_CHECK;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.WARM_UP_CONNECTIONS;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.WARM_UP_ENABLE;
+
+/**
+ * Server wide configuration of the Evident connector, read from the event handler properties of the
+ * evidentEventHandler. Defaults are used for the properties which are not configured.
+ */
+public final class EvidentIDVServerConfig {
+
+    private static final Log log = LogFactory.getLog(EvidentIDVServerConfig.class);
+
+    private static final int DEFAULT_CONFIG_CACHE_MAX_AGE = 300000;
+    private static final int DEFAULT_HTTP_MAX_CONNECTIONS = 20;
+    private static final int DEFAULT_HTTP_CONNECTION_REQUEST_TIMEOUT = 5000;
+    private static final int DEFAULT_HTTP_IDLE_CONNECTION_TIMEOUT = 60000;
+    private static final int DEFAULT_HTTP_KEEP_ALIVE_DURATION = 60000;
+    private static final int DEFAULT_HTTP_CONNECT_TIMEOUT = 5000;
+    private static final int DEFAULT_HTTP_SOCKET_TIMEOUT = 10000;
+    private static final int DEFAULT_HTTP_MAX_RESPONSE_SIZE = 1024 * 1024;
+    private static final int DEFAULT_HTTP_IO_QUEUE_CAPACITY = 1000;
+    private static final int DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE = 20;
+    private static final int DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS = 10;
+    private static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD = 50;
+    private static final int DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_DURATION = 5000;
+    private static final int DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_RATE_THRESHOLD = 80;
+    private static final int DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION = 30000;
+    private static final int DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_CALLS = 3;
+    private static final int MAX_PERCENTAGE = 100;
+    private static final int DEFAULT_SUBMISSION_WORKER_THREADS = 5;
+    private static final int DEFAULT_SUBMISSION_QUEUE_CAPACITY = 1000;
+    private static final int DEFAULT_SUBMISSION_MAX_RETRIES = 3;
+    private static final int DEFAULT_SUBMISSION_RETRY_BACKOFF = 2000;
+    private static final int DEFAULT_SUBMISSION_IDEMPOTENCY_TTL = 86400000;
+    private static final int DEFAULT_SUBMISSION_IDEMPOTENCY_MAX_ENTRIES = 10000;
+    private static final int DEFAULT_STATUS_CACHE_MAX_ENTRIES = 10000;
+    private static final int DEFAULT_STATUS_CACHE_TTL = 600000;
+    private static final int DEFAULT_STATUS_CACHE_NEGATIVE_TTL = 30000;
+    private static final int DEFAULT_CACHE_IN_FLIGHT_MAX_WAIT = 2000;
+    private static final int DEFAULT_RECHECK_INITIAL_INTERVAL = 30000;
+    private static final int DEFAULT_RECHECK_MAX_INTERVAL = 3600000;
+    private static final int DEFAULT_RECHECK_MAX_ENTRIES = 100000;
+    private static final int DEFAULT_PENDING_FILTER_REFRESH_INTERVAL = 300000;
+    private static final int DEFAULT_BULKHEAD_MAX_CONCURRENT_CALLS = 10;
+    private static final int DEFAULT_BULKHEAD_MAX_WAIT = 500;
+    private static final int DEFAULT_WARM_UP_CONNECTIONS = 2;
+    private static final int DEFAULT_SWEEPER_INTERVAL = 300000;
+    private static final int DEFAULT_SWEEPER_BATCH_SIZE = 100;
+    private static final int DEFAULT_SWEEPER_CONCURRENCY = 4;
+    private static final int DEFAULT_SWEEPER_MAX_REQUESTS_PER_SECOND = 10;
+    private static final int DEFAULT_RATE_LIMIT_REQUESTS_PER_SECOND = 50;
+    private static final int DEFAULT_RATE_LIMIT_TENANT_REQUESTS_PER_SECOND = 20;
+    private static final int DEFAULT_RATE_LIMIT_MAX_WAIT = 1000;
+    private static final int DEFAULT_BULK_ENROLMENT_PAGE_SIZE = 500;
+    private static final int DEFAULT_BULK_ENROLMENT_CONCURRENCY = 10;
+    private static final int DEFAULT_BULK_ENROLMENT_MAX_REQUESTS_PER_SECOND = 25;
+
+    private final int configCacheMaxAge;
+    private final int httpMaxConnections;
+    private final int httpConnectionRequestTimeout;
+    private final int httpIdleConnectionTimeout;
+    private final int httpKeepAliveDuration;
+    private final int httpConnectTimeout;
+    private final int httpSocketTimeout;
+    private final int httpMaxResponseSize;
+    private final int httpIoThreads;
+    private final int httpIoQueueCapacity;
+    private final int httpRequestDeadline;
+    private final boolean circuitBreakerEnabled;
+    private final int circuitBreakerWindowSize;
+    private final int circuitBreakerMinimumCalls;
+    private final int circuitBreakerFailureRateThreshold;
+    private final int circuitBreakerSlowCallDuration;
+    private final int circuitBreakerSlowCallRateThreshold;
+    private final int circuitBreakerOpenDuration;
+    private final int circuitBreakerHalfOpenCalls;
+    private final boolean asyncSubmissionEnabled;
+    private final int submissionWorkerThreads;
+    private final int submissionQueueCapacity;
+    private final boolean rejectOnQueueFull;
+    private final int submissionMaxRetries;
+    private final int submissionRetryBackoff;
+    private final int submissionIdempotencyTimeToLive;
+    private final int submissionIdempotencyMaxEntries;
+    private final boolean statusCacheEnabled;
+    private final int statusCacheMaxEntries;
+    private final int statusCacheTimeToLive;
+    private final int statusCacheNegativeTimeToLive;
+    private final String cacheBackend;
+    private final int cacheInFlightMaxWait;
+    private final boolean recheckEnabled;
+    private final int recheckInitialInterval;
+    private final int recheckMaxInterval;
+    private final int recheckMaxEntries;
+    private final boolean pendingFilterEnabled;
+    private final int pendingFilterRefreshInterval;
+    private final boolean bulkheadEnabled;
+    private final int bulkheadMaxConcurrentCalls;
+    private final int bulkheadMaxWait;
+    private final boolean warmUpEnabled;
+    private final int warmUpConnections;
+    private final boolean sweeperEnabled;
+    private final int sweeperInterval;
+    private final int sweeperBatchSize;
+    private final int sweeperConcurrency;
+    private final int sweeperMaxRequestsPerSecond;
+    private final boolean sweeperSkipLoginCheck;
+    private final boolean rateLimitEnabled;
+    private final int rateLimitRequestsPerSecond;
+    private final int rateLimitBurst;
+    private final int rateLimitTenantRequestsPerSecond;
+    private final int rateLimitTenantBurst;
+    private final int rateLimitMaxWait;
+    private final boolean skipThrottledStatusCheck;
+    private final int bulkEnrolmentPageSize;
+    private final int bulkEnrolmentConcurrency;
+    private final int bulkEnrolmentMaxRequestsPerSecond;
+
+    private EvidentIDVServerConfig(Properties properties) {
+
+        this.configCacheMaxAge = getNonNegativeInt(properties, CONFIG_CACHE_MAX_AGE, DEFAULT_CONFIG_CACHE_MAX_AGE);
+        this.httpMaxConnections = getPositiveInt(properties, HTTP_MAX_CONNECTIONS, DEFAULT_HTTP_MAX_CONNECTIONS);
+        this.httpConnectionRequestTimeout = getPositiveInt(properties, HTTP_CONNECTION_REQUEST_TIMEOUT,
+                DEFAULT_HTTP_CONNECTION_REQUEST_TIMEOUT);
+        this.httpIdleConnectionTimeout = getPositiveInt(properties, HTTP_IDLE_CONNECTION_TIMEOUT,
+                DEFAULT_HTTP_IDLE_CONNECTION_TIMEOUT);
+        this.httpKeepAliveDuration = getPositiveInt(properties, HTTP_KEEP_ALIVE_DURATION,
+                DEFAULT_HTTP_KEEP_ALIVE_DURATION);
+        this.httpConnectTimeout = getPositiveInt(properties, HTTP_CONNECT_TIMEOUT, DEFAULT_HTTP_CONNECT_TIMEOUT);
+        this.httpSocketTimeout = getPositiveInt(properties, HTTP_SOCKET_TIMEOUT, DEFAULT_HTTP_SOCKET_TIMEOUT);
+        this.httpMaxResponseSize = getPositiveInt(properties, HTTP_MAX_RESPONSE_SIZE,
+                DEFAULT_HTTP_MAX_RESPONSE_SIZE);
+        // Each I/O thread holds at most one pooled connection while a call is in progress.
+        this.httpIoThreads = getPositiveInt(properties, HTTP_IO_THREADS, httpMaxConnections);
+        this.httpIoQueueCapacity = getPositiveInt(properties, HTTP_IO_QUEUE_CAPACITY,
+                DEFAULT_HTTP_IO_QUEUE_CAPACITY);
+        this.httpRequestDeadline = getPositiveInt(properties, HTTP_REQUEST_DEADLINE,
+                httpConnectionRequestTimeout + httpConnectTimeout + httpSocketTimeout);
+        this.circuitBreakerEnabled = getBoolean(properties, CIRCUIT_BREAKER_ENABLE, true);
+        this.circuitBreakerWindowSize = getPositiveInt(properties, CIRCUIT_BREAKER_WINDOW_SIZE,
+                DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE);
+        this.circuitBreakerMinimumCalls = Math.min(getPositiveInt(properties, CIRCUIT_BREAKER_MINIMUM_CALLS,
+                DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS), circuitBreakerWindowSize);
+        this.circuitBreakerFailureRateThreshold = getPercentage(properties, CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD,
+                DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD);
+        this.circuitBreakerSlowCallDuration = getPositiveInt(properties, CIRCUIT_BREAKER_SLOW_CALL_DURATION,
+                DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_DURATION);
+        this.circuitBreakerSlowCallRateThreshold = getPercentage(properties,
+                CIRCUIT_BREAKER_SLOW_CALL_RATE_THRESHOLD, DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_RATE_THRESHOLD);
+        this.circuitBreakerOpenDuration = getPositiveInt(properties, CIRCUIT_BREAKER_OPEN_DURATION,
+                DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION);
+        this.circuitBreakerHalfOpenCalls = getPositiveInt(properties, CIRCUIT_BREAKER_HALF_OPEN_CALLS,
+                DEFAULT_CIRCUIT_BREAKER_HALF_OPEN_CALLS);
+        this.asyncSubmissionEnabled = getBoolean(properties, SUBMISSION_ASYNC_ENABLE, true);
+        this.submissionWorkerThreads = getPositiveInt(properties, SUBMISSION_WORKER_THREADS,
+                DEFAULT_SUBMISSION_WORKER_THREADS);
+        this.submissionQueueCapacity = getPositiveInt(properties, SUBMISSION_QUEUE_CAPACITY,
+                DEFAULT_SUBMISSION_QUEUE_CAPACITY);
+        this.rejectOnQueueFull = QUEUE_FULL_POLICY_REJECT.equalsIgnoreCase(getString(properties,
+                SUBMISSION_QUEUE_FULL_POLICY, QUEUE_FULL_POLICY_SYNC));
+        this.submissionMaxRetries = getNonNegativeInt(properties, SUBMISSION_MAX_RETRIES,
+                DEFAULT_SUBMISSION_MAX_RETRIES);
+        this.submissionRetryBackoff = getPositiveInt(properties, SUBMISSION_RETRY_BACKOFF,
+                DEFAULT_SUBMISSION_RETRY_BACKOFF);
+        this.submissionIdempotencyTimeToLive = getNonNegativeInt(properties, SUBMISSION_IDEMPOTENCY_TTL,
+                DEFAULT_SUBMISSION_IDEMPOTENCY_TTL);
+        this.submissionIdempotencyMaxEntries = getPositiveInt(properties, SUBMISSION_IDEMPOTENCY_MAX_ENTRIES,
+                DEFAULT_SUBMISSION_IDEMPOTENCY_MAX_ENTRIES);
+        this.statusCacheEnabled = getBoolean(properties, STATUS_CACHE_ENABLE, true);
+        this.statusCacheMaxEntries = getPositiveInt(properties, STATUS_CACHE_MAX_ENTRIES,
+                DEFAULT_STATUS_CACHE_MAX_ENTRIES);
+        this.statusCacheTimeToLive = getPositiveInt(properties, STATUS_CACHE_TTL, DEFAULT_STATUS_CACHE_TTL);
+        this.statusCacheNegativeTimeToLive = getPositiveInt(properties, STATUS_CACHE_NEGATIVE_TTL,
+                DEFAULT_STATUS_CACHE_NEGATIVE_TTL);
+        this.cacheBackend = getString(properties, CACHE_BACKEND, CACHE_BACKEND_LOCAL);
+        this.cacheInFlightMaxWait = Math.min(httpRequestDeadline, getNonNegativeInt(properties,
+                CACHE_IN_FLIGHT_MAX_WAIT, DEFAULT_CACHE_IN_FLIGHT_MAX_WAIT));
+        this.recheckEnabled = getBoolean(properties, RECHECK_ENABLE, false);
+        this.recheckInitialInterval = getPositiveInt(properties, RECHECK_INITIAL_INTERVAL,
+                DEFAULT_RECHECK_INITIAL_INTERVAL);
+        this.recheckMaxInterval = Math.max(recheckInitialInterval, getPositiveInt(properties, RECHECK_MAX_INTERVAL,
+                DEFAULT_RECHECK_MAX_INTERVAL));
+        this.recheckMaxEntries = getPositiveInt(properties, RECHECK_MAX_ENTRIES, DEFAULT_RECHECK_MAX_ENTRIES);
+        this.pendingFilterEnabled = getBoolean(properties, PENDING_FILTER_ENABLE, false);
+        this.pendingFilterRefreshInterval = getPositiveInt(properties, PENDING_FILTER_REFRESH_INTERVAL,
+                DEFAULT_PENDING_FILTER_REFRESH_INTERVAL);
+        this.bulkheadEnabled = getBoolean(properties, BULKHEAD_ENABLE, false);
+        this.bulkheadMaxConcurrentCalls = getPositiveInt(properties, BULKHEAD_MAX_CONCURRENT_CALLS,
+                DEFAULT_BULKHEAD_MAX_CONCURRENT_CALLS);
+        this.bulkheadMaxWait = getNonNegativeInt(properties, BULKHEAD_MAX_WAIT, DEFAULT_BULKHEAD_MAX_WAIT);
+        this.warmUpEnabled = getBoolean(properties, WARM_UP_ENABLE, false);
+        this.warmUpConnections = getPositiveInt(properties, WARM_UP_CONNECTIONS, DEFAULT_WARM_UP_CONNECTIONS);
+        this.sweeperEnabled = getBoolean(properties, SWEEPER_ENABLE, false);
+        this.sweeperInterval = getPositiveInt(properties, SWEEPER_INTERVAL, DEFAULT_SWEEPER_INTERVAL);
+        this.sweeperBatchSize = getPositiveInt(properties, SWEEPER_BATCH_SIZE, DEFAULT_SWEEPER_BATCH_SIZE);
+        this.sweeperConcurrency = getPositiveInt(properties, SWEEPER_CONCURRENCY, DEFAULT_SWEEPER_CONCURRENCY);
+        this.sweeperMaxRequestsPerSecond = getPositiveInt(properties, SWEEPER_MAX_REQUESTS_PER_SECOND,
+                DEFAULT_SWEEPER_MAX_REQUESTS_PER_SECOND);
+        this.sweeperSkipLoginCheck = sweeperEnabled && getBoolean(properties, SWEEPER_SKIP_LOGIN_CHECK, false);
+        this.rateLimitEnabled = getBoolean(properties, RATE_LIMIT_ENABLE, false);
+        this.rateLimitRequestsPerSecond = getPositiveInt(properties, RATE_LIMIT_REQUESTS_PER_SECOND,
+                DEFAULT_RATE_LIMIT_REQUESTS_PER_SECOND);
+        this.rateLimitBurst = getPositiveInt(properties, RATE_LIMIT_BURST, rateLimitRequestsPerSecond);
+        this.rateLimitTenantRequestsPerSecond = getPositiveInt(properties, RATE_LIMIT_TENANT_REQUESTS_PER_SECOND,
+                DEFAULT_RATE_LIMIT_TENANT_REQUESTS_PER_SECOND);
+        this.rateLimitTenantBurst = getPositiveInt(properties, RATE_LIMIT_TENANT_BURST,
+                rateLimitTenantRequestsPerSecond);
+        this.rateLimitMaxWait = getNonNegativeInt(properties, RATE_LIMIT_MAX_WAIT, DEFAULT_RATE_LIMIT_MAX_WAIT);
+        this.skipThrottledStatusCheck = RATE_LIMIT_POLICY_SKIP.equalsIgnoreCase(getString(properties,
+                RATE_LIMIT_EXHAUSTED_POLICY, RATE_LIMIT_POLICY_QUEUE));
+        this.bulkEnrolmentPageSize = getPositiveInt(properties, BULK_ENROLMENT_PAGE_SIZE,
+                DEFAULT_BULK_ENROLMENT_PAGE_SIZE);
+        this.bulkEnrolmentConcurrency = getPositiveInt(properties, BULK_ENROLMENT_CONCURRENCY,
+                DEFAULT_BULK_ENROLMENT_CONCURRENCY);
+        this.bulkEnrolmentMaxRequestsPerSecond = getPositiveInt(properties, BULK_ENROLMENT_MAX_REQUESTS_PER_SECOND,
+                DEFAULT_BULK_ENROLMENT_MAX_REQUESTS_PER_SECOND);
+    }
+
+    /**
+     * Build the server configuration from the event handler properties.
+     *
+     * @param properties Event handler properties. Can be null.
+     * @return Server configuration.
+     */
+    public static EvidentIDVServerConfig build(Properties properties) {
+
+        return new EvidentIDVServerConfig(properties != null ? properties : new Properties());
+    }
+
+    private static String getString(Properties properties, String name, String defaultValue) {
+
+        String value = properties.getProperty(name);
+        return StringUtils.isBlank(value) ? defaultValue : value.trim();
+    }
+
+    private static boolean getBoolean(Properties properties, String name, boolean defaultValue) {
+
+        String value = properties.getProperty(name);
+        return StringUtils.isBlank(value) ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    private static int getPositiveInt(Properties properties, String name, int defaultValue) {
+
+        return getInt(properties, name, defaultValue, 1, Integer.MAX_VALUE);
+    }
+
+    private static int getNonNegativeInt(Properties properties, String name, int defaultValue) {
+
+        return getInt(properties, name, defaultValue, 0, Integer.MAX_VALUE);
+    }
+
+    private static int getPercentage(Properties properties, String name, int defaultValue) {
+
+        return getInt(properties, name, defaultValue, 1, MAX_PERCENTAGE);
+    }
+
+    private static int getInt(Properties properties, String name, int defaultValue, int minValue, int maxValue) {
+
+        String value = properties.getProperty(name);
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            int intValue = Integer.parseInt(value.trim());
+            if (intValue >= minValue && intValue <= maxValue) {
+                return intValue;
+            }
+        } catch (NumberFormatException e) {
+            // Fall back to the default value below.
+        }
+        log.warn("Invalid value: " + value + " configured for the property: " + name + ". Using the default " +
+                "value: " + defaultValue);
+        return defaultValue;
+    }
+
+    /**
+     * Maximum age in milliseconds of a cached tenant configuration snapshot.
+     */
+    public int getConfigCacheMaxAge() {
+
+        return configCacheMaxAge;
+    }
+
+    /**
+     * Maximum number of pooled connections to an Evident API base path.
+     */
+    public int getHttpMaxConnections() {
+
+        return httpMaxConnections;
+    }
+
+    /**
+     * Maximum time in milliseconds to wait for a connection from the pool.
+     */
+    public int getHttpConnectionRequestTimeout() {
+
+        return httpConnectionRequestTimeout;
+    }
+
+    /**
+     * Time in milliseconds after which idle pooled connections are evicted.
+     */
+    public int getHttpIdleConnectionTimeout() {
+
+        return httpIdleConnectionTimeout;
+    }
+
+    /**
+     * Maximum time in milliseconds to keep a connection alive, if the server doesn't advertise a keep alive time.
+     */
+    public int getHttpKeepAliveDuration() {
+
+        return httpKeepAliveDuration;
+    }
+
+    /**
+     * Maximum time in milliseconds to establish a connection to Evident.
+     */
+    public int getHttpConnectTimeout() {
+
+        return httpConnectTimeout;
+    }
+
+    /**
+     * Maximum time in milliseconds to wait for data from Evident once connected.
+     */
+    public int getHttpSocketTimeout() {
+
+        return httpSocketTimeout;
+    }
+
+    /**
+     * Maximum size in bytes of a response body accepted from Evident.
+     */
+    public int getHttpMaxResponseSize() {
+
+        return httpMaxResponseSize;
+    }
+
+    /**
+     * Number of threads executing the Evident API calls.
+     */
+    public int getHttpIoThreads() {
+
+        return httpIoThreads;
+    }
+
+    /**
+     * Maximum number of Evident API calls waiting for an I/O thread.
+     */
+    public int getHttpIoQueueCapacity() {
+
+        return httpIoQueueCapacity;
+    }
+
+    /**
+     * Maximum time in milliseconds a synchronous caller waits for an Evident API call to complete.
+     */
+    public int getHttpRequestDeadline() {
+
+        return httpRequestDeadline;
+    }
+
+    /**
+     * Whether the calls to an Evident API base path are short circuited while the base path is unhealthy.
+     */
+    public boolean isCircuitBreakerEnabled() {
+
+        return circuitBreakerEnabled;
+    }
+
+    /**
+     * Number of the most recent calls used to compute the failure and slow call rates.
+     */
+    public int getCircuitBreakerWindowSize() {
+
+        return circuitBreakerWindowSize;
+    }
+
+    /**
+     * Minimum number of recorded calls before the failure and slow call rates are evaluated.
+     */
+    public int getCircuitBreakerMinimumCalls() {
+
+        return circuitBreakerMinimumCalls;
+    }
+
+    /**
+     * Failure rate percentage at or above which the circuit is opened.
+     */
+    public int getCircuitBreakerFailureRateThreshold() {
+
+        return circuitBreakerFailureRateThreshold;
+    }
+
+    /**
+     * Duration in milliseconds above which a call is considered slow.
+     */
+    public int getCircuitBreakerSlowCallDuration() {
+
+        return circuitBreakerSlowCallDuration;
+    }
+
+    /**
+     * Slow call rate percentage at or above which the circuit is opened.
+     */
+    public int getCircuitBreakerSlowCallRateThreshold() {
+
+        return circuitBreakerSlowCallRateThreshold;
+    }
+
+    /**
+     * Time in milliseconds the circuit stays open before probe calls are allowed.
+     */
+    public int getCircuitBreakerOpenDuration() {
+
+        return circuitBreakerOpenDuration;
+    }
+
+    /**
+     * Number of probe calls allowed while the circuit is half open.
+     */
+    public int getCircuitBreakerHalfOpenCalls() {
+
+        return circuitBreakerHalfOpenCalls;
+    }
+
+    /**
+     * Whether the verification requests of the newly added users are submitted to Evident asynchronously.
+     */
+    public boolean isAsyncSubmissionEnabled() {
+
+        return asyncSubmissionEnabled;
+    }
+
+    /**
+     * Number of worker threads submitting the verification requests.
+     */
+    public int getSubmissionWorkerThreads() {
+
+        return submissionWorkerThreads;
+    }
+
+    /**
+     * Maximum number of verification requests waiting to be submitted.
+     */
+    public int getSubmissionQueueCapacity() {
+
+        return submissionQueueCapacity;
+    }
+
+    /**
+     * Whether the user addition fails when the submission queue is full. Otherwise the verification request is
+     * submitted synchronously in the thread adding the user.
+     */
+    public boolean isRejectOnQueueFull() {
+
+        return rejectOnQueueFull;
+    }
+
+    /**
+     * Maximum number of times a submission is retried on transient failures.
+     */
+    public int getSubmissionMaxRetries() {
+
+        return submissionMaxRetries;
+    }
+
+    /**
+     * Initial delay in milliseconds before retrying a failed submission. The delay is doubled on each retry.
+     */
+    public int getSubmissionRetryBackoff() {
+
+        return submissionRetryBackoff;
+    }
+
+    /**
+     * Time in milliseconds the verification request sent for a user is reused by the repeated submissions of the
+     * user. Zero disables the reuse.
+     */
+    public int getSubmissionIdempotencyTimeToLive() {
+
+        return submissionIdempotencyTimeToLive;
+    }
+
+    /**
+     * Maximum number of remembered verification requests.
+     */
+    public int getSubmissionIdempotencyMaxEntries() {
+
+        return submissionIdempotencyMaxEntries;
+    }
+
+    /**
+     * Whether the Evident verification status responses are cached.
+     */
+    public boolean isStatusCacheEnabled() {
+
+        return statusCacheEnabled;
+    }
+
+    /**
+     * Maximum number of cached verification status responses.
+     */
+    public int getStatusCacheMaxEntries() {
+
+        return statusCacheMaxEntries;
+    }
+
+    /**
+     * Time in milliseconds to cache the status responses of the completed verifications.
+     */
+    public int getStatusCacheTimeToLive() {
+
+        return statusCacheTimeToLive;
+    }
+
+    /**
+     * Time in milliseconds to cache the status responses of the verifications which are not completed yet.
+     */
+    public int getStatusCacheNegativeTimeToLive() {
+
+        return statusCacheNegativeTimeToLive;
+    }
+
+    /**
+     * Backend of the status cache, the submission registry and the in-flight calls. Either local, distributed or
+     * the name of a class implementing the cache backend.
+     */
+    public String getCacheBackend() {
+
+        return cacheBackend;
+    }
+
+    /**
+     * Maximum time in milliseconds to wait for an Evident API call in progress on another node of the cluster,
+     * before making the call on this node. At most the HTTP request deadline.
+     */
+    public int getCacheInFlightMaxWait() {
+
+        return cacheInFlightMaxWait;
+    }
+
+    /**
+     * Whether the verification status checks of the pending users are backed off while the users don't progress.
+     */
+    public boolean isRecheckEnabled() {
+
+        return recheckEnabled;
+    }
+
+    /**
+     * Time in milliseconds between the first two verification status checks of a pending user.
+     */
+    public int getRecheckInitialInterval() {
+
+        return recheckInitialInterval;
+    }
+
+    /**
+     * Maximum time in milliseconds between two verification status checks of a pending user.
+     */
+    public int getRecheckMaxInterval() {
+
+        return recheckMaxInterval;
+    }
+
+    /**
+     * Maximum number of pending verification requests with a re-check schedule.
+     */
+    public int getRecheckMaxEntries() {
+
+        return recheckMaxEntries;
+    }
+
+    /**
+     * Whether the logins of the users who are not pending the verification are discarded using an in memory filter
+     * of the pending users, without reading their claims.
+     */
+    public boolean isPendingFilterEnabled() {
+
+        return pendingFilterEnabled;
+    }
+
+    /**
+     * Time in milliseconds after which the pending user filter of a tenant is rebuilt from the user store.
+     */
+    public int getPendingFilterRefreshInterval() {
+
+        return pendingFilterRefreshInterval;
+    }
+
+    /**
+     * Whether the number of concurrent Evident API calls of each tenant is limited.
+     */
+    public boolean isBulkheadEnabled() {
+
+        return bulkheadEnabled;
+    }
+
+    /**
+     * Maximum number of concurrent Evident API calls of a tenant.
+     */
+    public int getBulkheadMaxConcurrentCalls() {
+
+        return bulkheadMaxConcurrentCalls;
+    }
+
+    /**
+     * Maximum time in milliseconds a call waits when the tenant has the maximum number of calls in progress.
+     */
+    public int getBulkheadMaxWait() {
+
+        return bulkheadMaxWait;
+    }
+
+    /**
+     * Whether the connections to the Evident API base paths of the tenants are opened ahead of the first requests.
+     */
+    public boolean isWarmUpEnabled() {
+
+        return warmUpEnabled;
+    }
+
+    /**
+     * Number of connections opened to each Evident API base path ahead of the first requests.
+     */
+    public int getWarmUpConnections() {
+
+        return warmUpConnections;
+    }
+
+    /**
+     * Whether the accounts pending the verification are periodically checked and unlocked in the background.
+     */
+    public boolean isSweeperEnabled() {
+
+        return sweeperEnabled;
+    }
+
+    /**
+     * Delay in milliseconds between two sweeps.
+     */
+    public int getSweeperInterval() {
+
+        return sweeperInterval;
+    }
+
+    /**
+     * Maximum number of pending users of a tenant checked in a sweep.
+     */
+    public int getSweeperBatchSize() {
+
+        return sweeperBatchSize;
+    }
+
+    /**
+     * Number of threads checking the pending users in a sweep.
+     */
+    public int getSweeperConcurrency() {
+
+        return sweeperConcurrency;
+    }
+
+    /**
+     * Maximum number of Evident API calls per second made by the sweeper.
+     */
+    public int getSweeperMaxRequestsPerSecond() {
+
+        return sweeperMaxRequestsPerSecond;
+    }
+
+    /**
+     * Whether the verification status check is skipped in the login flow, leaving the pending accounts to be
+     * unlocked by the sweeper. Only effective when the sweeper is enabled.
+     */
+    public boolean isSweeperSkipLoginCheck() {
+
+        return sweeperSkipLoginCheck;
+    }
+
+    /**
+     * Whether the rate of the Evident API calls is limited per tenant and for all the tenants together.
+     */
+    public boolean isRateLimitEnabled() {
+
+        return rateLimitEnabled;
+    }
+
+    /**
+     * Maximum sustained number of Evident API calls per second of all the tenants together.
+     */
+    public int getRateLimitRequestsPerSecond() {
+
+        return rateLimitRequestsPerSecond;
+    }
+
+    /**
+     * Maximum number of Evident API calls of all the tenants together allowed in a burst.
+     */
+    public int getRateLimitBurst() {
+
+        return rateLimitBurst;
+    }
+
+    /**
+     * Maximum sustained number of Evident API calls per second of a tenant.
+     */
+    public int getRateLimitTenantRequestsPerSecond() {
+
+        return rateLimitTenantRequestsPerSecond;
+    }
+
+    /**
+     * Maximum number of Evident API calls of a tenant allowed in a burst.
+     */
+    public int getRateLimitTenantBurst() {
+
+        return rateLimitTenantBurst;
+    }
+
+    /**
+     * Maximum time in milliseconds a call waits for the rate limit before being rejected.
+     */
+    public int getRateLimitMaxWait() {
+
+        return rateLimitMaxWait;
+    }
+
+    /**
+     * Whether the verification status check of a login is skipped instead of waiting when the rate limit is
+     * exhausted, leaving the account pending.
+     */
+    public boolean isSkipThrottledStatusCheck() {
+
+        return skipThrottledStatusCheck;
+    }
+
+    /**
+     * Number of users listed from the user store at a time by the bulk enrolment.
+     */
+    public int getBulkEnrolmentPageSize() {
+
+        return bulkEnrolmentPageSize;
+    }
+
+    /**
+     * Number of threads enrolling the users of a page in the bulk enrolment.
+     */
+    public int getBulkEnrolmentConcurrency() {
+
+        return bulkEnrolmentConcurrency;
+    }
+
+    /**
+     * Maximum number of Evident verify requests per second sent by the bulk enrolment.
+     */
+    public int getBulkEnrolmentMaxRequestsPerSecond() {
+
+        return bulkEnrolmentMaxRequestsPerSecond;
+    }
+}
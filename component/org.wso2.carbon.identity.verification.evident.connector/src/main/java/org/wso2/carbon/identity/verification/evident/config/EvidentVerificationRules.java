@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.verification.evident.config;
+
+import org.apache.commons.lang.StringUtils;
+import org.wso2.carbon.identity.verification.evident.client.EvidentVerificationStatus;
+import org.wso2.carbon.identity.verification.evident.client.EvidentVerificationStatusReader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Verification rules of a tenant, compiled once from the rule definition when the configuration snapshot of the
+ * tenant is built. The definition is a semicolon separated list of rules, where each rule is one of,
+ * <ul>
+ * <li>{@code <attributeType>} - The attribute should be shared by the user.</li>
+ * <li>{@code <attributeType>=<value>[|<value>]} - The value of the attribute should be one of the given values.</li>
+ * <li>{@code <attributeType>:<field>=<claimURI>[,<field>=<claimURI>]} - The attribute should be shared and the given
+ * fields of its value should match the claims of the user, ignoring the case and the surrounding and repeated
+ * whitespaces. The field {@code value} refers to a plain string value.</li>
+ * </ul>
+ * The attribute types of the rules are the attributes requested from Evident. Attributes and value fields are
+ * resolved to array slots at compile time, so that a verification status response is read and evaluated without
+ * any lookups or allocations per rule.
+ */
+public final class EvidentVerificationRules {
+
+    /**
+     * Outcome of evaluating the rules against a verification status response.
+     */
+    public enum Result {
+        VERIFIED, NOT_VERIFIED, MISMATCH
+    }
+
+    /**
+     * Name of the field referring to a plain string value of an attribute.
+     */
+    public static final String VALUE_FIELD = "value";
+
+    private static final String RULE_SEPARATOR_REGEX = "\\s*;\\s*";
+    private static final String FIELD_SEPARATOR_REGEX = "\\s*,\\s*";
+    private static final String VALUE_SEPARATOR_REGEX = "\\s*\\|\\s*";
+
+    private final String definition;
+    private final String[] attributeTypes;
+    private final Map<String, Integer> attributeIndexes;
+    private final Map<String, Integer> fieldIndexes;
+    private final int fieldCount;
+    private final String[] claimUris;
+    private final Rule[] rules;
+    private final EvidentVerificationStatusReader statusReader;
+
+    private EvidentVerificationRules(String definition, List<String> attributeTypes, List<String> fieldNames,
+                                     Set<String> claimUris, List<Rule> rules) {
+
+        this.definition = definition;
+        this.attributeTypes = attributeTypes.toArray(new String[0]);
+        this.attributeIndexes = toIndexMap(attributeTypes, 0);
+        // Slot 0 of each attribute holds the plain string value.
+        this.fieldIndexes = toIndexMap(fieldNames, 1);
+        this.fieldCount = fieldNames.size() + 1;
+        this.claimUris = claimUris.toArray(new String[0]);
+        this.rules = rules.toArray(new Rule[0]);
+        this.statusReader = new EvidentVerificationStatusReader(this);
+    }
+
+    /**
+     * Compile the given rule definition.
+     *
+     * @param definition Rule definition.
+     * @return Compiled rules.
+     * @throws IllegalArgumentException If the definition is invalid.
+     */
+    public static EvidentVerificationRules compile(String definition) {
+
+        if (StringUtils.isBlank(definition)) {
+            throw new IllegalArgumentException("No verification rules are defined.");
+        }
+
+        List<String> attributeTypes = new ArrayList<>();
+        List<String> fieldNames = new ArrayList<>();
+        Set<String> claimUris = new LinkedHashSet<>();
+        List<Rule> rules = new ArrayList<>();
+
+        for (String ruleDefinition : definition.trim().split(RULE_SEPARATOR_REGEX)) {
+            if (ruleDefinition.isEmpty()) {
+                continue;
+            }
+            int fieldsStart = ruleDefinition.indexOf(':');
+            int valuesStart = ruleDefinition.indexOf('=');
+            if (fieldsStart > 0 && (valuesStart < 0 || fieldsStart < valuesStart)) {
+                int attribute = indexOf(attributeTypes, ruleDefinition.substring(0, fieldsStart).trim());
+                List<Integer> fields = new ArrayList<>();
+                List<String> claims = new ArrayList<>();
+                for (String fieldDefinition : ruleDefinition.substring(fieldsStart + 1).trim()
+                        .split(FIELD_SEPARATOR_REGEX)) {
+                    String[] mapping = fieldDefinition.split("\\s*=\\s*", 2);
+                    if (mapping.length != 2 || mapping[0].isEmpty() || mapping[1].isEmpty()) {
+                        throw new IllegalArgumentException("Invalid claim mapping: " + fieldDefinition +
+                                " in the verification rule: " + ruleDefinition);
+                    }
+                    fields.add(VALUE_FIELD.equals(mapping[0]) ? 0 : indexOf(fieldNames, mapping[0]) + 1);
+                    claims.add(mapping[1]);
+                    claimUris.add(mapping[1]);
+                }
+                int[] fieldSlots = new int[fields.size()];
+                for (int i = 0; i < fieldSlots.length; i++) {
+                    fieldSlots[i] = fields.get(i);
+                }
+                rules.add(new ClaimMatchRule(attribute, fieldSlots, claims.toArray(new String[0])));
+            } else if (valuesStart > 0) {
+                String[] values = ruleDefinition.substring(valuesStart + 1).trim().split(VALUE_SEPARATOR_REGEX);
+                if (values.length == 0 || values[0].isEmpty()) {
+                    throw new IllegalArgumentException("No expected values in the verification rule: " +
+                            ruleDefinition);
+                }
+                rules.add(new ValueRule(indexOf(attributeTypes, ruleDefinition.substring(0, valuesStart).trim()),
+                        values));
+            } else if (fieldsStart < 0) {
+                rules.add(new SharedRule(indexOf(attributeTypes, ruleDefinition)));
+            } else {
+                throw new IllegalArgumentException("Invalid verification rule: " + ruleDefinition);
+            }
+        }
+        if (rules.isEmpty()) {
+            throw new IllegalArgumentException("No verification rules are defined.");
+        }
+        return new EvidentVerificationRules(definition, attributeTypes, fieldNames, claimUris, rules);
+    }
+
+    /**
+     * Return the rule definition the rules were compiled from.
+     *
+     * @return Rule definition.
+     */
+    public String getDefinition() {
+
+        return definition;
+    }
+
+    /**
+     * Return the attribute types to be requested from Evident.
+     *
+     * @return Attribute types.
+     */
+    public String[] getAttributeTypes() {
+
+        return attributeTypes.clone();
+    }
+
+    /**
+     * Return the claims of the user compared by the rules.
+     *
+     * @return Claim URIs.
+     */
+    public String[] getClaimUris() {
+
+        return claimUris.clone();
+    }
+
+    /**
+     * Return the reader of the verification status responses, extracting the attributes used by these rules.
+     *
+     * @return Verification status reader.
+     */
+    public EvidentVerificationStatusReader getStatusReader() {
+
+        return statusReader;
+    }
+
+    public int getAttributeCount() {
+
+        return attributeTypes.length;
+    }
+
+    /**
+     * Return the number of value slots of an attribute, including the slot of the plain string value.
+     *
+     * @return Number of value slots.
+     */
+    public int getFieldCount() {
+
+        return fieldCount;
+    }
+
+    /**
+     * Return the index of the given attribute type.
+     *
+     * @param attributeType Attribute type.
+     * @return Index of the attribute, or -1 if the attribute is not used by the rules.
+     */
+    public int getAttributeIndex(String attributeType) {
+
+        Integer index = attributeIndexes.get(attributeType);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Return the value slot of the given field of an object value.
+     *
+     * @param fieldName Field name.
+     * @return Value slot of the field, or -1 if the field is not used by the rules.
+     */
+    public int getFieldIndex(String fieldName) {
+
+        Integer index = fieldIndexes.get(fieldName);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Evaluate the rules against the verification status response. A mismatch with the claims of the user takes
+     * precedence over the rules which are not satisfied yet.
+     *
+     * @param status      Verification status response, read with the reader of these rules.
+     * @param claimValues Claims of the user.
+     * @return Evaluation result.
+     */
+    public Result evaluate(EvidentVerificationStatus status, Map<String, String> claimValues) {
+
+        Result result = Result.VERIFIED;
+        for (Rule rule : rules) {
+            Result ruleResult = rule.evaluate(status, claimValues);
+            if (ruleResult == Result.MISMATCH) {
+                return Result.MISMATCH;
+            }
+            if (ruleResult == Result.NOT_VERIFIED) {
+                result = Result.NOT_VERIFIED;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compare two values ignoring the case, the leading and trailing whitespaces, and the length of the whitespace
+     * runs in between. Missing values are considered empty.
+     */
+    static boolean normalizedEquals(String first, String second) {
+
+        int firstLength = first != null ? first.length() : 0;
+        int secondLength = second != null ? second.length() : 0;
+        int i = skipWhitespace(first, 0, firstLength);
+        int j = skipWhitespace(second, 0, secondLength);
+        while (i < firstLength && j < secondLength) {
+            char a = first.charAt(i);
+            char b = second.charAt(j);
+            boolean aWhitespace = Character.isWhitespace(a);
+            boolean bWhitespace = Character.isWhitespace(b);
+            if (aWhitespace || bWhitespace) {
+                i = skipWhitespace(first, i, firstLength);
+                j = skipWhitespace(second, j, secondLength);
+                // A whitespace run matches another only in between, trailing runs are ignored.
+                if (!aWhitespace || !bWhitespace) {
+                    return i == firstLength && j == secondLength;
+                }
+                continue;
+            }
+            if (a != b && Character.toUpperCase(a) != Character.toUpperCase(b) &&
+                    Character.toLowerCase(a) != Character.toLowerCase(b)) {
+                return false;
+            }
+            i++;
+            j++;
+        }
+        return skipWhitespace(first, i, firstLength) == firstLength &&
+                skipWhitespace(second, j, secondLength) == secondLength;
+    }
+
+    private static int skipWhitespace(String value, int index, int length) {
+
+        while (index < length && Character.isWhitespace(value.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static int indexOf(List<String> names, String name) {
+
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Attribute type or field name can't be empty in the verification " +
+                    "rules.");
+        }
+        int index = names.indexOf(name);
+        if (index < 0) {
+            names.add(name);
+            index = names.size() - 1;
+        }
+        return index;
+    }
+
+    private static Map<String, Integer> toIndexMap(List<String> names, int offset) {
+
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            indexes.put(names.get(i), i + offset);
+        }
+        return Collections.unmodifiableMap(indexes);
+    }
+
+    private interface Rule {
+
+        Result evaluate(EvidentVerificationStatus status, Map<String, String> claimValues);
+    }
+
+    private static final class SharedRule implements Rule {
+
+        private final int attribute;
+
+        SharedRule(int attribute) {
+
+            this.attribute = attribute;
+        }
+
+        @Override
+        public Result evaluate(EvidentVerificationStatus status, Map<String, String> claimValues) {
+
+            return status.isShared(attribute) ? Result.VERIFIED : Result.NOT_VERIFIED;
+        }
+    }
+
+    private static final class ValueRule implements Rule {
+
+        private final int attribute;
+        private final String[] expectedValues;
+
+        ValueRule(int attribute, String[] expectedValues) {
+
+            this.attribute = attribute;
+            this.expectedValues = expectedValues;
+        }
+
+        @Override
+        public Result evaluate(EvidentVerificationStatus status, Map<String, String> claimValues) {
+
+            String value = status.getValue(attribute, 0);
+            for (String expectedValue : expectedValues) {
+                if (expectedValue.equals(value)) {
+                    return Result.VERIFIED;
+                }
+            }
+            return Result.NOT_VERIFIED;
+        }
+    }
+
+    private static final class ClaimMatchRule implements Rule {
+
+        private final int attribute;
+        private final int[] fields;
+        private final String[] claimUris;
+
+        ClaimMatchRule(int attribute, int[] fields, String[] claimUris) {
+
+            this.attribute = attribute;
+            this.fields = fields;
+            this.claimUris = claimUris;
+        }
+
+        @Override
+        public Result evaluate(EvidentVerificationStatus status, Map<String, String> claimValues) {
+
+            if (!status.isShared(attribute)) {
+                return Result.NOT_VERIFIED;
+            }
+            for (int i = 0; i < fields.length; i++) {
+                if (!normalizedEquals(status.getValue(attribute, fields[i]), claimValues.get(claimUris[i]))) {
+                    return Result.MISMATCH;
+                }
+            }
+            return Result.VERIFIED;
+        }
+    }
+}
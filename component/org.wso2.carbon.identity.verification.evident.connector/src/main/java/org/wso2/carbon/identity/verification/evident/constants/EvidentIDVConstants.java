@@ -26,11 +26,103 @@ public class EvidentIDVConstants {
     public static final String EVIDENT_EMAIL_SUMMARY = "evidentVerify.email.summary";
     public static final String EVIDENT_EMAIL_DESCRIPTION = "evidentVerify.email.description";
     public static final String EVIDENT_USER_STORES = "evidentVerify.userstores";
+    public static final String EVIDENT_WEBHOOK_SECRET = "__secret__evidentVerify.webhook.secret";
+    public static final String EVIDENT_VERIFICATION_RULES = "evidentVerify.verification.rules";
 
     public static final String EVIDENT_API_PATH_VERIFY_REQUESTS = "api/v1/verify/requests";
+    public static final String EVIDENT_WEBHOOK_SERVLET_PATH = "/evident/webhook";
+    public static final String EVIDENT_WEBHOOK_SIGNATURE_HEADER = "X-Evident-Signature";
+    public static final String METRICS_MBEAN_NAME = "org.wso2.carbon.identity.verification.evident:type=Metrics";
+    public static final String BULK_ENROLMENT_MBEAN_NAME =
+            "org.wso2.carbon.identity.verification.evident:type=BulkEnrolment";
     public static final String EVIDENT_VERIFICATION_ID_CLAIM_URI = "http://wso2.org/claims/identity/evidentRequestID";
     public static final String FIRST_NAME_CLAIM_URI = "http://wso2.org/claims/givenname";
     public static final String LAST_NAME_CLAIM_URI = "http://wso2.org/claims/lastname";
+    public static final String DEFAULT_VERIFICATION_RULES =
+            "identity_assurance.document_verification.americas.us.drivers_license.verification_status=Valid;" +
+            "core.fullname:first=" + FIRST_NAME_CLAIM_URI + ",last=" + LAST_NAME_CLAIM_URI;
 
     public static final String VERIFICATION_FAILED_ERROR_CODE = "17010";
+    public static final String VERIFICATION_UNAVAILABLE_ERROR_CODE = "17011";
+
+    // Server wide handler properties, configured as event handler properties of the evidentEventHandler.
+    public static final String CONFIG_CACHE_MAX_AGE = "evidentEventHandler.configCache.maxAge";
+    public static final String HTTP_MAX_CONNECTIONS = "evidentEventHandler.http.maxConnections";
+    public static final String HTTP_CONNECTION_REQUEST_TIMEOUT = "evidentEventHandler.http.connectionRequestTimeout";
+    public static final String HTTP_IDLE_CONNECTION_TIMEOUT = "evidentEventHandler.http.idleConnectionTimeout";
+    public static final String HTTP_KEEP_ALIVE_DURATION = "evidentEventHandler.http.keepAliveDuration";
+    public static final String HTTP_CONNECT_TIMEOUT = "evidentEventHandler.http.connectTimeout";
+    public static final String HTTP_SOCKET_TIMEOUT = "evidentEventHandler.http.socketTimeout";
+    public static final String HTTP_MAX_RESPONSE_SIZE = "evidentEventHandler.http.maxResponseSize";
+    public static final String HTTP_IO_THREADS = "evidentEventHandler.http.ioThreads";
+    public static final String HTTP_IO_QUEUE_CAPACITY = "evidentEventHandler.http.ioQueueCapacity";
+    public static final String HTTP_REQUEST_DEADLINE = "evidentEventHandler.http.requestDeadline";
+    public static final String CIRCUIT_BREAKER_ENABLE = "evidentEventHandler.circuitBreaker.enable";
+    public static final String CIRCUIT_BREAKER_WINDOW_SIZE = "evidentEventHandler.circuitBreaker.windowSize";
+    public static final String CIRCUIT_BREAKER_MINIMUM_CALLS = "evidentEventHandler.circuitBreaker.minimumCalls";
+    public static final String CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD =
+            "evidentEventHandler.circuitBreaker.failureRateThreshold";
+    public static final String CIRCUIT_BREAKER_SLOW_CALL_DURATION =
+            "evidentEventHandler.circuitBreaker.slowCallDuration";
+    public static final String CIRCUIT_BREAKER_SLOW_CALL_RATE_THRESHOLD =
+            "evidentEventHandler.circuitBreaker.slowCallRateThreshold";
+    public static final String CIRCUIT_BREAKER_OPEN_DURATION = "evidentEventHandler.circuitBreaker.openDuration";
+    public static final String CIRCUIT_BREAKER_HALF_OPEN_CALLS = "evidentEventHandler.circuitBreaker.halfOpenCalls";
+    public static final String SUBMISSION_ASYNC_ENABLE = "evidentEventHandler.submission.async.enable";
+    public static final String SUBMISSION_WORKER_THREADS = "evidentEventHandler.submission.workerThreads";
+    public static final String SUBMISSION_QUEUE_CAPACITY = "evidentEventHandler.submission.queueCapacity";
+    public static final String SUBMISSION_QUEUE_FULL_POLICY = "evidentEventHandler.submission.queueFullPolicy";
+    public static final String SUBMISSION_MAX_RETRIES = "evidentEventHandler.submission.maxRetries";
+    public static final String SUBMISSION_RETRY_BACKOFF = "evidentEventHandler.submission.retryBackoff";
+    public static final String SUBMISSION_IDEMPOTENCY_TTL = "evidentEventHandler.submission.idempotency.timeToLive";
+    public static final String SUBMISSION_IDEMPOTENCY_MAX_ENTRIES =
+            "evidentEventHandler.submission.idempotency.maxEntries";
+    public static final String STATUS_CACHE_ENABLE = "evidentEventHandler.statusCache.enable";
+    public static final String STATUS_CACHE_MAX_ENTRIES = "evidentEventHandler.statusCache.maxEntries";
+    public static final String STATUS_CACHE_TTL = "evidentEventHandler.statusCache.timeToLive";
+    public static final String STATUS_CACHE_NEGATIVE_TTL = "evidentEventHandler.statusCache.negativeTimeToLive";
+    public static final String CACHE_BACKEND = "evidentEventHandler.cache.backend";
+    public static final String CACHE_IN_FLIGHT_MAX_WAIT = "evidentEventHandler.cache.inFlightMaxWait";
+    public static final String RECHECK_ENABLE = "evidentEventHandler.recheck.enable";
+    public static final String RECHECK_INITIAL_INTERVAL = "evidentEventHandler.recheck.initialInterval";
+    public static final String RECHECK_MAX_INTERVAL = "evidentEventHandler.recheck.maxInterval";
+    public static final String RECHECK_MAX_ENTRIES = "evidentEventHandler.recheck.maxEntries";
+    public static final String PENDING_FILTER_ENABLE = "evidentEventHandler.pendingFilter.enable";
+    public static final String PENDING_FILTER_REFRESH_INTERVAL = "evidentEventHandler.pendingFilter.refreshInterval";
+    public static final String SWEEPER_ENABLE = "evidentEventHandler.sweeper.enable";
+    public static final String SWEEPER_INTERVAL = "evidentEventHandler.sweeper.interval";
+    public static final String SWEEPER_BATCH_SIZE = "evidentEventHandler.sweeper.batchSize";
+    public static final String SWEEPER_CONCURRENCY = "evidentEventHandler.sweeper.concurrency";
+    public static final String SWEEPER_MAX_REQUESTS_PER_SECOND = "evidentEventHandler.sweeper.maxRequestsPerSecond";
+    public static final String SWEEPER_SKIP_LOGIN_CHECK = "evidentEventHandler.sweeper.skipLoginCheck";
+    public static final String RATE_LIMIT_ENABLE = "evidentEventHandler.rateLimit.enable";
+    public static final String RATE_LIMIT_REQUESTS_PER_SECOND = "evidentEventHandler.rateLimit.requestsPerSecond";
+    public static final String RATE_LIMIT_BURST = "evidentEventHandler.rateLimit.burst";
+    public static final String RATE_LIMIT_TENANT_REQUESTS_PER_SECOND =
+            "evidentEventHandler.rateLimit.tenant.requestsPerSecond";
+    public static final String RATE_LIMIT_TENANT_BURST = "evidentEventHandler.rateLimit.tenant.burst";
+    public static final String RATE_LIMIT_MAX_WAIT = "evidentEventHandler.rateLimit.maxWait";
+    public static final String RATE_LIMIT_EXHAUSTED_POLICY = "evidentEventHandler.rateLimit.exhaustedPolicy";
+    public static final String BULKHEAD_ENABLE = "evidentEventHandler.bulkhead.enable";
+    public static final String BULKHEAD_MAX_CONCURRENT_CALLS = "evidentEventHandler.bulkhead.maxConcurrentCalls";
+    public static final String BULKHEAD_MAX_WAIT = "evidentEventHandler.bulkhead.maxWait";
+    public static final String WARM_UP_ENABLE = "evidentEventHandler.warmUp.enable";
+    public static final String WARM_UP_CONNECTIONS = "evidentEventHandler.warmUp.connections";
+    public static final String BULK_ENROLMENT_PAGE_SIZE = "evidentEventHandler.bulkEnrolment.pageSize";
+    public static final String BULK_ENROLMENT_CONCURRENCY = "evidentEventHandler.bulkEnrolment.concurrency";
+    public static final String BULK_ENROLMENT_MAX_REQUESTS_PER_SECOND =
+            "evidentEventHandler.bulkEnrolment.maxRequestsPerSecond";
+
+    public static final String QUEUE_FULL_POLICY_SYNC = "sync";
+    public static final String QUEUE_FULL_POLICY_REJECT = "reject";
+    public static final String RATE_LIMIT_POLICY_QUEUE = "queue";
+    public static final String RATE_LIMIT_POLICY_SKIP = "skip";
+    public static final String CACHE_BACKEND_LOCAL = "local";
+    public static final String CACHE_BACKEND_DISTRIBUTED = "distributed";
+
+    public static final String STATUS_CACHE_NAME = "EvidentVerificationStatusCache";
+    public static final String SUBMISSION_CACHE_NAME = "EvidentSubmissionCache";
+    public static final String IN_FLIGHT_CACHE_NAME = "EvidentInFlightCallCache";
+    public static final String RECHECK_CACHE_NAME = "EvidentRecheckScheduleCache";
+    public static final String SWEEPER_CACHE_NAME = "EvidentSweeperCheckpointCache";
 }
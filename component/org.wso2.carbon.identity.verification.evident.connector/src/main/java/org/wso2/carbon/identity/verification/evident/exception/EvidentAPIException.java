@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.exception;
+
+/**
+ * Thrown when a call to the Evident API fails, either due to a connection failure or an error status returned by
+ * the API.
+ */
+public class EvidentAPIException extends EvidentIDVHandlerException {
+
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    private static final int NO_STATUS = -1;
+    private static final int SERVER_ERROR = 500;
+
+    private final int statusCode;
+
+    public EvidentAPIException(String message, int statusCode) {
+
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public EvidentAPIException(String message, Throwable cause) {
+
+        super(message, cause);
+        this.statusCode = NO_STATUS;
+    }
+
+    /**
+     * Return the HTTP status code returned by the API, or -1 if the API couldn't be reached.
+     *
+     * @return HTTP status code.
+     */
+    public int getStatusCode() {
+
+        return statusCode;
+    }
+
+    /**
+     * Whether the failure is transient and the call could succeed if retried. i.e. the API couldn't be reached,
+     * the API is throttling the calls or returned a server error.
+     *
+     * @return True if the failure is transient, False otherwise.
+     */
+    public boolean isTransient() {
+
+        return statusCode == NO_STATUS || statusCode == TOO_MANY_REQUESTS || statusCode >= SERVER_ERROR;
+    }
+}
@@ -18,7 +18,17 @@
 
 package org.wso2.carbon.identity.verification.evident.internal;
 
+import org.osgi.service.http.HttpService;
 import org.wso2.carbon.identity.governance.IdentityGovernanceService;
+import org.wso2.carbon.identity.verification.evident.client.EvidentBulkhead;
+import org.wso2.carbon.identity.verification.evident.client.EvidentRateLimiter;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVServerConfig;
+import org.wso2.carbon.identity.verification.evident.task.EvidentBulkEnrolment;
+import org.wso2.carbon.identity.verification.evident.task.EvidentConnectionWarmer;
+import org.wso2.carbon.identity.verification.evident.task.EvidentVerificationSubmitter;
+import org.wso2.carbon.identity.verification.evident.task.EvidentVerificationSweeper;
+import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.utils.ConfigurationContextService;
 
 /**
  * The data holder for the Evident IDV.
@@ -28,6 +38,16 @@ public class EvidentIDVDataHolder {
     private static final EvidentIDVDataHolder instance = new EvidentIDVDataHolder();
 
     private IdentityGovernanceService identityGovernanceService;
+    private RealmService realmService;
+    private HttpService httpService;
+    private ConfigurationContextService configurationContextService;
+    private volatile EvidentIDVServerConfig serverConfig = EvidentIDVServerConfig.build(null);
+    private volatile EvidentVerificationSubmitter verificationSubmitter;
+    private volatile EvidentVerificationSweeper verificationSweeper;
+    private volatile EvidentBulkEnrolment bulkEnrolment;
+    private volatile EvidentRateLimiter rateLimiter;
+    private volatile EvidentBulkhead bulkhead;
+    private volatile EvidentConnectionWarmer connectionWarmer;
 
     private EvidentIDVDataHolder() {}
 
@@ -50,4 +70,119 @@ public class EvidentIDVDataHolder {
 
         this.identityGovernanceService = identityGovernanceService;
     }
+
+    public RealmService getRealmService() {
+
+        return realmService;
+    }
+
+    public void setRealmService(RealmService realmService) {
+
+        this.realmService = realmService;
+    }
+
+    public HttpService getHttpService() {
+
+        return httpService;
+    }
+
+    public void setHttpService(HttpService httpService) {
+
+        this.httpService = httpService;
+    }
+
+    public ConfigurationContextService getConfigurationContextService() {
+
+        return configurationContextService;
+    }
+
+    public void setConfigurationContextService(ConfigurationContextService configurationContextService) {
+
+        this.configurationContextService = configurationContextService;
+    }
+
+    public EvidentIDVServerConfig getServerConfig() {
+
+        return serverConfig;
+    }
+
+    public void setServerConfig(EvidentIDVServerConfig serverConfig) {
+
+        this.serverConfig = serverConfig;
+    }
+
+    public EvidentVerificationSubmitter getVerificationSubmitter() {
+
+        return verificationSubmitter;
+    }
+
+    public void setVerificationSubmitter(EvidentVerificationSubmitter verificationSubmitter) {
+
+        this.verificationSubmitter = verificationSubmitter;
+    }
+
+    public EvidentVerificationSweeper getVerificationSweeper() {
+
+        return verificationSweeper;
+    }
+
+    public void setVerificationSweeper(EvidentVerificationSweeper verificationSweeper) {
+
+        this.verificationSweeper = verificationSweeper;
+    }
+
+    public EvidentBulkEnrolment getBulkEnrolment() {
+
+        return bulkEnrolment;
+    }
+
+    public void setBulkEnrolment(EvidentBulkEnrolment bulkEnrolment) {
+
+        this.bulkEnrolment = bulkEnrolment;
+    }
+
+    /**
+     * Return the rate limiter of the Evident API calls, or null if the rate is not limited.
+     *
+     * @return Rate limiter.
+     */
+    public EvidentRateLimiter getRateLimiter() {
+
+        return rateLimiter;
+    }
+
+    public void setRateLimiter(EvidentRateLimiter rateLimiter) {
+
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Return the bulkhead limiting the concurrent Evident API calls of each tenant, or null if not limited.
+     *
+     * @return Bulkhead.
+     */
+    public EvidentBulkhead getBulkhead() {
+
+        return bulkhead;
+    }
+
+    public void setBulkhead(EvidentBulkhead bulkhead) {
+
+        this.bulkhead = bulkhead;
+    }
+
+    /**
+     * Return the warmer of the connections to the Evident API base paths, or null if the connections aren't warmed up.
+     *
+     * @return Connection warmer.
+     */
+    public EvidentConnectionWarmer getConnectionWarmer() {
+
+        return connectionWarmer;
+    }
+
+    public void setConnectionWarmer(EvidentConnectionWarmer connectionWarmer) {
+
+        this.connectionWarmer = connectionWarmer;
+    }
 }
@@ -28,10 +28,32 @@ import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
+import org.osgi.service.http.HttpService;
 import org.wso2.carbon.identity.event.handler.AbstractEventHandler;
 import org.wso2.carbon.identity.governance.IdentityGovernanceService;
 import org.wso2.carbon.identity.governance.common.IdentityConnectorConfig;
 import org.wso2.carbon.identity.verification.evident.EvidentIDVHandler;
+import org.wso2.carbon.identity.verification.evident.client.EvidentAPIClientManager;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfigCache;
+import org.wso2.carbon.identity.verification.evident.listener.EvidentIDVConfigChangeListener;
+import org.wso2.carbon.identity.verification.evident.metrics.EvidentIDVMetrics;
+import org.wso2.carbon.identity.verification.evident.task.EvidentBulkEnrolment;
+import org.wso2.carbon.identity.verification.evident.task.EvidentConnectionWarmer;
+import org.wso2.carbon.identity.verification.evident.task.EvidentVerificationSubmitter;
+import org.wso2.carbon.identity.verification.evident.task.EvidentVerificationSweeper;
+import org.wso2.carbon.identity.verification.evident.webhook.EvidentWebhookServlet;
+import org.wso2.carbon.idp.mgt.listener.IdentityProviderMgtListener;
+import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.utils.ConfigurationContextService;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.BULK_ENROLMENT_MBEAN_NAME;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.EVIDENT_WEBHOOK_SERVLET_PATH;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.METRICS_MBEAN_NAME;
 
 @Component(
         name = "org.wso2.carbon.identity.verification.evident.component",
@@ -53,6 +75,23 @@ public class EvidentIDVServiceComponent {
             // Register the connector config to render the resident identity provider configurations
             bundleContext.registerService(IdentityConnectorConfig.class.getName(), evidentIDVHandler, null);
 
+            // Register the listener to invalidate the cached configurations on connector config updates
+            bundleContext.registerService(IdentityProviderMgtListener.class.getName(),
+                    new EvidentIDVConfigChangeListener(), null);
+
+            // Register the servlet receiving the verification status notifications from Evident
+            EvidentIDVDataHolder.getInstance().getHttpService().registerServlet(EVIDENT_WEBHOOK_SERVLET_PATH,
+                    new EvidentWebhookServlet(evidentIDVHandler), null, null);
+
+            // Expose the runtime metrics of the connector through JMX
+            registerMBean(EvidentIDVMetrics.getInstance(), METRICS_MBEAN_NAME);
+
+            // Expose the bulk enrolment of the existing users through JMX
+            EvidentBulkEnrolment bulkEnrolment = new EvidentBulkEnrolment(evidentIDVHandler::enrolUser,
+                    evidentIDVHandler.getPropertyNames());
+            EvidentIDVDataHolder.getInstance().setBulkEnrolment(bulkEnrolment);
+            registerMBean(bulkEnrolment, BULK_ENROLMENT_MBEAN_NAME);
+
             if (log.isDebugEnabled()) {
                 log.debug("Evident IDV handler is activated");
             }
@@ -64,11 +103,73 @@ public class EvidentIDVServiceComponent {
     @Deactivate
     protected void deactivate(ComponentContext context) {
 
+        HttpService httpService = EvidentIDVDataHolder.getInstance().getHttpService();
+        if (httpService != null) {
+            try {
+                httpService.unregister(EVIDENT_WEBHOOK_SERVLET_PATH);
+            } catch (IllegalArgumentException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Evident webhook servlet is not registered.", e);
+                }
+            }
+        }
+        EvidentIDVConfigCache.getInstance().clear();
+        EvidentVerificationSubmitter verificationSubmitter =
+                EvidentIDVDataHolder.getInstance().getVerificationSubmitter();
+        if (verificationSubmitter != null) {
+            verificationSubmitter.shutdown();
+            EvidentIDVDataHolder.getInstance().setVerificationSubmitter(null);
+        }
+        EvidentVerificationSweeper verificationSweeper = EvidentIDVDataHolder.getInstance().getVerificationSweeper();
+        if (verificationSweeper != null) {
+            verificationSweeper.shutdown();
+            EvidentIDVDataHolder.getInstance().setVerificationSweeper(null);
+        }
+        EvidentBulkEnrolment bulkEnrolment = EvidentIDVDataHolder.getInstance().getBulkEnrolment();
+        if (bulkEnrolment != null) {
+            bulkEnrolment.stop();
+            EvidentIDVDataHolder.getInstance().setBulkEnrolment(null);
+        }
+        EvidentConnectionWarmer connectionWarmer = EvidentIDVDataHolder.getInstance().getConnectionWarmer();
+        if (connectionWarmer != null) {
+            connectionWarmer.shutdown();
+            EvidentIDVDataHolder.getInstance().setConnectionWarmer(null);
+        }
+        EvidentAPIClientManager.getInstance().shutdown();
+        unregisterMBean(BULK_ENROLMENT_MBEAN_NAME);
+        unregisterMBean(METRICS_MBEAN_NAME);
+
         if (log.isDebugEnabled()) {
             log.debug("Evident IDV handler is deactivated");
         }
     }
 
+    private void registerMBean(Object mBean, String mBeanName) {
+
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(mBeanName);
+            if (!mBeanServer.isRegistered(name)) {
+                mBeanServer.registerMBean(mBean, name);
+            }
+        } catch (JMException e) {
+            log.error("Error while registering the MBean: " + mBeanName, e);
+        }
+    }
+
+    private void unregisterMBean(String mBeanName) {
+
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(mBeanName);
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            log.error("Error while unregistering the MBean: " + mBeanName, e);
+        }
+    }
+
     @Reference(
             name = "IdentityGovernanceService",
             service = org.wso2.carbon.identity.governance.IdentityGovernanceService.class,
@@ -85,4 +186,55 @@ public class EvidentIDVServiceComponent {
 
         EvidentIDVDataHolder.getInstance().setIdentityGovernanceService(null);
     }
+
+    @Reference(
+            name = "RealmService",
+            service = org.wso2.carbon.user.core.service.RealmService.class,
+            cardinality = ReferenceCardinality.MANDATORY,
+            policy = ReferencePolicy.DYNAMIC,
+            unbind = "unsetRealmService"
+    )
+    protected void setRealmService(RealmService realmService) {
+
+        EvidentIDVDataHolder.getInstance().setRealmService(realmService);
+    }
+
+    protected void unsetRealmService(RealmService realmService) {
+
+        EvidentIDVDataHolder.getInstance().setRealmService(null);
+    }
+
+    @Reference(
+            name = "osgi.http.service",
+            service = org.osgi.service.http.HttpService.class,
+            cardinality = ReferenceCardinality.MANDATORY,
+            policy = ReferencePolicy.DYNAMIC,
+            unbind = "unsetHttpService"
+    )
+    protected void setHttpService(HttpService httpService) {
+
+        EvidentIDVDataHolder.getInstance().setHttpService(httpService);
+    }
+
+    protected void unsetHttpService(HttpService httpService) {
+
+        EvidentIDVDataHolder.getInstance().setHttpService(null);
+    }
+
+    @Reference(
+            name = "config.context.service",
+            service = org.wso2.carbon.utils.ConfigurationContextService.class,
+            cardinality = ReferenceCardinality.MANDATORY,
+            policy = ReferencePolicy.DYNAMIC,
+            unbind = "unsetConfigurationContextService"
+    )
+    protected void setConfigurationContextService(ConfigurationContextService configurationContextService) {
+
+        EvidentIDVDataHolder.getInstance().setConfigurationContextService(configurationContextService);
+    }
+
+    protected void unsetConfigurationContextService(ConfigurationContextService configurationContextService) {
+
+        EvidentIDVDataHolder.getInstance().setConfigurationContextService(null);
+    }
 }
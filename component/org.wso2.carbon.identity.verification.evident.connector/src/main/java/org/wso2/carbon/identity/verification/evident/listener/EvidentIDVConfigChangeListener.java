@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.listener;
+
+import org.wso2.carbon.identity.application.common.model.IdentityProvider;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfigCache;
+import org.wso2.carbon.identity.verification.evident.internal.EvidentIDVDataHolder;
+import org.wso2.carbon.identity.verification.evident.task.EvidentConnectionWarmer;
+import org.wso2.carbon.idp.mgt.IdentityProviderManagementException;
+import org.wso2.carbon.idp.mgt.listener.AbstractIdentityProviderMgtListener;
+
+/**
+ * Invalidates the cached Evident configuration of a tenant when the governance connector configurations, which are
+ * stored in the resident identity provider, are updated, and warms up the connections to the base path of the updated
+ * configuration if enabled.
+ */
+public class EvidentIDVConfigChangeListener extends AbstractIdentityProviderMgtListener {
+
+    @Override
+    public boolean doPostUpdateResidentIdP(IdentityProvider identityProvider, String tenantDomain)
+            throws IdentityProviderManagementException {
+
+        EvidentIDVConfigCache.getInstance().invalidate(tenantDomain);
+        EvidentConnectionWarmer connectionWarmer = EvidentIDVDataHolder.getInstance().getConnectionWarmer();
+        if (connectionWarmer != null) {
+            connectionWarmer.warmUp(tenantDomain);
+        }
+        return true;
+    }
+
+    @Override
+    public int getDefaultOrderId() {
+
+        return 95;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.metrics;
+
+/**
+ * Number of Evident API calls of a tenant in progress and rejected by the bulkhead.
+ */
+public class EvidentBulkheadStats {
+
+    private final String tenantDomain;
+    private final int concurrentCalls;
+    private final long rejected;
+
+    EvidentBulkheadStats(String tenantDomain, int concurrentCalls, long rejected) {
+
+        this.tenantDomain = tenantDomain;
+        this.concurrentCalls = concurrentCalls;
+        this.rejected = rejected;
+    }
+
+    public String getTenantDomain() {
+
+        return tenantDomain;
+    }
+
+    public int getConcurrentCalls() {
+
+        return concurrentCalls;
+    }
+
+    public long getRejected() {
+
+        return rejected;
+    }
+}
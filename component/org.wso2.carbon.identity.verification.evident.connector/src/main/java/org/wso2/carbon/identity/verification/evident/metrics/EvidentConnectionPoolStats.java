@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.verification.evident.metrics;
+
+/**
+ * Number of pooled connections to an Evident API base path, by state, and the capacity of the pool.
+ */
+public class EvidentConnectionPoolStats {
+
+    private final String basePath;
+    private final int leased;
+    private final int available;
+    private final int pending;
+    private final int max;
+
+    EvidentConnectionPoolStats(String basePath, int leased, int available, int pending, int max) {
+
+        this.basePath = basePath;
+        this.leased = leased;
+        this.available = available;
+        this.pending = pending;
+        this.max = max;
+    }
+
+    public String getBasePath() {
+
+        return basePath;
+    }
+
+    /**
+     * Number of connections in use by a call.
+     */
+    public int getLeased() {
+
+        return leased;
+    }
+
+    /**
+     * Number of idle connections kept alive for the next calls.
+     */
+    public int getAvailable() {
+
+        return available;
+    }
+
+    /**
+     * Number of calls waiting for a connection.
+     */
+    public int getPending() {
+
+        return pending;
+    }
+
+    public int getMax() {
+
+        return max;
+    }
+}
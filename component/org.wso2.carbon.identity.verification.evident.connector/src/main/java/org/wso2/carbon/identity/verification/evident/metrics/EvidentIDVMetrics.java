@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.metrics;
+
+import org.apache.http.pool.PoolStats;
+import org.wso2.carbon.identity.verification.evident.client.EvidentAPIClientManager;
+import org.wso2.carbon.identity.verification.evident.client.EvidentBulkhead;
+import org.wso2.carbon.identity.verification.evident.client.EvidentCircuitBreaker;
+import org.wso2.carbon.identity.verification.evident.internal.EvidentIDVDataHolder;
+import org.wso2.carbon.identity.verification.evident.task.EvidentVerificationSubmitter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime metrics of the Evident connector. The Evident API calls and the user store calls are recorded in latency
+ * histograms, and the verification decisions are counted per outcome, separately for each tenant. The metrics are
+ * exposed through JMX.
+ */
+public class EvidentIDVMetrics implements EvidentIDVMetricsMXBean {
+
+    private static final EvidentIDVMetrics instance = new EvidentIDVMetrics();
+
+    /**
+     * Calls made by the connector, and the waits for the Evident API calls in progress on the other nodes of the
+     * cluster.
+     */
+    public enum Operation {
+        VERIFY_REQUEST, STATUS_REQUEST, CLAIM_READ, CLAIM_WRITE, CLUSTER_WAIT
+    }
+
+    /**
+     * Outcomes of the verification status checks.
+     */
+    public enum Outcome {
+        VERIFIED, NOT_VERIFIED, NAME_MISMATCH, API_ERROR
+    }
+
+    /**
+     * Actions taken on the Evident API calls exceeding the rate limit.
+     */
+    public enum Throttle {
+        DELAYED, REJECTED, SKIPPED
+    }
+
+    private final Map<String, TenantMetrics> tenantMetrics = new ConcurrentHashMap<>();
+
+    private EvidentIDVMetrics() {}
+
+    /**
+     * Return a singleton instance of the EvidentIDVMetrics
+     *
+     * @return A singleton instance of the EvidentIDVMetrics
+     */
+    public static EvidentIDVMetrics getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Record a call made by the connector.
+     *
+     * @param tenantDomain  Tenant domain of the call.
+     * @param operation     Operation of the call.
+     * @param durationNanos Duration of the call in nanoseconds.
+     * @param failed        Whether the call failed.
+     */
+    public void recordCall(String tenantDomain, Operation operation, long durationNanos, boolean failed) {
+
+        getTenantMetrics(tenantDomain).latencies.get(operation).record(durationNanos, failed);
+    }
+
+    /**
+     * Record the outcome of a verification status check.
+     *
+     * @param tenantDomain Tenant domain of the user.
+     * @param outcome      Outcome of the check.
+     */
+    public void recordOutcome(String tenantDomain, Outcome outcome) {
+
+        getTenantMetrics(tenantDomain).outcomes.get(outcome).increment();
+    }
+
+    /**
+     * Record an Evident API call which exceeded the rate limit.
+     *
+     * @param tenantDomain Tenant domain of the call.
+     * @param throttle     Action taken on the call.
+     */
+    public void recordThrottle(String tenantDomain, Throttle throttle) {
+
+        getTenantMetrics(tenantDomain).throttles.get(throttle).increment();
+    }
+
+    /**
+     * Record an Evident API call rejected since the tenant had the maximum number of calls in progress.
+     *
+     * @param tenantDomain Tenant domain of the call.
+     */
+    public void recordBulkheadRejection(String tenantDomain) {
+
+        getTenantMetrics(tenantDomain).bulkheadRejections.increment();
+    }
+
+    /**
+     * Record a background verification request given up on.
+     *
+     * @param tenantDomain Tenant domain of the user.
+     */
+    public void recordSubmissionFailure(String tenantDomain) {
+
+        getTenantMetrics(tenantDomain).submissionFailures.increment();
+    }
+
+    @Override
+    public long getClaimReads() {
+
+        return getCount(Operation.CLAIM_READ);
+    }
+
+    @Override
+    public long getClaimWrites() {
+
+        return getCount(Operation.CLAIM_WRITE);
+    }
+
+    @Override
+    public long getVerifyRequests() {
+
+        return getCount(Operation.VERIFY_REQUEST);
+    }
+
+    @Override
+    public long getStatusRequests() {
+
+        return getCount(Operation.STATUS_REQUEST);
+    }
+
+    @Override
+    public List<EvidentOperationStats> getOperationStats() {
+
+        List<EvidentOperationStats> stats = new ArrayList<>();
+        for (Map.Entry<String, TenantMetrics> tenant : tenantMetrics.entrySet()) {
+            for (Map.Entry<Operation, EvidentLatencyHistogram> latency : tenant.getValue().latencies.entrySet()) {
+                EvidentLatencyHistogram.Snapshot snapshot = latency.getValue().snapshot();
+                if (snapshot.getCount() > 0) {
+                    stats.add(new EvidentOperationStats(tenant.getKey(), latency.getKey().name(), snapshot));
+                }
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public List<EvidentOutcomeStats> getOutcomeStats() {
+
+        List<EvidentOutcomeStats> stats = new ArrayList<>();
+        for (Map.Entry<String, TenantMetrics> tenant : tenantMetrics.entrySet()) {
+            Map<Outcome, LongAdder> outcomes = tenant.getValue().outcomes;
+            stats.add(new EvidentOutcomeStats(tenant.getKey(), outcomes.get(Outcome.VERIFIED).sum(),
+                    outcomes.get(Outcome.NOT_VERIFIED).sum(), outcomes.get(Outcome.NAME_MISMATCH).sum(),
+                    outcomes.get(Outcome.API_ERROR).sum()));
+        }
+        return stats;
+    }
+
+    @Override
+    public long getThrottledCalls() {
+
+        long count = 0;
+        for (TenantMetrics metrics : tenantMetrics.values()) {
+            for (LongAdder throttled : metrics.throttles.values()) {
+                count += throttled.sum();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public List<EvidentThrottleStats> getThrottleStats() {
+
+        List<EvidentThrottleStats> stats = new ArrayList<>();
+        for (Map.Entry<String, TenantMetrics> tenant : tenantMetrics.entrySet()) {
+            Map<Throttle, LongAdder> throttles = tenant.getValue().throttles;
+            stats.add(new EvidentThrottleStats(tenant.getKey(), throttles.get(Throttle.DELAYED).sum(),
+                    throttles.get(Throttle.REJECTED).sum(), throttles.get(Throttle.SKIPPED).sum()));
+        }
+        return stats;
+    }
+
+    @Override
+    public long getBulkheadRejectedCalls() {
+
+        long count = 0;
+        for (TenantMetrics metrics : tenantMetrics.values()) {
+            count += metrics.bulkheadRejections.sum();
+        }
+        return count;
+    }
+
+    @Override
+    public List<EvidentBulkheadStats> getBulkheadStats() {
+
+        EvidentBulkhead bulkhead = EvidentIDVDataHolder.getInstance().getBulkhead();
+        Map<String, Integer> concurrentCalls = bulkhead != null ? bulkhead.getConcurrentCalls() :
+                Collections.emptyMap();
+        List<EvidentBulkheadStats> stats = new ArrayList<>();
+        for (Map.Entry<String, TenantMetrics> tenant : tenantMetrics.entrySet()) {
+            Integer calls = concurrentCalls.get(tenant.getKey());
+            stats.add(new EvidentBulkheadStats(tenant.getKey(), calls != null ? calls : 0,
+                    tenant.getValue().bulkheadRejections.sum()));
+        }
+        return stats;
+    }
+
+    @Override
+    public List<EvidentConnectionPoolStats> getConnectionPoolStats() {
+
+        List<EvidentConnectionPoolStats> stats = new ArrayList<>();
+        for (Map.Entry<String, PoolStats> poolStats : EvidentAPIClientManager.getInstance().getPoolStats().entrySet()) {
+            PoolStats pool = poolStats.getValue();
+            stats.add(new EvidentConnectionPoolStats(poolStats.getKey(), pool.getLeased(), pool.getAvailable(),
+                    pool.getPending(), pool.getMax()));
+        }
+        return stats;
+    }
+
+    @Override
+    public Map<String, String> getCircuitStates() {
+
+        Map<String, String> circuitStates = new HashMap<>();
+        for (Map.Entry<String, EvidentCircuitBreaker.State> circuitState :
+                EvidentAPIClientManager.getInstance().getCircuitStates().entrySet()) {
+            circuitStates.put(circuitState.getKey(), circuitState.getValue().name());
+        }
+        return circuitStates;
+    }
+
+    @Override
+    public int getSubmissionQueueDepth() {
+
+        EvidentVerificationSubmitter submitter = EvidentIDVDataHolder.getInstance().getVerificationSubmitter();
+        return submitter != null ? submitter.getQueueDepth() : 0;
+    }
+
+    @Override
+    public long getFailedSubmissions() {
+
+        long count = 0;
+        for (TenantMetrics metrics : tenantMetrics.values()) {
+            count += metrics.submissionFailures.sum();
+        }
+        return count;
+    }
+
+    @Override
+    public int getApiCallQueueDepth() {
+
+        return EvidentAPIClientManager.getInstance().getIoQueueDepth();
+    }
+
+    @Override
+    public void reset() {
+
+        tenantMetrics.clear();
+    }
+
+    private long getCount(Operation operation) {
+
+        long count = 0;
+        for (TenantMetrics metrics : tenantMetrics.values()) {
+            count += metrics.latencies.get(operation).getCount();
+        }
+        return count;
+    }
+
+    private TenantMetrics getTenantMetrics(String tenantDomain) {
+
+        TenantMetrics metrics = tenantMetrics.get(tenantDomain);
+        if (metrics == null) {
+            metrics = tenantMetrics.computeIfAbsent(tenantDomain, tenant -> new TenantMetrics());
+        }
+        return metrics;
+    }
+
+    private static class TenantMetrics {
+
+        private final Map<Operation, EvidentLatencyHistogram> latencies = new EnumMap<>(Operation.class);
+        private final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+        private final Map<Throttle, LongAdder> throttles = new EnumMap<>(Throttle.class);
+        private final LongAdder bulkheadRejections = new LongAdder();
+        private final LongAdder submissionFailures = new LongAdder();
+
+        private TenantMetrics() {
+
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new EvidentLatencyHistogram());
+            }
+            for (Outcome outcome : Outcome.values()) {
+                outcomes.put(outcome, new LongAdder());
+            }
+            for (Throttle throttle : Throttle.values()) {
+                throttles.put(throttle, new LongAdder());
+            }
+        }
+    }
+}
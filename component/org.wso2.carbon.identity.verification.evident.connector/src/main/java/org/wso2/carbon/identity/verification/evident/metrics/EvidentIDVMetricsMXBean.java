@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX management interface of the Evident connector metrics.
+ */
+public interface EvidentIDVMetricsMXBean {
+
+    /**
+     * Return the number of user store calls made to read the claims of the users.
+     *
+     * @return Number of claim reads.
+     */
+    long getClaimReads();
+
+    /**
+     * Return the number of user store calls made to write the claims of the users.
+     *
+     * @return Number of claim writes.
+     */
+    long getClaimWrites();
+
+    /**
+     * Return the number of verify requests sent to Evident.
+     *
+     * @return Number of verify requests.
+     */
+    long getVerifyRequests();
+
+    /**
+     * Return the number of verification status requests sent to Evident.
+     *
+     * @return Number of status requests.
+     */
+    long getStatusRequests();
+
+    /**
+     * Return the call counts and latencies of each operation, per tenant.
+     *
+     * @return Operation statistics.
+     */
+    List<EvidentOperationStats> getOperationStats();
+
+    /**
+     * Return the number of verification status checks of each outcome, per tenant.
+     *
+     * @return Outcome statistics.
+     */
+    List<EvidentOutcomeStats> getOutcomeStats();
+
+    /**
+     * Return the number of Evident API calls which exceeded the rate limit.
+     *
+     * @return Number of throttled calls.
+     */
+    long getThrottledCalls();
+
+    /**
+     * Return the number of Evident API calls delayed, rejected or skipped due to the rate limit, per tenant.
+     *
+     * @return Throttle statistics.
+     */
+    List<EvidentThrottleStats> getThrottleStats();
+
+    /**
+     * Return the number of Evident API calls rejected since their tenant had the maximum number of calls in progress.
+     *
+     * @return Number of rejected calls.
+     */
+    long getBulkheadRejectedCalls();
+
+    /**
+     * Return the number of Evident API calls in progress and rejected by the bulkhead, per tenant.
+     *
+     * @return Bulkhead statistics.
+     */
+    List<EvidentBulkheadStats> getBulkheadStats();
+
+    /**
+     * Return the number of leased, available and pending connections and the maximum number of connections of the
+     * connection pool of each Evident API base path.
+     *
+     * @return Connection pool statistics.
+     */
+    List<EvidentConnectionPoolStats> getConnectionPoolStats();
+
+    /**
+     * Return the circuit state of each Evident API base path.
+     *
+     * @return Circuit states by base path.
+     */
+    Map<String, String> getCircuitStates();
+
+    /**
+     * Return the number of verification requests waiting to be sent to Evident.
+     *
+     * @return Submission queue depth.
+     */
+    int getSubmissionQueueDepth();
+
+    /**
+     * Return the number of background verification requests given up on. The accounts of their users are left
+     * pending the verification, for the request to be re-submitted on the next status check of the user.
+     *
+     * @return Number of failed submissions.
+     */
+    long getFailedSubmissions();
+
+    /**
+     * Return the number of Evident API calls waiting for an I/O thread.
+     *
+     * @return API call queue depth.
+     */
+    int getApiCallQueueDepth();
+
+    /**
+     * Clear all the recorded metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets, recording the durations of a call along with the failed calls. Recording
+ * is lock free, and the percentiles are estimated as the upper bound of the bucket holding the percentile.
+ */
+public class EvidentLatencyHistogram {
+
+    private static final long[] BUCKET_BOUNDS_MILLIS = {
+            1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000
+    };
+    private static final long[] BUCKET_BOUNDS_NANOS = new long[BUCKET_BOUNDS_MILLIS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+            BUCKET_BOUNDS_NANOS[i] = TimeUnit.MILLISECONDS.toNanos(BUCKET_BOUNDS_MILLIS[i]);
+        }
+    }
+
+    // The last bucket holds the durations above the largest bound.
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_NANOS.length + 1];
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+    public EvidentLatencyHistogram() {
+
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record a call.
+     *
+     * @param durationNanos Duration of the call in nanoseconds.
+     * @param failed        Whether the call failed.
+     */
+    public void record(long durationNanos, boolean failed) {
+
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_NANOS.length && durationNanos > BUCKET_BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        totalNanos.add(durationNanos);
+        maxNanos.accumulate(durationNanos);
+        if (failed) {
+            failures.increment();
+        }
+    }
+
+    /**
+     * Return the number of recorded calls.
+     *
+     * @return Number of calls.
+     */
+    public long getCount() {
+
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Return the number of recorded calls which failed.
+     *
+     * @return Number of failed calls.
+     */
+    public long getFailures() {
+
+        return failures.sum();
+    }
+
+    /**
+     * Return a snapshot of the histogram.
+     *
+     * @return Snapshot of the histogram.
+     */
+    public Snapshot snapshot() {
+
+        long[] counts = new long[buckets.length];
+        long count = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, failures.sum(), totalNanos.sum(), maxNanos.get());
+    }
+
+    /**
+     * Point in time view of a histogram. Since the histogram is updated concurrently, the values are only
+     * approximately consistent with each other.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long failures;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        private Snapshot(long[] counts, long count, long failures, long totalNanos, long maxNanos) {
+
+            this.counts = counts;
+            this.count = count;
+            this.failures = failures;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+
+            return count;
+        }
+
+        public long getFailures() {
+
+            return failures;
+        }
+
+        public double getMeanMillis() {
+
+            return count == 0 ? 0 : totalNanos / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        public double getMaxMillis() {
+
+            return maxNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        /**
+         * Return the estimated percentile of the durations in milliseconds. The largest recorded duration is
+         * returned if the percentile is above the largest bucket bound.
+         *
+         * @param percentile Percentile, between 0 and 100.
+         * @return Estimated percentile in milliseconds.
+         */
+        public double getPercentileMillis(double percentile) {
+
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(BUCKET_BOUNDS_MILLIS[i], getMaxMillis());
+                }
+            }
+            return getMaxMillis();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.metrics;
+
+/**
+ * Call count and latency statistics of an operation of a tenant.
+ */
+public class EvidentOperationStats {
+
+    private final String tenantDomain;
+    private final String operation;
+    private final long count;
+    private final long failures;
+    private final double meanMillis;
+    private final double maxMillis;
+    private final double p50Millis;
+    private final double p95Millis;
+    private final double p99Millis;
+
+    EvidentOperationStats(String tenantDomain, String operation, EvidentLatencyHistogram.Snapshot snapshot) {
+
+        this.tenantDomain = tenantDomain;
+        this.operation = operation;
+        this.count = snapshot.getCount();
+        this.failures = snapshot.getFailures();
+        this.meanMillis = snapshot.getMeanMillis();
+        this.maxMillis = snapshot.getMaxMillis();
+        this.p50Millis = snapshot.getPercentileMillis(50);
+        this.p95Millis = snapshot.getPercentileMillis(95);
+        this.p99Millis = snapshot.getPercentileMillis(99);
+    }
+
+    public String getTenantDomain() {
+
+        return tenantDomain;
+    }
+
+    public String getOperation() {
+
+        return operation;
+    }
+
+    public long getCount() {
+
+        return count;
+    }
+
+    public long getFailures() {
+
+        return failures;
+    }
+
+    public double getMeanMillis() {
+
+        return meanMillis;
+    }
+
+    public double getMaxMillis() {
+
+        return maxMillis;
+    }
+
+    public double getP50Millis() {
+
+        return p50Millis;
+    }
+
+    public double getP95Millis() {
+
+        return p95Millis;
+    }
+
+    public double getP99Millis() {
+
+        return p99Millis;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.metrics;
+
+/**
+ * Number of verification status checks of each outcome of a tenant.
+ */
+public class EvidentOutcomeStats {
+
+    private final String tenantDomain;
+    private final long verified;
+    private final long notVerified;
+    private final long nameMismatch;
+    private final long apiError;
+
+    EvidentOutcomeStats(String tenantDomain, long verified, long notVerified, long nameMismatch, long apiError) {
+
+        this.tenantDomain = tenantDomain;
+        this.verified = verified;
+        this.notVerified = notVerified;
+        this.nameMismatch = nameMismatch;
+        this.apiError = apiError;
+    }
+
+    public String getTenantDomain() {
+
+        return tenantDomain;
+    }
+
+    public long getVerified() {
+
+        return verified;
+    }
+
+    public long getNotVerified() {
+
+        return notVerified;
+    }
+
+    public long getNameMismatch() {
+
+        return nameMismatch;
+    }
+
+    public long getApiError() {
+
+        return apiError;
+    }
+}
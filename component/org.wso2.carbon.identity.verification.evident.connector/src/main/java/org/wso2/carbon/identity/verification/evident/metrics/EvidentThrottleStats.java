@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.metrics;
+
+/**
+ * Number of Evident API calls of a tenant which exceeded the rate limit, by the action taken on them.
+ */
+public class EvidentThrottleStats {
+
+    private final String tenantDomain;
+    private final long delayed;
+    private final long rejected;
+    private final long skipped;
+
+    EvidentThrottleStats(String tenantDomain, long delayed, long rejected, long skipped) {
+
+        this.tenantDomain = tenantDomain;
+        this.delayed = delayed;
+        this.rejected = rejected;
+        this.skipped = skipped;
+    }
+
+    public String getTenantDomain() {
+
+        return tenantDomain;
+    }
+
+    public long getDelayed() {
+
+        return delayed;
+    }
+
+    public long getRejected() {
+
+        return rejected;
+    }
+
+    public long getSkipped() {
+
+        return skipped;
+    }
+}
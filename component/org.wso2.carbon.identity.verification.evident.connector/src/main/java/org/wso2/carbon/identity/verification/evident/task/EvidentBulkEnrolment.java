@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.task;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.event.IdentityEventException;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfig;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfigCache;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVServerConfig;
+import org.wso2.carbon.identity.verification.evident.exception.EvidentAPIException;
+import org.wso2.carbon.identity.verification.evident.internal.EvidentIDVDataHolder;
+import org.wso2.carbon.user.core.PaginatedUserStoreManager;
+import org.wso2.carbon.user.core.UserCoreConstants;
+import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.carbon.utils.CarbonUtils;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enrols the existing users of a user store in the Evident identity verification, so that a user base registered
+ * before the verification was enabled can be migrated without triggering the events of each user.
+ * <p>
+ * The users are listed a page at a time. The eligible users of a page are enrolled by a bounded number of threads
+ * with a limited rate of Evident verify requests, and the offset of the next page is saved as a checkpoint once all
+ * the users of the page are enrolled. Verify requests failing with transient errors are retried with the backoff of
+ * the verification submissions. An enrolment which is stopped, interrupted by a server restart or suspended since
+ * Evident remains unavailable continues from its checkpoint when started again. Only one enrolment runs at a time.
+ */
+public class EvidentBulkEnrolment implements EvidentBulkEnrolmentMXBean {
+
+    private static final Log log = LogFactory.getLog(EvidentBulkEnrolment.class);
+    private static final String CHECKPOINT_FILE_NAME = "evident-bulk-enrolment.properties";
+    private static final String DEFAULT_FILTER = "*";
+    private static final long MAX_RETRY_BACKOFF = TimeUnit.MINUTES.toMillis(1);
+
+    private final UserEnroller enroller;
+    private final String[] propertyNames;
+    private final EvidentCheckpointFile checkpoints;
+    private volatile Job job;
+
+    public EvidentBulkEnrolment(UserEnroller enroller, String[] propertyNames) {
+
+        this(enroller, propertyNames, Paths.get(CarbonUtils.getCarbonHome(), "repository", "data",
+                CHECKPOINT_FILE_NAME));
+    }
+
+    public EvidentBulkEnrolment(UserEnroller enroller, String[] propertyNames, Path checkpointFile) {
+
+        this.enroller = enroller;
+        this.propertyNames = propertyNames;
+        this.checkpoints = new EvidentCheckpointFile(checkpointFile, "Evident bulk enrolment");
+    }
+
+    @Override
+    public synchronized void start(String tenantDomain, String userStoreDomain, String filter) {
+
+        if (job != null && Status.RUNNING == job.status) {
+            throw new IllegalStateException("A bulk enrolment is already running for the user store: " +
+                    job.userStoreDomain + " of the tenant: " + job.tenantDomain);
+        }
+        tenantDomain = StringUtils.defaultIfBlank(tenantDomain, MultitenantConstants.SUPER_TENANT_DOMAIN_NAME).trim();
+        userStoreDomain = StringUtils.defaultIfBlank(userStoreDomain,
+                UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME).trim().toUpperCase();
+        filter = StringUtils.defaultIfBlank(filter, DEFAULT_FILTER).trim();
+
+        EvidentIDVConfig config;
+        try {
+            config = EvidentIDVConfigCache.getInstance().getConfig(tenantDomain, propertyNames);
+        } catch (IdentityEventException e) {
+            throw new IllegalStateException("Error while retrieving the Evident configuration of the tenant: " +
+                    tenantDomain + ". " + e.getMessage());
+        }
+        if (!config.isEnabled() || !config.isComplete() || !config.isUserStoreEnabled(userStoreDomain)) {
+            throw new IllegalArgumentException("Evident identity verification is not enabled for the user store: " +
+                    userStoreDomain + " of the tenant: " + tenantDomain);
+        }
+
+        Job newJob = new Job(tenantDomain, userStoreDomain, filter, checkpoints.load(checkpointKey(tenantDomain,
+                userStoreDomain, filter)), EvidentIDVDataHolder.getInstance().getServerConfig());
+        job = newJob;
+        newJob.coordinator.submit(() -> run(newJob));
+        log.info("Started the Evident bulk enrolment of the user store: " + userStoreDomain + " of the tenant: " +
+                tenantDomain + " from the offset: " + newJob.offset);
+    }
+
+    @Override
+    public void stop() {
+
+        Job currentJob = job;
+        if (currentJob != null) {
+            currentJob.stop();
+        }
+    }
+
+    @Override
+    public void resetCheckpoint(String tenantDomain, String userStoreDomain, String filter) {
+
+        checkpoints.save(checkpointKey(
+                StringUtils.defaultIfBlank(tenantDomain, MultitenantConstants.SUPER_TENANT_DOMAIN_NAME).trim(),
+                StringUtils.defaultIfBlank(userStoreDomain, UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME).trim()
+                        .toUpperCase(), StringUtils.defaultIfBlank(filter, DEFAULT_FILTER).trim()), -1);
+    }
+
+    @Override
+    public String getStatus() {
+
+        Job currentJob = job;
+        return currentJob != null ? currentJob.status.name() : Status.IDLE.name();
+    }
+
+    @Override
+    public String getTenantDomain() {
+
+        Job currentJob = job;
+        return currentJob != null ? currentJob.tenantDomain : null;
+    }
+
+    @Override
+    public String getUserStoreDomain() {
+
+        Job currentJob = job;
+        return currentJob != null ? currentJob.userStoreDomain : null;
+    }
+
+    @Override
+    public String getFilter() {
+
+        Job currentJob = job;
+        return currentJob != null ? currentJob.filter : null;
+    }
+
+    @Override
+    public int getOffset() {
+
+        Job currentJob = job;
+        return currentJob != null ? currentJob.offset : 0;
+    }
+
+    @Override
+    public long getScannedUsers() {
+
+        Job currentJob = job;
+        return currentJob != null ? currentJob.scanned.get() : 0;
+    }
+
+    @Override
+    public long getEnrolledUsers() {
+
+        Job currentJob = job;
+        return currentJob != null ? currentJob.enrolled.get() : 0;
+    }
+
+    @Override
+    public long getSkippedUsers() {
+
+        Job currentJob = job;
+        return currentJob != null ? currentJob.skipped.get() : 0;
+    }
+
+    @Override
+    public long getFailedUsers() {
+
+        Job currentJob = job;
+        return currentJob != null ? currentJob.failed.get() : 0;
+    }
+
+    private void run(Job job) {
+
+        String checkpointKey = checkpointKey(job.tenantDomain, job.userStoreDomain, job.filter);
+        PrivilegedCarbonContext.startTenantFlow();
+        try {
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(job.tenantDomain, true);
+
+            EvidentIDVConfig config = EvidentIDVConfigCache.getInstance().getConfig(job.tenantDomain,
+                    propertyNames);
+            UserStoreManager userStoreManager = getUserStoreManager(job.tenantDomain);
+            while (!Thread.currentThread().isInterrupted()) {
+                String[] users = nextPage(job, userStoreManager);
+                if (users.length == 0) {
+                    checkpoints.save(checkpointKey, -1);
+                    job.status = Status.COMPLETED;
+                    log.info("Completed the Evident bulk enrolment of the user store: " + job.userStoreDomain +
+                            " of the tenant: " + job.tenantDomain + ". Enrolled: " + job.enrolled.get() +
+                            " users, skipped: " + job.skipped.get() + " users and failed: " + job.failed.get() +
+                            " users.");
+                    return;
+                }
+
+                if (!enrolPage(job, users, userStoreManager, config)) {
+                    // The page is enrolled again from the start when resumed. The users enrolled so far are
+                    // skipped then, since they already hold an Evident request ID.
+                    job.status = Status.STOPPED;
+                    log.warn("Stopped the Evident bulk enrolment of the user store: " + job.userStoreDomain +
+                            " of the tenant: " + job.tenantDomain + " at the offset: " + job.offset + " since " +
+                            "Evident is unavailable. Start the enrolment again to resume.");
+                    return;
+                }
+                job.offset += users.length;
+                checkpoints.save(checkpointKey, job.offset);
+            }
+            job.status = Status.STOPPED;
+        } catch (InterruptedException e) {
+            job.status = Status.STOPPED;
+            Thread.currentThread().interrupt();
+        } catch (IdentityEventException | UserStoreException | ExecutionException | RuntimeException e) {
+            if (job.stopped) {
+                // Interrupted while stopping.
+                job.status = Status.STOPPED;
+                return;
+            }
+            job.status = Status.FAILED;
+            log.error("Error while running the Evident bulk enrolment of the user store: " + job.userStoreDomain +
+                    " of the tenant: " + job.tenantDomain + " at the offset: " + job.offset, e);
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+            job.workers.shutdownNow();
+            job.coordinator.shutdown();
+        }
+    }
+
+    /**
+     * Return the page of users at the offset of the job. Paginated user stores are listed a page at a time. The
+     * users of the other user stores are listed once, up to the maximum user list length of the user store, and
+     * sorted so that the offsets stay stable across restarts.
+     */
+    private String[] nextPage(Job job, UserStoreManager userStoreManager) throws UserStoreException {
+
+        String filter = UserCoreConstants.PRIMARY_DEFAULT_DOMAIN_NAME.equals(job.userStoreDomain) ? job.filter :
+                job.userStoreDomain + UserCoreConstants.DOMAIN_SEPARATOR + job.filter;
+        if (userStoreManager instanceof PaginatedUserStoreManager) {
+            // The offset of the paginated user listing is one based.
+            String[] users = ((PaginatedUserStoreManager) userStoreManager).listUsers(filter, job.pageSize,
+                    job.offset + 1);
+            return users != null ? users : new String[0];
+        }
+
+        if (job.users == null) {
+            String[] users = userStoreManager.listUsers(filter, -1);
+            job.users = users != null ? users : new String[0];
+            Arrays.sort(job.users);
+        }
+        int from = Math.min(job.offset, job.users.length);
+        return Arrays.copyOfRange(job.users, from, Math.min(from + job.pageSize, job.users.length));
+    }
+
+    /**
+     * Enrol the users of a page in parallel.
+     *
+     * @return True if the page is completed, False if Evident is unavailable.
+     */
+    private boolean enrolPage(Job job, String[] users, UserStoreManager userStoreManager, EvidentIDVConfig config)
+            throws InterruptedException, ExecutionException {
+
+        List<Callable<Result>> tasks = new ArrayList<>(users.length);
+        for (String username : users) {
+            tasks.add(() -> enrol(job, username, userStoreManager, config));
+        }
+        boolean completed = true;
+        for (Future<Result> result : job.workers.invokeAll(tasks)) {
+            switch (result.get()) {
+                case ENROLLED:
+                    job.enrolled.incrementAndGet();
+                    break;
+                case NOT_ELIGIBLE:
+                    job.skipped.incrementAndGet();
+                    break;
+                case UNAVAILABLE:
+                    completed = false;
+                    break;
+                default:
+                    job.failed.incrementAndGet();
+            }
+        }
+        job.scanned.addAndGet(users.length);
+        return completed;
+    }
+
+    private Result enrol(Job job, String username, UserStoreManager userStoreManager, EvidentIDVConfig config)
+            throws InterruptedException {
+
+        long delay = job.retryBackoff;
+        for (int attempt = 0; ; attempt++) {
+            job.rateLimiter.acquire();
+            PrivilegedCarbonContext.startTenantFlow();
+            try {
+                PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(job.tenantDomain, true);
+                return enroller.enrol(username, userStoreManager, config) ? Result.ENROLLED : Result.NOT_ELIGIBLE;
+            } catch (EvidentAPIException e) {
+                if (!e.isTransient()) {
+                    log.error("Error while enrolling the user: " + username + " of the tenant: " +
+                            job.tenantDomain, e);
+                    return Result.FAILED;
+                }
+                if (attempt >= job.maxRetries) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Couldn't enrol the user: " + username + " of the tenant: " + job.tenantDomain,
+                                e);
+                    }
+                    return Result.UNAVAILABLE;
+                }
+            } catch (IdentityEventException | RuntimeException e) {
+                log.error("Error while enrolling the user: " + username + " of the tenant: " + job.tenantDomain, e);
+                return Result.FAILED;
+            } finally {
+                IdentityUtil.clearIdentityErrorMsg();
+                PrivilegedCarbonContext.endTenantFlow();
+            }
+            TimeUnit.MILLISECONDS.sleep(delay);
+            delay = Math.min(delay * 2, MAX_RETRY_BACKOFF);
+        }
+    }
+
+    private UserStoreManager getUserStoreManager(String tenantDomain) throws UserStoreException {
+
+        try {
+            return (UserStoreManager) EvidentIDVDataHolder.getInstance().getRealmService()
+                    .getTenantUserRealm(IdentityTenantUtil.getTenantId(tenantDomain)).getUserStoreManager();
+        } catch (org.wso2.carbon.user.api.UserStoreException e) {
+            throw new UserStoreException("Error while retrieving the user store manager of the tenant: " +
+                    tenantDomain, e);
+        }
+    }
+
+    private static String checkpointKey(String tenantDomain, String userStoreDomain, String filter) {
+
+        return tenantDomain + "/" + userStoreDomain + "/" + filter;
+    }
+
+    /**
+     * Enrols an existing user in the Evident identity verification.
+     */
+    public interface UserEnroller {
+
+        /**
+         * Send an Evident verification request for the given user and lock the account of the user pending the
+         * verification, if the user is eligible.
+         *
+         * @param username         Username of the user.
+         * @param userStoreManager User store manager of the user.
+         * @param config           Evident configuration of the tenant.
+         * @return True if the user was enrolled, False if the user is not eligible.
+         * @throws IdentityEventException If the user couldn't be enrolled.
+         */
+        boolean enrol(String username, UserStoreManager userStoreManager, EvidentIDVConfig config)
+                throws IdentityEventException;
+    }
+
+    private enum Status {
+        IDLE, RUNNING, COMPLETED, STOPPED, FAILED
+    }
+
+    private enum Result {
+        ENROLLED, NOT_ELIGIBLE, FAILED, UNAVAILABLE
+    }
+
+    private static class Job {
+
+        private final String tenantDomain;
+        private final String userStoreDomain;
+        private final String filter;
+        private final int pageSize;
+        private final int maxRetries;
+        private final long retryBackoff;
+        private final RateLimiter rateLimiter;
+        private final ExecutorService coordinator;
+        private final ExecutorService workers;
+        private final AtomicLong scanned = new AtomicLong();
+        private final AtomicLong enrolled = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile int offset;
+        private volatile Status status = Status.RUNNING;
+        private volatile boolean stopped;
+        private String[] users;
+
+        Job(String tenantDomain, String userStoreDomain, String filter, int offset,
+            EvidentIDVServerConfig serverConfig) {
+
+            this.tenantDomain = tenantDomain;
+            this.userStoreDomain = userStoreDomain;
+            this.filter = filter;
+            this.offset = offset;
+            this.pageSize = serverConfig.getBulkEnrolmentPageSize();
+            this.maxRetries = serverConfig.getSubmissionMaxRetries();
+            this.retryBackoff = serverConfig.getSubmissionRetryBackoff();
+            this.rateLimiter = new RateLimiter(serverConfig.getBulkEnrolmentMaxRequestsPerSecond());
+            this.coordinator = Executors.newSingleThreadExecutor(new NamedThreadFactory("EvidentBulkEnrolment"));
+            this.workers = Executors.newFixedThreadPool(serverConfig.getBulkEnrolmentConcurrency(),
+                    new NamedThreadFactory("EvidentBulkEnrolmentWorker"));
+        }
+
+        void stop() {
+
+            stopped = true;
+            if (!coordinator.shutdownNow().isEmpty()) {
+                // Stopped before the enrolment began.
+                status = Status.STOPPED;
+            }
+            workers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.task;
+
+/**
+ * JMX management interface of the bulk enrolment of the existing users in the Evident identity verification.
+ */
+public interface EvidentBulkEnrolmentMXBean {
+
+    /**
+     * Start enrolling the users of a user store in the background. An enrolment interrupted earlier for the same
+     * tenant, user store and filter continues from its checkpoint.
+     *
+     * @param tenantDomain    Tenant domain of the users. The super tenant is used if empty.
+     * @param userStoreDomain User store domain of the users. The primary user store is used if empty.
+     * @param filter          Username filter of the users. All the users are enrolled if empty.
+     * @throws IllegalStateException    If an enrolment is already running.
+     * @throws IllegalArgumentException If Evident identity verification is not enabled for the user store.
+     */
+    void start(String tenantDomain, String userStoreDomain, String filter);
+
+    /**
+     * Stop the running enrolment. The enrolment continues from the last completed page when started again.
+     */
+    void stop();
+
+    /**
+     * Discard the checkpoint of an enrolment, so that it starts over from the first user when started again.
+     *
+     * @param tenantDomain    Tenant domain of the enrolment.
+     * @param userStoreDomain User store domain of the enrolment.
+     * @param filter          Username filter of the enrolment.
+     */
+    void resetCheckpoint(String tenantDomain, String userStoreDomain, String filter);
+
+    /**
+     * Return the status of the current or the last enrolment.
+     *
+     * @return One of IDLE, RUNNING, COMPLETED, STOPPED or FAILED.
+     */
+    String getStatus();
+
+    /**
+     * Return the tenant domain of the current or the last enrolment.
+     *
+     * @return Tenant domain.
+     */
+    String getTenantDomain();
+
+    /**
+     * Return the user store domain of the current or the last enrolment.
+     *
+     * @return User store domain.
+     */
+    String getUserStoreDomain();
+
+    /**
+     * Return the username filter of the current or the last enrolment.
+     *
+     * @return Username filter.
+     */
+    String getFilter();
+
+    /**
+     * Return the offset of the next page of users to be enrolled.
+     *
+     * @return Offset of the next page.
+     */
+    int getOffset();
+
+    /**
+     * Return the number of users checked for the eligibility by the current or the last enrolment.
+     *
+     * @return Number of checked users.
+     */
+    long getScannedUsers();
+
+    /**
+     * Return the number of users enrolled by the current or the last enrolment.
+     *
+     * @return Number of enrolled users.
+     */
+    long getEnrolledUsers();
+
+    /**
+     * Return the number of users skipped by the current or the last enrolment since they are not eligible.
+     *
+     * @return Number of skipped users.
+     */
+    long getSkippedUsers();
+
+    /**
+     * Return the number of users the current or the last enrolment failed to enrol.
+     *
+     * @return Number of failed users.
+     */
+    long getFailedUsers();
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.verification.evident.task;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Offsets of the background tasks scanning the users, saved in a properties file so that a task continues from its
+ * checkpoint after a server restart.
+ */
+class EvidentCheckpointFile {
+
+    private static final Log log = LogFactory.getLog(EvidentCheckpointFile.class);
+
+    private final Path file;
+    private final String description;
+
+    /**
+     * @param file        Checkpoint file.
+     * @param description Description of the checkpoints, used in the logs and the file comment.
+     */
+    EvidentCheckpointFile(Path file, String description) {
+
+        this.file = file;
+        this.description = description;
+    }
+
+    /**
+     * Return the offset saved for the given key.
+     *
+     * @param key Checkpoint key.
+     * @return Saved offset, or 0 if no valid offset is saved.
+     */
+    synchronized int load(String key) {
+
+        String offset = read().getProperty(key);
+        try {
+            return offset != null ? Math.max(Integer.parseInt(offset), 0) : 0;
+        } catch (NumberFormatException e) {
+            log.warn("Invalid " + description + " checkpoint: " + offset + ". Starting from the first user.");
+            return 0;
+        }
+    }
+
+    /**
+     * Save the offset of the given key, or remove the checkpoint if the offset is negative. The checkpoint file is
+     * replaced atomically, so that an interruption never leaves a partially written file.
+     *
+     * @param key    Checkpoint key.
+     * @param offset Offset to save.
+     */
+    synchronized void save(String key, int offset) {
+
+        Properties checkpoints = read();
+        if (offset < 0) {
+            if (checkpoints.remove(key) == null) {
+                return;
+            }
+        } else if (Integer.toString(offset).equals(checkpoints.setProperty(key, Integer.toString(offset)))) {
+            return;
+        }
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path tempFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                checkpoints.store(out, description + " checkpoints");
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Error while saving the " + description + " checkpoint: " + key + " at the offset: " + offset,
+                    e);
+        }
+    }
+
+    private Properties read() {
+
+        Properties checkpoints = new Properties();
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                checkpoints.load(in);
+            } catch (IOException e) {
+                log.error("Error while reading the " + description + " checkpoints from: " + file, e);
+            }
+        }
+        return checkpoints;
+    }
+}
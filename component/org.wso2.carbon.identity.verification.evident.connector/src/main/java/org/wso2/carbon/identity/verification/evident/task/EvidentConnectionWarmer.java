@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.verification.evident.task;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.verification.evident.client.EvidentAPIClientManager;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfig;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfigCache;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVServerConfig;
+import org.wso2.carbon.identity.verification.evident.exception.EvidentIDVHandlerException;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Opens the pooled connections to the Evident API base paths of the tenants in the background, so that the first
+ * requests after a restart or a configuration change don't wait for the host name resolution, the TCP connects and
+ * the TLS handshakes.
+ */
+public class EvidentConnectionWarmer {
+
+    private static final Log log = LogFactory.getLog(EvidentConnectionWarmer.class);
+
+    private final String[] propertyNames;
+    private final int connections;
+    private final ExecutorService executor;
+
+    public EvidentConnectionWarmer(String[] propertyNames, EvidentIDVServerConfig serverConfig) {
+
+        this.propertyNames = propertyNames;
+        this.connections = serverConfig.getWarmUpConnections();
+        this.executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("EvidentConnectionWarmer"));
+    }
+
+    /**
+     * Warm up the connections to the base paths of all the tenants which have Evident verification enabled.
+     */
+    public void warmUp() {
+
+        submit(() -> {
+            Set<String> basePaths = new HashSet<>();
+            for (String tenantDomain : EvidentVerificationSweeper.getTenantDomains()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                warmUpTenant(tenantDomain, basePaths);
+            }
+        });
+    }
+
+    /**
+     * Warm up the connections to the base path of the given tenant, e.g. after its configuration was updated.
+     *
+     * @param tenantDomain Tenant domain.
+     */
+    public void warmUp(String tenantDomain) {
+
+        submit(() -> warmUpTenant(tenantDomain, new HashSet<>()));
+    }
+
+    /**
+     * Stop warming up. A warm up in progress is interrupted.
+     */
+    public void shutdown() {
+
+        executor.shutdownNow();
+    }
+
+    private void submit(Runnable task) {
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Skipping the Evident connection warm up since the warmer is shut down.");
+            }
+        }
+    }
+
+    private void warmUpTenant(String tenantDomain, Set<String> basePaths) {
+
+        String basePath;
+        PrivilegedCarbonContext.startTenantFlow();
+        try {
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(tenantDomain, true);
+            EvidentIDVConfig config = EvidentIDVConfigCache.getInstance().getConfig(tenantDomain, propertyNames);
+            if (!config.isEnabled() || !config.isComplete()) {
+                return;
+            }
+            basePath = config.getBasePath();
+        } catch (EvidentIDVHandlerException | RuntimeException e) {
+            log.warn("Error while retrieving the Evident configuration of the tenant: " + tenantDomain +
+                    " to warm up the connections.", e);
+            return;
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+
+        if (!basePaths.add(basePath)) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            int opened = EvidentAPIClientManager.getInstance().getClient(basePath).warmUp(connections);
+            if (log.isDebugEnabled()) {
+                log.debug("Opened " + opened + " connections to the Evident API base path: " + basePath + " in " +
+                        (System.currentTimeMillis() - startTime) + " ms.");
+            }
+        } catch (IOException e) {
+            // The first requests open the connections instead.
+            log.warn("Error while warming up the connections to the Evident API base path: " + basePath, e);
+        }
+    }
+}
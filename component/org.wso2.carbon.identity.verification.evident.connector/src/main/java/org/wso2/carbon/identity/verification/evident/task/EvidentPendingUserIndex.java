@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.task;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.event.IdentityEventException;
+import org.wso2.carbon.identity.verification.evident.cache.EvidentPendingUserFilter;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVServerConfig;
+import org.wso2.carbon.user.core.UserStoreException;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Index of the users pending the identity verification, held as a {@link EvidentPendingUserFilter} per tenant, so
+ * that the logins of the users who are not pending are discarded without reading their claims.
+ * <p>
+ * The filter of a tenant is built in the background from the pending users listed from the user store, on the first
+ * login of the tenant, and rebuilt once the refresh interval has passed, so that the users enrolled or unlocked by
+ * the other nodes of the cluster are picked up. The users enrolled and unlocked by this node are added and removed
+ * right away. Until the filter of a tenant is built, every login is treated as possibly pending.
+ */
+public class EvidentPendingUserIndex {
+
+    private static final Log log = LogFactory.getLog(EvidentPendingUserIndex.class);
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    // Minimum number of users a filter is sized for, so that the tenants with a few pending users can grow.
+    private static final int MINIMUM_CAPACITY = 1024;
+
+    private final boolean enabled;
+    private final long refreshInterval;
+    private final PendingUserLister lister;
+    private final Map<String, TenantFilter> filters = new ConcurrentHashMap<>();
+    private volatile ExecutorService executor;
+    private volatile boolean shutdown;
+
+    public EvidentPendingUserIndex(PendingUserLister lister, EvidentIDVServerConfig serverConfig) {
+
+        this.enabled = serverConfig.isPendingFilterEnabled();
+        this.refreshInterval = serverConfig.getPendingFilterRefreshInterval();
+        this.lister = lister;
+    }
+
+    /**
+     * Whether the given user may be pending the identity verification.
+     *
+     * @param tenantDomain Tenant domain of the user.
+     * @param userKey      Key of the user, qualified with the user store domain.
+     * @return False if the user is known not to be pending, True otherwise.
+     */
+    public boolean mightBePending(String tenantDomain, String userKey) {
+
+        if (!enabled) {
+            return true;
+        }
+        TenantFilter tenantFilter = filters.computeIfAbsent(tenantDomain, domain -> new TenantFilter());
+        EvidentPendingUserFilter filter = tenantFilter.filter;
+        if (filter == null || tenantFilter.buildTime + refreshInterval <= System.currentTimeMillis()) {
+            rebuild(tenantDomain, tenantFilter);
+        }
+        return filter == null || filter.mightContain(userKey);
+    }
+
+    /**
+     * Record a user who became pending the identity verification on this node.
+     *
+     * @param tenantDomain Tenant domain of the user.
+     * @param userKey      Key of the user, qualified with the user store domain.
+     */
+    public void added(String tenantDomain, String userKey) {
+
+        TenantFilter tenantFilter = enabled ? filters.get(tenantDomain) : null;
+        if (tenantFilter == null) {
+            // The user is picked up when the filter of the tenant is built.
+            return;
+        }
+        synchronized (tenantFilter) {
+            if (tenantFilter.filter != null) {
+                tenantFilter.filter.add(userKey);
+            }
+            if (tenantFilter.addedWhileBuilding != null) {
+                tenantFilter.addedWhileBuilding.add(userKey);
+            }
+        }
+    }
+
+    /**
+     * Record a user who is no longer pending the identity verification, e.g. after the account was unlocked.
+     *
+     * @param tenantDomain Tenant domain of the user.
+     * @param userKey      Key of the user, qualified with the user store domain.
+     */
+    public void removed(String tenantDomain, String userKey) {
+
+        TenantFilter tenantFilter = enabled ? filters.get(tenantDomain) : null;
+        if (tenantFilter == null) {
+            return;
+        }
+        EvidentPendingUserFilter filter = tenantFilter.filter;
+        // Users missing from the filter, e.g. enrolled by another node after the filter was built, are not removed,
+        // since removing them would hide the users sharing their counters.
+        if (filter != null && filter.mightContain(userKey)) {
+            filter.remove(userKey);
+        }
+    }
+
+    /**
+     * Stop building the filters. A build in progress is interrupted.
+     */
+    public void shutdown() {
+
+        shutdown = true;
+        ExecutorService executor = this.executor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void rebuild(String tenantDomain, TenantFilter tenantFilter) {
+
+        if (shutdown || !tenantFilter.building.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (tenantFilter) {
+            tenantFilter.addedWhileBuilding = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        }
+        try {
+            getExecutor().execute(() -> build(tenantDomain, tenantFilter));
+        } catch (RejectedExecutionException e) {
+            synchronized (tenantFilter) {
+                tenantFilter.addedWhileBuilding = null;
+            }
+            tenantFilter.building.set(false);
+        }
+    }
+
+    private void build(String tenantDomain, TenantFilter tenantFilter) {
+
+        long startTime = System.currentTimeMillis();
+        try {
+            String[] users = lister.listPendingUsers(tenantDomain);
+            int count = users != null ? users.length : 0;
+            EvidentPendingUserFilter filter = new EvidentPendingUserFilter(Math.max(MINIMUM_CAPACITY, count * 2),
+                    FALSE_POSITIVE_RATE);
+            for (int i = 0; i < count; i++) {
+                filter.add(users[i]);
+            }
+            synchronized (tenantFilter) {
+                for (String userKey : tenantFilter.addedWhileBuilding) {
+                    filter.add(userKey);
+                }
+                tenantFilter.filter = filter;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Built the Evident pending user filter of the tenant: " + tenantDomain + " with: " + count +
+                        " users in: " + (System.currentTimeMillis() - startTime) + " ms, using: " +
+                        filter.getSizeInBytes() + " bytes.");
+            }
+        } catch (IdentityEventException | UserStoreException | RuntimeException e) {
+            // Logins are treated as possibly pending until the next attempt, after the refresh interval.
+            log.error("Error while building the Evident pending user filter of the tenant: " + tenantDomain, e);
+        } finally {
+            synchronized (tenantFilter) {
+                tenantFilter.addedWhileBuilding = null;
+            }
+            tenantFilter.buildTime = startTime;
+            tenantFilter.building.set(false);
+        }
+    }
+
+    private ExecutorService getExecutor() {
+
+        ExecutorService executor = this.executor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.executor;
+                if (executor == null) {
+                    executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("EvidentPendingUserIndex"));
+                    this.executor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private static class TenantFilter {
+
+        private final AtomicBoolean building = new AtomicBoolean();
+        private volatile EvidentPendingUserFilter filter;
+        private volatile long buildTime;
+        private Set<String> addedWhileBuilding;
+    }
+
+    /**
+     * Lists the users pending the identity verification.
+     */
+    public interface PendingUserLister {
+
+        /**
+         * List the users of the given tenant pending the identity verification.
+         *
+         * @param tenantDomain Tenant domain.
+         * @return Keys of the users, qualified with the user store domain.
+         * @throws IdentityEventException If the user store of the tenant couldn't be retrieved.
+         * @throws UserStoreException     If the users couldn't be listed.
+         */
+        String[] listPendingUsers(String tenantDomain) throws IdentityEventException, UserStoreException;
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.task;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfig;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVServerConfig;
+import org.wso2.carbon.identity.verification.evident.exception.EvidentAPIException;
+import org.wso2.carbon.identity.verification.evident.metrics.EvidentIDVMetrics;
+import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.user.core.UserStoreManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.EVIDENT_VERIFICATION_ID_CLAIM_URI;
+import static org.wso2.carbon.user.core.UserCoreConstants.DEFAULT_PROFILE;
+
+/**
+ * Submits the Evident verification requests of the newly added users in the background. Submissions wait in a bounded
+ * queue for a worker thread, which holds the submission until Evident responds, so that the number of requests in
+ * progress is bounded by the worker threads and a burst of submissions backs up in the queue instead of the I/O queue
+ * of the Evident client. Requests are retried with an exponential backoff on transient failures and the Evident request
+ * ID claim of the user is written by the worker once the request is accepted by Evident. Requests given up on, i.e.
+ * failed permanently, out of retries or discarded on shutdown, leave the account of the user locked pending the
+ * verification without a request ID, whereupon the request is re-submitted on the next status check of the user.
+ */
+public class EvidentVerificationSubmitter {
+
+    private static final Log log = LogFactory.getLog(EvidentVerificationSubmitter.class);
+    private static final long MAX_RETRY_BACKOFF = TimeUnit.MINUTES.toMillis(1);
+
+    private final VerificationRequestSender sender;
+    private final int maxRetries;
+    private final long retryBackoff;
+    private final long requestDeadline;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService retryScheduler;
+    private final Set<Submission> scheduledRetries = ConcurrentHashMap.newKeySet();
+
+    public EvidentVerificationSubmitter(VerificationRequestSender sender, EvidentIDVServerConfig serverConfig) {
+
+        this.sender = sender;
+        this.maxRetries = serverConfig.getSubmissionMaxRetries();
+        this.retryBackoff = serverConfig.getSubmissionRetryBackoff();
+        this.requestDeadline = serverConfig.getHttpRequestDeadline();
+        this.workers = new ThreadPoolExecutor(serverConfig.getSubmissionWorkerThreads(),
+                serverConfig.getSubmissionWorkerThreads(), 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(serverConfig.getSubmissionQueueCapacity()),
+                new NamedThreadFactory("EvidentVerificationSubmitter"), new ThreadPoolExecutor.AbortPolicy());
+        this.workers.allowCoreThreadTimeOut(true);
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(
+                new NamedThreadFactory("EvidentVerificationRetryScheduler"));
+    }
+
+    /**
+     * Queue the verification request of the given user to be submitted in the background.
+     *
+     * @param tenantDomain     Tenant domain of the user.
+     * @param username         Username of the user.
+     * @param userStoreManager User store manager of the user.
+     * @param email            Email address of the user.
+     * @param config           Evident configuration of the tenant.
+     * @return True if the request is queued, False if the queue is full.
+     */
+    public boolean submit(String tenantDomain, String username, UserStoreManager userStoreManager, String email,
+                          EvidentIDVConfig config) {
+
+        try {
+            workers.execute(new Submission(tenantDomain, username, userStoreManager, email, config));
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("Evident verification request queue is full. Couldn't queue the verification request of " +
+                    "the user: " + username);
+            return false;
+        }
+    }
+
+    /**
+     * Return the number of verification requests waiting to be submitted.
+     *
+     * @return Queue depth.
+     */
+    public int getQueueDepth() {
+
+        return workers.getQueue().size();
+    }
+
+    /**
+     * Stop the worker threads. Queued verification requests and scheduled retries are given up on.
+     */
+    public void shutdown() {
+
+        retryScheduler.shutdownNow();
+        List<Runnable> queued = workers.shutdownNow();
+        for (Runnable submission : queued) {
+            if (submission instanceof Submission) {
+                giveUp((Submission) submission, "Discarded the queued verification request on shutdown.", null);
+            }
+        }
+        for (Submission submission : scheduledRetries) {
+            if (scheduledRetries.remove(submission)) {
+                giveUp(submission, "Discarded the scheduled retry of the verification request on shutdown.", null);
+            }
+        }
+    }
+
+    private void scheduleRetry(final Submission submission, long delay) {
+
+        scheduledRetries.add(submission);
+        try {
+            retryScheduler.schedule(() -> {
+                if (!scheduledRetries.remove(submission)) {
+                    return;
+                }
+                try {
+                    workers.execute(submission);
+                } catch (RejectedExecutionException e) {
+                    giveUp(submission, "Evident verification request queue is full. Dropped the retry of the " +
+                            "verification request.", null);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            if (scheduledRetries.remove(submission)) {
+                giveUp(submission, "Couldn't schedule a retry of the verification request.", null);
+            }
+        }
+    }
+
+    /**
+     * Give up on the verification request of a user. The account of the user stays locked pending the verification
+     * without a request ID, which is how the next status check of the user, e.g. by the verification sweeper,
+     * recognizes the request to be re-submitted.
+     */
+    private void giveUp(Submission submission, String reason, Throwable error) {
+
+        EvidentIDVMetrics.getInstance().recordSubmissionFailure(submission.tenantDomain);
+        log.error(reason + " Gave up on the Evident verification request of the user: " + submission.username +
+                ". The request will be re-submitted on the next verification status check of the user.", error);
+    }
+
+    /**
+     * Sends an Evident verification request.
+     */
+    public interface VerificationRequestSender {
+
+        /**
+         * Send an Evident verification request for the given user asynchronously.
+         *
+         * @param username         Username of the user.
+         * @param userStoreManager User store manager of the user.
+         * @param email            Email address of the user.
+         * @param config           Evident configuration of the tenant.
+         * @return Future of the Evident verification request ID, failed with an EvidentIDVHandlerException if the
+         * request failed.
+         */
+        CompletableFuture<String> send(String username, UserStoreManager userStoreManager, String email,
+                                       EvidentIDVConfig config);
+    }
+
+    private class Submission implements Runnable {
+
+        private final String tenantDomain;
+        private final String username;
+        private final UserStoreManager userStoreManager;
+        private final String email;
+        private final EvidentIDVConfig config;
+        private int attempt = 1;
+
+        Submission(String tenantDomain, String username, UserStoreManager userStoreManager, String email,
+                   EvidentIDVConfig config) {
+
+            this.tenantDomain = tenantDomain;
+            this.username = username;
+            this.userStoreManager = userStoreManager;
+            this.email = email;
+            this.config = config;
+        }
+
+        @Override
+        public void run() {
+
+            String id;
+            try {
+                id = sender.send(username, userStoreManager, email, config).get(requestDeadline,
+                        TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // The request may still be accepted, in which case the retry reuses the request ID.
+                onFailure(new EvidentAPIException("Evident verify request didn't complete within: " +
+                        requestDeadline + " ms.", e));
+                return;
+            } catch (ExecutionException e) {
+                Throwable error = e.getCause();
+                onFailure(error instanceof CompletionException && error.getCause() != null ?
+                        error.getCause() : error);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                giveUp(this, "Interrupted while sending the Evident verification request.", e);
+                return;
+            } catch (RuntimeException e) {
+                giveUp(this, "Error while sending the Evident verification request.", e);
+                return;
+            }
+            setRequestId(id);
+        }
+
+        private void onFailure(Throwable error) {
+
+            if (error instanceof EvidentAPIException && ((EvidentAPIException) error).isTransient() &&
+                    attempt <= maxRetries) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Evident verification request of the user: " + username + " failed on attempt: " +
+                            attempt + ". Retrying.", error);
+                }
+                long delay = Math.min(retryBackoff << (attempt - 1), MAX_RETRY_BACKOFF);
+                attempt++;
+                scheduleRetry(this, delay);
+            } else {
+                giveUp(this, "Error while sending the Evident verification request.", error);
+            }
+        }
+
+        private void setRequestId(String id) {
+
+            PrivilegedCarbonContext.startTenantFlow();
+            try {
+                PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(tenantDomain, true);
+
+                Map<String, String> userClaims = new HashMap<>();
+                userClaims.put(EVIDENT_VERIFICATION_ID_CLAIM_URI, id);
+                long startTime = System.nanoTime();
+                boolean failed = true;
+                try {
+                    userStoreManager.setUserClaimValues(username, userClaims, DEFAULT_PROFILE);
+                    failed = false;
+                } finally {
+                    EvidentIDVMetrics.getInstance().recordCall(tenantDomain, EvidentIDVMetrics.Operation.CLAIM_WRITE,
+                            System.nanoTime() - startTime, failed);
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Evident verification request ID: " + id + " set for the user: " + username);
+                }
+            } catch (UserStoreException e) {
+                // The re-submitted request reuses the request ID remembered for the user.
+                giveUp(this, "Error while setting the evident verification request ID: " + id + ".", e);
+            } finally {
+                PrivilegedCarbonContext.endTenantFlow();
+            }
+        }
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.task;
+
+import org.apache.axis2.clustering.ClusteringAgent;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.event.IdentityEventException;
+import org.wso2.carbon.identity.verification.evident.cache.EvidentCacheBackend;
+import org.wso2.carbon.identity.verification.evident.cache.EvidentCacheBackendFactory;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfig;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfigCache;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVServerConfig;
+import org.wso2.carbon.identity.verification.evident.internal.EvidentIDVDataHolder;
+import org.wso2.carbon.user.api.Tenant;
+import org.wso2.carbon.user.core.PaginatedUserStoreManager;
+import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.user.core.util.UserCoreUtil;
+import org.wso2.carbon.utils.CarbonUtils;
+import org.wso2.carbon.utils.ConfigurationContextService;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import java.io.Serializable;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.ACCOUNT_STATE_CLAIM_URI;
+import static org.wso2.carbon.identity.recovery.IdentityRecoveryConstants.PENDING_SELF_REGISTRATION;
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.SWEEPER_CACHE_NAME;
+import static org.wso2.carbon.user.core.UserCoreConstants.DEFAULT_PROFILE;
+
+/**
+ * Periodically checks the Evident verification status of the accounts pending the identity verification and
+ * unlocks the verified accounts, so that the Evident API doesn't need to be called in the login flow.
+ * <p>
+ * Each run checks at most a batch of pending users of each tenant, using a bounded number of threads and a
+ * limited rate of Evident API calls. Only the checks which call Evident take a permit of the rate limit, so that
+ * checks answered from the status cache don't use up the request budget. The offset of the next batch of each tenant
+ * is saved as a checkpoint, so that the next run, also after a server restart, continues from the following users.
+ * The users unlocked by a run leave the pending users, hence the offset only advances past the users which remain
+ * pending. Users skipped since they were unlocked elsewhere meanwhile are checked once the sweep starts over from the
+ * first user.
+ * <p>
+ * In a cluster, only the coordinator node runs the sweep. The checkpoints are saved in a file of the node, and with
+ * a shared cache backend also in the cache of the cluster, so that a new coordinator continues from the checkpoints
+ * of the previous one. A checkpoint evicted from the shared cache falls back to the file of the node.
+ * <p>
+ * Pending users without an Evident request ID, whose background verification request was given up on, have their
+ * verification request re-submitted by the check.
+ */
+public class EvidentVerificationSweeper {
+
+    private static final Log log = LogFactory.getLog(EvidentVerificationSweeper.class);
+    private static final String CHECKPOINT_FILE_NAME = "evident-verification-sweeper.properties";
+    private static final int MAX_CACHED_CHECKPOINTS = 10000;
+
+    private final PendingUserVerifier verifier;
+    private final String[] propertyNames;
+    private final long interval;
+    private final int batchSize;
+    private final RateLimiter rateLimiter;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workers;
+    private final EvidentCheckpointFile checkpoints;
+    private final EvidentCacheBackend sharedCheckpoints;
+
+    public EvidentVerificationSweeper(PendingUserVerifier verifier, String[] propertyNames,
+                                      EvidentIDVServerConfig serverConfig) {
+
+        this.verifier = verifier;
+        this.propertyNames = propertyNames;
+        this.interval = serverConfig.getSweeperInterval();
+        this.batchSize = serverConfig.getSweeperBatchSize();
+        this.rateLimiter = new RateLimiter(serverConfig.getSweeperMaxRequestsPerSecond());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                new NamedThreadFactory("EvidentVerificationSweeper"));
+        this.workers = Executors.newFixedThreadPool(serverConfig.getSweeperConcurrency(),
+                new NamedThreadFactory("EvidentVerificationSweeperWorker"));
+        this.checkpoints = new EvidentCheckpointFile(Paths.get(CarbonUtils.getCarbonHome(), "repository", "data",
+                CHECKPOINT_FILE_NAME), "Evident verification sweep");
+        EvidentCacheBackend cacheBackend = EvidentCacheBackendFactory.create(serverConfig.getCacheBackend(),
+                SWEEPER_CACHE_NAME, MAX_CACHED_CHECKPOINTS);
+        this.sharedCheckpoints = cacheBackend.isShared() ? cacheBackend : null;
+    }
+
+    /**
+     * Schedule the periodic sweep.
+     */
+    public void start() {
+
+        scheduler.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the sweep. A sweep in progress is interrupted.
+     */
+    public void shutdown() {
+
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void sweep() {
+
+        if (!isCoordinator()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Skipping the Evident verification sweep since this node is not the cluster coordinator.");
+            }
+            return;
+        }
+        try {
+            for (String tenantDomain : getTenantDomains()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                sweepTenant(tenantDomain);
+            }
+        } catch (RuntimeException e) {
+            // Exceptions would cancel the scheduled sweep.
+            log.error("Error while running the Evident verification sweep.", e);
+        }
+    }
+
+    private void sweepTenant(String tenantDomain) {
+
+        PrivilegedCarbonContext.startTenantFlow();
+        try {
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(tenantDomain, true);
+
+            EvidentIDVConfig config = EvidentIDVConfigCache.getInstance().getConfig(tenantDomain, propertyNames);
+            if (!config.isEnabled() || !config.isComplete()) {
+                saveCheckpoint(tenantDomain, -1);
+                return;
+            }
+
+            UserStoreManager userStoreManager = getUserStoreManager(tenantDomain);
+            int offset = loadCheckpoint(tenantDomain);
+            String[] pendingUsers = nextBatch(userStoreManager, offset);
+
+            List<Callable<Boolean>> tasks = new ArrayList<>(pendingUsers.length);
+            for (String username : pendingUsers) {
+                if (config.isUserStoreEnabled(UserCoreUtil.extractDomainFromName(username))) {
+                    tasks.add(() -> verify(tenantDomain, username, userStoreManager, config));
+                }
+            }
+            int unlocked = 0;
+            for (Future<Boolean> result : workers.invokeAll(tasks)) {
+                if (result.get()) {
+                    unlocked++;
+                }
+            }
+            // Start over from the first user once the last batch is checked.
+            saveCheckpoint(tenantDomain, pendingUsers.length < batchSize ? -1 :
+                    offset + pendingUsers.length - unlocked);
+            if (log.isDebugEnabled()) {
+                log.debug("Evident verification sweep checked: " + tasks.size() + " users and unlocked: " +
+                        unlocked + " users of the tenant: " + tenantDomain);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IdentityEventException | UserStoreException | ExecutionException e) {
+            log.error("Error while running the Evident verification sweep for the tenant: " + tenantDomain, e);
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    /**
+     * Return the batch of pending users of the tenant at the given offset. Paginated user stores are listed a batch at
+     * a time. The pending users of the other user stores are listed in full and sorted, so that the offsets stay
+     * stable across the sweeps.
+     */
+    private String[] nextBatch(UserStoreManager userStoreManager, int offset) throws UserStoreException {
+
+        if (userStoreManager instanceof PaginatedUserStoreManager) {
+            // The offset of the paginated user listing is one based.
+            String[] users = ((PaginatedUserStoreManager) userStoreManager).getUserList(ACCOUNT_STATE_CLAIM_URI,
+                    PENDING_SELF_REGISTRATION, DEFAULT_PROFILE, batchSize, offset + 1);
+            return users != null ? users : new String[0];
+        }
+
+        String[] users = userStoreManager.getUserList(ACCOUNT_STATE_CLAIM_URI, PENDING_SELF_REGISTRATION,
+                DEFAULT_PROFILE);
+        if (users == null) {
+            return new String[0];
+        }
+        Arrays.sort(users);
+        int from = Math.min(offset, users.length);
+        return Arrays.copyOfRange(users, from, Math.min(from + batchSize, users.length));
+    }
+
+    /**
+     * Return the checkpoint of the tenant, preferring the checkpoint shared by the cluster.
+     */
+    private int loadCheckpoint(String tenantDomain) {
+
+        if (sharedCheckpoints != null) {
+            Serializable offset = sharedCheckpoints.get(tenantDomain);
+            if (offset instanceof Integer) {
+                return (Integer) offset;
+            }
+        }
+        return checkpoints.load(tenantDomain);
+    }
+
+    /**
+     * Save the checkpoint of the tenant, or start over from the first user if the offset is negative.
+     */
+    private void saveCheckpoint(String tenantDomain, int offset) {
+
+        if (sharedCheckpoints != null) {
+            // Keep the start over in the cache, so that a stale checkpoint of a node doesn't take effect.
+            sharedCheckpoints.put(tenantDomain, Math.max(offset, 0));
+        }
+        checkpoints.save(tenantDomain, offset);
+    }
+
+    private boolean verify(String tenantDomain, String username, UserStoreManager userStoreManager,
+                           EvidentIDVConfig config) {
+
+        PrivilegedCarbonContext.startTenantFlow();
+        try {
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(tenantDomain, true);
+            return verifier.verify(username, userStoreManager, config, rateLimiter::acquire);
+        } catch (IdentityEventException | RuntimeException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Couldn't verify the user: " + username + " of the tenant: " + tenantDomain, e);
+            }
+            return false;
+        } finally {
+            IdentityUtil.clearIdentityErrorMsg();
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    private UserStoreManager getUserStoreManager(String tenantDomain) throws UserStoreException {
+
+        try {
+            return (UserStoreManager) EvidentIDVDataHolder.getInstance().getRealmService()
+                    .getTenantUserRealm(IdentityTenantUtil.getTenantId(tenantDomain)).getUserStoreManager();
+        } catch (org.wso2.carbon.user.api.UserStoreException e) {
+            throw new UserStoreException("Error while retrieving the user store manager of the tenant: " +
+                    tenantDomain, e);
+        }
+    }
+
+    /**
+     * Return the domains of the super tenant and the active tenants.
+     */
+    static List<String> getTenantDomains() {
+
+        List<String> tenantDomains = new ArrayList<>();
+        tenantDomains.add(MultitenantConstants.SUPER_TENANT_DOMAIN_NAME);
+        RealmService realmService = EvidentIDVDataHolder.getInstance().getRealmService();
+        if (realmService == null) {
+            return tenantDomains;
+        }
+        try {
+            Tenant[] tenants = realmService.getTenantManager().getAllTenants();
+            if (tenants != null) {
+                for (Tenant tenant : tenants) {
+                    if (tenant.isActive()) {
+                        tenantDomains.add(tenant.getDomain());
+                    }
+                }
+            }
+        } catch (org.wso2.carbon.user.api.UserStoreException e) {
+            log.error("Error while retrieving the tenants.", e);
+        }
+        return tenantDomains;
+    }
+
+    private boolean isCoordinator() {
+
+        ConfigurationContextService configurationContextService =
+                EvidentIDVDataHolder.getInstance().getConfigurationContextService();
+        if (configurationContextService == null) {
+            return true;
+        }
+        ClusteringAgent clusteringAgent = configurationContextService.getServerConfigContext()
+                .getAxisConfiguration().getClusteringAgent();
+        return clusteringAgent == null || clusteringAgent.isCoordinator();
+    }
+
+    /**
+     * Checks the Evident verification status of a pending user and unlocks the account if verified. The verification
+     * request of a pending user without a request ID is re-submitted.
+     */
+    public interface PendingUserVerifier {
+
+        /**
+         * Check the Evident verification status of the given user.
+         *
+         * @param username         Username of the user.
+         * @param userStoreManager User store manager of the user.
+         * @param config           Evident configuration of the tenant.
+         * @param callPermit       Permit to take right before calling Evident.
+         * @return True if the account of the user was unlocked, False otherwise.
+         * @throws IdentityEventException If the verification status couldn't be checked.
+         */
+        boolean verify(String username, UserStoreManager userStoreManager, EvidentIDVConfig config,
+                       CallPermit callPermit) throws IdentityEventException;
+    }
+
+    /**
+     * Permit to call the Evident API, e.g. the rate limit of the sweep.
+     */
+    public interface CallPermit {
+
+        /**
+         * Wait for the permit.
+         *
+         * @throws InterruptedException If interrupted while waiting.
+         */
+        void acquire() throws InterruptedException;
+    }
+}
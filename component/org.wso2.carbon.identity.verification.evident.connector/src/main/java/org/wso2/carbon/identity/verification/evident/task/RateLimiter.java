@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.task;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces the Evident API calls of a background task evenly to limit the request rate.
+ */
+class RateLimiter {
+
+    private final long intervalNanos;
+    private long nextPermitTime = System.nanoTime();
+
+    RateLimiter(int permitsPerSecond) {
+
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+    }
+
+    void acquire() throws InterruptedException {
+
+        long waitTime;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long permitTime = Math.max(nextPermitTime, now);
+            nextPermitTime = permitTime + intervalNanos;
+            waitTime = permitTime - now;
+        }
+        if (waitTime > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitTime);
+        }
+    }
+}
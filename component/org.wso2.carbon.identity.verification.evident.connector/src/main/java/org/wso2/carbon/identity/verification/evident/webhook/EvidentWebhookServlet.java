@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.verification.evident.webhook;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.event.IdentityEventException;
+import org.wso2.carbon.identity.verification.evident.EvidentIDVHandler;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfig;
+import org.wso2.carbon.identity.verification.evident.config.EvidentIDVConfigCache;
+import org.wso2.carbon.utils.multitenancy.MultitenantConstants;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Locale;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.wso2.carbon.identity.verification.evident.constants.EvidentIDVConstants.EVIDENT_WEBHOOK_SIGNATURE_HEADER;
+
+/**
+ * Receives the verification status change notifications sent by Evident. A notification is accepted only if it
+ * is signed with the webhook secret of the tenant, and only carries the ID of the verification request. The tenant
+ * domain is part of the signed payload, so that a notification signed for one tenant can't be replayed against
+ * another tenant sharing the same secret. The verification status itself is always retrieved from the Evident API
+ * before the account of the user is unlocked.
+ */
+public class EvidentWebhookServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 3619464412962434612L;
+    private static final Log log = LogFactory.getLog(EvidentWebhookServlet.class);
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String TENANT_DOMAIN_PARAM = "tenantDomain";
+    private static final int MAX_BODY_SIZE = 64 * 1024;
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+    private final transient EvidentIDVHandler handler;
+
+    public EvidentWebhookServlet(EvidentIDVHandler handler) {
+
+        this.handler = handler;
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        String tenantDomain = request.getParameter(TENANT_DOMAIN_PARAM);
+        if (StringUtils.isBlank(tenantDomain)) {
+            tenantDomain = MultitenantConstants.SUPER_TENANT_DOMAIN_NAME;
+        }
+
+        byte[] body = readBody(request);
+        if (body == null) {
+            response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+            return;
+        }
+
+        PrivilegedCarbonContext.startTenantFlow();
+        try {
+            PrivilegedCarbonContext.getThreadLocalCarbonContext().setTenantDomain(tenantDomain, true);
+
+            EvidentIDVConfig config = EvidentIDVConfigCache.getInstance().getConfig(tenantDomain,
+                    handler.getPropertyNames());
+            if (!config.isEnabled() || !config.isComplete() || !config.isWebhookEnabled()) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+
+            if (!isValidSignature(request.getHeader(EVIDENT_WEBHOOK_SIGNATURE_HEADER), tenantDomain, body,
+                    config.getWebhookSecret())) {
+                log.warn("Rejected an Evident notification with an invalid signature for the tenant: " +
+                        tenantDomain);
+                response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+                return;
+            }
+
+            String verifyId = getVerifyId(body);
+            if (StringUtils.isEmpty(verifyId)) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+
+            boolean unlocked = handler.handleVerificationNotification(verifyId, config);
+            if (log.isDebugEnabled()) {
+                log.debug("Evident notification of the verification request: " + verifyId + " processed for the " +
+                        "tenant: " + tenantDomain + ". Account unlocked: " + unlocked);
+            }
+            response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        } catch (IdentityEventException | RuntimeException e) {
+            log.error("Error while processing the Evident notification for the tenant: " + tenantDomain, e);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        } finally {
+            IdentityUtil.clearIdentityErrorMsg();
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+    }
+
+    /**
+     * Read the request body.
+     *
+     * @param request Notification request.
+     * @return Request body, or null if the body exceeds the maximum size.
+     * @throws IOException If the body couldn't be read.
+     */
+    private byte[] readBody(HttpServletRequest request) throws IOException {
+
+        if (request.getContentLength() > MAX_BODY_SIZE) {
+            return null;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        try (InputStream inputStream = request.getInputStream()) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                if (body.size() + read > MAX_BODY_SIZE) {
+                    return null;
+                }
+                body.write(buffer, 0, read);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * Validate the signature of a notification, computed over the tenant domain and the request body separated by
+     * a new line.
+     *
+     * @param signature    Hex encoded signature of the notification.
+     * @param tenantDomain Tenant domain the notification is sent to.
+     * @param body         Request body.
+     * @param secret       Webhook secret of the tenant.
+     * @return True if the signature is valid, False otherwise.
+     */
+    private boolean isValidSignature(String signature, String tenantDomain, byte[] body, byte[] secret) {
+
+        if (StringUtils.isBlank(signature)) {
+            return false;
+        }
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, HMAC_ALGORITHM));
+            mac.update(tenantDomain.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) '\n');
+            byte[] expected = toHex(mac.doFinal(body)).getBytes(StandardCharsets.US_ASCII);
+            byte[] actual = signature.trim().toLowerCase(Locale.ENGLISH).getBytes(StandardCharsets.US_ASCII);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (GeneralSecurityException e) {
+            log.error("Error while validating the signature of the Evident notification.", e);
+            return false;
+        }
+    }
+
+    private String getVerifyId(byte[] body) {
+
+        try {
+            return new JSONObject(new String(body, StandardCharsets.UTF_8)).optString("id", null);
+        } catch (JSONException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Invalid Evident notification payload.", e);
+            }
+            return null;
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_CHARS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX_CHARS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}